@@ -0,0 +1,116 @@
+package com.example.booking.analytics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitters summary over integer items with a fixed number of counters.
+ * Each counter over-estimates its item by at most its recorded error. Summaries are mergeable,
+ * which is how sliding windows are assembled from per-minute buckets.
+ */
+public final class SpaceSaving {
+
+    public record Entry(int item, long count, long error) {
+    }
+
+    private final int capacity;
+    private final Map<Integer, long[]> counters; // item -> {count, error}
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void add(int item, long weight) {
+        long[] counter = counters.get(item);
+        if (counter != null) {
+            counter[0] += weight;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(item, new long[] { weight, 0 });
+            return;
+        }
+        // Evict the smallest counter; the newcomer inherits its count as error
+        Integer minItem = null;
+        long minCount = Long.MAX_VALUE;
+        for (Map.Entry<Integer, long[]> entry : counters.entrySet()) {
+            if (entry.getValue()[0] < minCount) {
+                minCount = entry.getValue()[0];
+                minItem = entry.getKey();
+            }
+        }
+        counters.remove(minItem);
+        counters.put(item, new long[] { minCount + weight, minCount });
+    }
+
+    /**
+     * Fold another summary into this one. An item missing from a full summary may still have
+     * occurred up to that summary's minimum count, so that minimum is added as count and error.
+     */
+    public void merge(SpaceSaving other) {
+        long thisMin = isFull() ? minCount() : 0;
+        long otherMin = other.isFull() ? other.minCount() : 0;
+
+        Map<Integer, long[]> merged = new HashMap<>(counters.size() + other.counters.size());
+        for (Map.Entry<Integer, long[]> entry : counters.entrySet()) {
+            long[] theirs = other.counters.get(entry.getKey());
+            long[] mine = entry.getValue();
+            merged.put(entry.getKey(), theirs != null
+                    ? new long[] { mine[0] + theirs[0], mine[1] + theirs[1] }
+                    : new long[] { mine[0] + otherMin, mine[1] + otherMin });
+        }
+        for (Map.Entry<Integer, long[]> entry : other.counters.entrySet()) {
+            if (!counters.containsKey(entry.getKey())) {
+                long[] theirs = entry.getValue();
+                merged.put(entry.getKey(), new long[] { theirs[0] + thisMin, theirs[1] + thisMin });
+            }
+        }
+
+        counters.clear();
+        List<Map.Entry<Integer, long[]>> ranked = new ArrayList<>(merged.entrySet());
+        ranked.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        for (Map.Entry<Integer, long[]> entry : ranked.subList(0, Math.min(capacity, ranked.size()))) {
+            counters.put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // The k items with the highest counts, highest first
+    public List<Entry> top(int k) {
+        List<Entry> entries = entries();
+        entries.sort((a, b) -> Long.compare(b.count(), a.count()));
+        return entries.subList(0, Math.min(k, entries.size()));
+    }
+
+    public List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>(counters.size());
+        counters.forEach((item, counter) -> entries.add(new Entry(item, counter[0], counter[1])));
+        return entries;
+    }
+
+    public static SpaceSaving of(int capacity, List<Entry> entries) {
+        SpaceSaving summary = new SpaceSaving(capacity);
+        for (Entry entry : entries) {
+            summary.counters.put(entry.item(), new long[] { entry.count(), entry.error() });
+        }
+        return summary;
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    private boolean isFull() {
+        return counters.size() >= capacity;
+    }
+
+    private long minCount() {
+        long min = Long.MAX_VALUE;
+        for (long[] counter : counters.values()) {
+            min = Math.min(min, counter[0]);
+        }
+        return min;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.booking.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+// Give bookings written before optimistic locking a starting version, otherwise
+// Spring Data treats them as new and save() tries to insert a duplicate
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DocumentVersionBackfill implements CommandLineRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentVersionBackfill.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(String... args) {
+        try {
+            long updated = mongoTemplate.updateMulti(
+                    new Query(Criteria.where("version").exists(false)),
+                    new Update().set("version", 0L),
+                    "bookings").getModifiedCount();
+            if (updated > 0) {
+                logger.info("Initialised version on {} existing bookings", updated);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to backfill booking versions: {}", e.getMessage());
+        }
+    }
+}
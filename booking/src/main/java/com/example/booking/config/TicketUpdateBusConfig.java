@@ -0,0 +1,40 @@
+package com.example.booking.config;
+
+import com.example.booking.service.DirectTicketUpdateBus;
+import com.example.booking.service.MongoTicketUpdateBus;
+import com.example.booking.service.RingBufferTicketUpdateBus;
+import com.example.booking.service.SqsPublisher;
+import com.example.booking.service.TicketUpdateBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+@Configuration
+public class TicketUpdateBusConfig {
+    private static final Logger logger = LoggerFactory.getLogger(TicketUpdateBusConfig.class);
+    
+    // Pick the ticket update transport: explicit setting first, otherwise SQS when configured, else direct HTTP
+    @Bean
+    @Primary
+    public TicketUpdateBus ticketUpdateBus(
+            @Value("${ticket.bus.type:auto}") String type,
+            @Value("${ticket.bus.mongo.collection:ticket_updates}") String mongoCollection,
+            @Value("${ticket.bus.mongo.size-bytes:67108864}") long mongoSizeBytes,
+            @Value("${ticket.bus.memory.capacity:65536}") int memoryCapacity,
+            SqsPublisher sqsPublisher,
+            MongoTemplate mongoTemplate) {
+        TicketUpdateBus selected = switch (type) {
+            case "sqs" -> sqsPublisher;
+            case "mongo" -> new MongoTicketUpdateBus(mongoTemplate, mongoCollection, mongoSizeBytes);
+            case "memory" -> new RingBufferTicketUpdateBus(memoryCapacity);
+            case "http" -> new DirectTicketUpdateBus();
+            default -> sqsPublisher.isEnabled() ? sqsPublisher : new DirectTicketUpdateBus();
+        };
+        logger.info("Using {} ticket update bus (enabled: {})", selected.getName(), selected.isEnabled());
+        return selected;
+    }
+}
@@ -1,16 +1,28 @@
 package com.example.booking.controller;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
+import org.bson.Document;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -21,13 +33,26 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.example.booking.model.Booking;
+import com.example.booking.model.Event;
+import com.example.booking.model.WaitlistEntry;
+import com.example.booking.service.BookingAnalyticsService;
+import com.example.booking.service.BookingExportService;
+import com.example.booking.service.BookingReportService;
 import com.example.booking.service.BookingService;
+import com.example.booking.service.BookingStatsService;
+import com.example.booking.service.EventCancellationService;
 import com.example.booking.service.FirebaseService;
+import com.example.booking.service.TicketUpdateBusBenchmark;
+import com.example.booking.service.WaitlistService;
 import com.google.firebase.auth.FirebaseToken;
 
+import jakarta.servlet.http.HttpServletResponse;
+
 @RestController
 public class BookingController {
     
@@ -39,6 +64,27 @@ public class BookingController {
     @Autowired
     private FirebaseService firebaseService;
     
+    @Autowired
+    private BookingReportService bookingReportService;
+    
+    @Autowired
+    private BookingStatsService bookingStatsService;
+    
+    @Autowired
+    private BookingAnalyticsService bookingAnalyticsService;
+    
+    @Autowired
+    private BookingExportService bookingExportService;
+    
+    @Autowired
+    private WaitlistService waitlistService;
+    
+    @Autowired
+    private TicketUpdateBusBenchmark ticketUpdateBusBenchmark;
+    
+    @Autowired
+    private EventCancellationService eventCancellationService;
+    
     // USER APIs (Authentication Required)
     
     // Create a new booking
@@ -79,6 +125,13 @@ public class BookingController {
             return ResponseEntity.ok(booking.toJSON().toString());
         } catch (Exception e) {
             logger.error("Error creating booking: {}", e.getMessage(), e);
+            if (e.getMessage() != null && e.getMessage().contains("Not enough tickets available")) {
+                // Sold out: point the client at the waitlist instead of having it retry
+                JSONObject error = new JSONObject();
+                error.put("error", e.getMessage());
+                error.put("waitlist", true);
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(error.toString());
+            }
             return createErrorResponse(e, HttpStatus.BAD_REQUEST);
         }
     }
@@ -110,16 +163,20 @@ public class BookingController {
             
             // Step 3: Return success response
             return ResponseEntity.ok(booking.toJSON().toString());
+        } catch (OptimisticLockingFailureException e) {
+            logger.error("Booking {} kept changing while cancelling: {}", id, e.getMessage());
+            return createErrorResponse(new RuntimeException("Booking is being modified; please try again"), HttpStatus.CONFLICT);
         } catch (Exception e) {
             logger.error("Error cancelling booking: {}", e.getMessage(), e);
             return createErrorResponse(e, HttpStatus.BAD_REQUEST);
         }
     }
     
-    // Get all bookings for the current user
+    // Get all bookings for the current user (history=true includes archived bookings)
     @GetMapping(value = "/api/user/bookings", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> getUserBookings(
-            @RequestHeader("Authorization") String authToken) {
+            @RequestHeader("Authorization") String authToken,
+            @RequestParam(defaultValue = "false") boolean history) {
         
         try {
             logger.info("Received request for user bookings");
@@ -136,7 +193,7 @@ public class BookingController {
             logger.info("User authenticated for bookings list: {}", token.getUid());
             
             // Step 2: Get the user's bookings
-            List<Booking> bookings = bookingService.getUserBookings(token.getUid());
+            List<Booking> bookings = bookingService.getUserBookings(token.getUid(), history);
             
             logger.info("Retrieved {} bookings for user", bookings.size());
             
@@ -154,6 +211,60 @@ public class BookingController {
         }
     }
     
+    // Get all bookings for the current user with event details merged in.
+    // Bookings carry an event snapshot; any without one cost at most one extra batched Event Service call.
+    @GetMapping(value = "/api/user/bookings/enriched", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getUserBookingsEnriched(
+            @RequestHeader("Authorization") String authToken,
+            @RequestParam(defaultValue = "false") boolean history) {
+        
+        try {
+            logger.info("Received request for enriched user bookings");
+            
+            // Step 1: Verify user token
+            FirebaseToken token = firebaseService.verifyToken(authToken);
+            
+            if (token == null) {
+                logger.error("Invalid authentication token for getting enriched user bookings");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body(out -> out.write("{\"error\": \"Invalid token\"}".getBytes(StandardCharsets.UTF_8)));
+            }
+            
+            // Step 2: Get the user's bookings and the distinct events they refer to
+            List<Booking> bookings = bookingService.getUserBookings(token.getUid(), history);
+            Map<Integer, Event> events = bookingService.getEventsForBookings(bookings, authToken);
+            
+            logger.info("Enriching {} bookings with {} events", bookings.size(), events.size());
+            
+            // Step 3: Write each booking as it is merged instead of building the whole array in memory
+            StreamingResponseBody body = out -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                writer.write('[');
+                for (int i = 0; i < bookings.size(); i++) {
+                    Booking booking = bookings.get(i);
+                    JSONObject json = booking.toJSON();
+                    if (!json.has("event")) {
+                        // Older booking without a snapshot
+                        Event event = events.get(booking.getEventId());
+                        json.put("event", event != null ? event.toJSON() : JSONObject.NULL);
+                    }
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    json.write(writer);
+                }
+                writer.write(']');
+                writer.flush();
+            };
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        } catch (Exception e) {
+            logger.error("Error getting enriched user bookings: {}", e.getMessage(), e);
+            String error = createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR).getBody();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(out -> out.write(error.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+    
     // Get a specific booking for the current user
     @GetMapping(value = "/api/user/bookings/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> getBookingById(
@@ -200,6 +311,118 @@ public class BookingController {
         }
     }
     
+    // Join the waitlist of a sold-out event; tickets are booked automatically when released
+    @PostMapping(value = "/api/user/waitlist", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> joinWaitlist(
+            @RequestHeader("Authorization") String authToken,
+            @RequestBody Map<String, Object> waitlistRequest) {
+        
+        try {
+            // Step 1: Verify user token
+            FirebaseToken token = firebaseService.verifyToken(authToken);
+            
+            if (token == null) {
+                logger.error("Invalid authentication token for joining the waitlist");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            // Step 2: Extract waitlist details
+            int eventId = Integer.parseInt(waitlistRequest.get("eventId").toString());
+            int tickets = Integer.parseInt(waitlistRequest.get("tickets").toString());
+            
+            // Step 3: Join the queue
+            WaitlistEntry entry = waitlistService.join(token.getUid(), eventId, tickets, authToken);
+            
+            JSONObject json = entry.toJSON();
+            json.put("ahead", waitlistService.countAhead(entry));
+            return ResponseEntity.status(HttpStatus.CREATED).body(json.toString());
+        } catch (IllegalStateException e) {
+            return createErrorResponse(e, HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            logger.error("Error joining waitlist: {}", e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.BAD_REQUEST);
+        }
+    }
+    
+    // Get the current user's waitlist entries, with their place in the queue while waiting
+    @GetMapping(value = "/api/user/waitlist", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getUserWaitlist(@RequestHeader("Authorization") String authToken) {
+        
+        try {
+            // Step 1: Verify user token
+            FirebaseToken token = firebaseService.verifyToken(authToken);
+            
+            if (token == null) {
+                logger.error("Invalid authentication token for getting the waitlist");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            // Step 2: Convert entries to JSON
+            JSONArray entries = new JSONArray();
+            for (WaitlistEntry entry : waitlistService.getUserEntries(token.getUid())) {
+                JSONObject json = entry.toJSON();
+                if (entry.getStatus() == WaitlistEntry.WaitlistStatus.WAITING) {
+                    json.put("ahead", waitlistService.countAhead(entry));
+                }
+                entries.put(json);
+            }
+            return ResponseEntity.ok(entries.toString());
+        } catch (Exception e) {
+            logger.error("Error getting waitlist: {}", e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Leave the waitlist
+    @DeleteMapping(value = "/api/user/waitlist/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> leaveWaitlist(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable String id) {
+        
+        try {
+            // Step 1: Verify user token
+            FirebaseToken token = firebaseService.verifyToken(authToken);
+            
+            if (token == null) {
+                logger.error("Invalid authentication token for leaving the waitlist");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            // Step 2: Leave the queue
+            if (!waitlistService.leave(token.getUid(), id)) {
+                return createErrorResponse(new RuntimeException("Waitlist entry not found or no longer waiting"), HttpStatus.NOT_FOUND);
+            }
+            return ResponseEntity.ok("{\"message\": \"Left the waitlist\"}");
+        } catch (Exception e) {
+            logger.error("Error leaving waitlist: {}", e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Unread notifications for the current user (e.g. waitlisted tickets booked); marks them read
+    @GetMapping(value = "/api/user/notifications", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getNotifications(@RequestHeader("Authorization") String authToken) {
+        
+        try {
+            // Step 1: Verify user token
+            FirebaseToken token = firebaseService.verifyToken(authToken);
+            
+            if (token == null) {
+                logger.error("Invalid authentication token for notifications");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            return ResponseEntity.ok(new JSONArray(waitlistService.takeNotifications(token.getUid())).toString());
+        } catch (Exception e) {
+            logger.error("Error getting notifications: {}", e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     // ADMIN APIs (Admin Authentication Required)
     
     // Get all bookings in the system
@@ -240,6 +463,307 @@ public class BookingController {
         }
     }
     
+    // Bookings joined with event and user details, filtered and paginated in one aggregation
+    @GetMapping(value = "/api/admin/bookings/report", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getBookingReport(
+            @RequestHeader("Authorization") String authToken,
+            @RequestParam(required = false) Booking.BookingStatus status,
+            @RequestParam(required = false) Integer eventId,
+            @RequestParam(required = false) String userFirebaseUid,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        
+        try {
+            logger.info("Received admin request for booking report");
+            
+            // Step 1: Verify token (admin check should be added in real app)
+            FirebaseToken token = firebaseService.verifyToken(authToken);
+            
+            if (token == null) {
+                logger.error("Invalid authentication token for admin booking report");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            // Step 2: Run the report
+            Document report = bookingReportService.getReport(status, eventId, userFirebaseUid, from, to, page, size);
+            return ResponseEntity.ok(report.toJson());
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(e, HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            logger.error("Error building booking report: {}", e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Sales counters for one event (tickets sold, cancellations, revenue, booking count)
+    @GetMapping(value = "/api/admin/bookings/stats/events/{eventId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getEventStats(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable int eventId) {
+        
+        try {
+            // Verify token (admin check should be added in real app)
+            if (firebaseService.verifyToken(authToken) == null) {
+                logger.error("Invalid authentication token for event stats");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            return ResponseEntity.ok(bookingStatsService.getEventStats(eventId).toJson());
+        } catch (Exception e) {
+            logger.error("Error getting stats for event {}: {}", eventId, e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Sales counters per day over a date range (inclusive)
+    @GetMapping(value = "/api/admin/bookings/stats/days", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getDailyStats(
+            @RequestHeader("Authorization") String authToken,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        
+        try {
+            // Verify token (admin check should be added in real app)
+            if (firebaseService.verifyToken(authToken) == null) {
+                logger.error("Invalid authentication token for daily stats");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            JSONArray days = new JSONArray();
+            for (Document day : bookingStatsService.getDailyStats(from, to)) {
+                days.put(new JSONObject(day.toJson()));
+            }
+            return ResponseEntity.ok(days.toString());
+        } catch (Exception e) {
+            logger.error("Error getting daily stats: {}", e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Approximate real-time dashboard (unique buyers, quantity and price quantiles, top events)
+    @GetMapping(value = "/api/admin/bookings/dashboard", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getDashboard(
+            @RequestHeader("Authorization") String authToken) {
+        
+        // Verify token (admin check should be added in real app)
+        if (firebaseService.verifyToken(authToken) == null) {
+            logger.error("Invalid authentication token for booking dashboard");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body("{\"error\": \"Invalid token\"}");
+        }
+        
+        return ResponseEntity.ok(bookingAnalyticsService.getDashboardJson());
+    }
+    
+    // Estimated distinct buyers of one event
+    @GetMapping(value = "/api/admin/bookings/dashboard/events/{eventId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getEventDashboard(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable int eventId) {
+        
+        // Verify token (admin check should be added in real app)
+        if (firebaseService.verifyToken(authToken) == null) {
+            logger.error("Invalid authentication token for event dashboard");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body("{\"error\": \"Invalid token\"}");
+        }
+        
+        return ResponseEntity.ok("{\"eventId\": " + eventId
+                + ", \"uniqueBuyers\": " + bookingAnalyticsService.getUniqueBuyers(eventId) + "}");
+    }
+    
+    // Recompute all sales counters from the bookings collection in the background
+    @PostMapping(value = "/api/admin/bookings/stats/rebuild", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> rebuildStats(
+            @RequestHeader("Authorization") String authToken) {
+        
+        try {
+            // Verify token (admin check should be added in real app)
+            if (firebaseService.verifyToken(authToken) == null) {
+                logger.error("Invalid authentication token for stats rebuild");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            if (!bookingStatsService.startRebuild()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body("{\"error\": \"A stats rebuild is already running\"}");
+            }
+            
+            JSONObject response = new JSONObject();
+            response.put("message", "Stats rebuild started");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(response.toString());
+        } catch (Exception e) {
+            logger.error("Error starting stats rebuild: {}", e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Export bookings as CSV or NDJSON, gzip-compressed by default, streamed straight to the response
+    @GetMapping("/api/admin/bookings/export")
+    public void exportBookings(
+            @RequestHeader("Authorization") String authToken,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer eventId,
+            @RequestParam(defaultValue = "true") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        
+        // Verify token (admin check should be added in real app)
+        if (firebaseService.verifyToken(authToken) == null) {
+            logger.error("Invalid authentication token for booking export");
+            writeError(response, HttpStatus.UNAUTHORIZED, "Invalid token");
+            return;
+        }
+        
+        BookingExportService.Format exportFormat;
+        try {
+            exportFormat = BookingExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            writeError(response, HttpStatus.BAD_REQUEST, "format must be csv or ndjson");
+            return;
+        }
+        
+        // A compressed export is a .gz file in its own right, not a transfer encoding: clients must
+        // save it as is rather than transparently decompress it under a .gz name
+        String fileName = "bookings." + format.toLowerCase() + (gzip ? ".gz" : "");
+        if (gzip) {
+            response.setContentType("application/gzip");
+        } else {
+            response.setContentType(exportFormat == BookingExportService.Format.CSV ? "text/csv" : "application/x-ndjson");
+            response.setCharacterEncoding("UTF-8");
+        }
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        
+        // Written synchronously on the request thread, so long exports are not cut off by the async timeout
+        OutputStream out = response.getOutputStream();
+        try {
+            if (gzip) {
+                try (GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024)) {
+                    bookingExportService.export(exportFormat, from, to, eventId, compressed);
+                }
+            } else {
+                bookingExportService.export(exportFormat, from, to, eventId, out);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Usually the client went away mid-download
+            logger.warn("Booking export aborted: {}", e.getMessage());
+        }
+    }
+    
+    // The waitlist of an event in serving order
+    @GetMapping(value = "/api/admin/bookings/waitlist/events/{eventId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getEventWaitlist(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable int eventId) {
+        
+        try {
+            // Verify token (admin check should be added in real app)
+            if (firebaseService.verifyToken(authToken) == null) {
+                logger.error("Invalid authentication token for event waitlist");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            JSONArray entries = new JSONArray();
+            for (WaitlistEntry entry : waitlistService.getEventQueue(eventId)) {
+                entries.put(entry.toJSON());
+            }
+            return ResponseEntity.ok(entries.toString());
+        } catch (Exception e) {
+            logger.error("Error getting waitlist for event {}: {}", eventId, e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Cancel an event: every active booking is cancelled in the background and the tickets returned in one adjustment
+    @PostMapping(value = "/api/admin/bookings/events/{eventId}/cancellation", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> cancelEventBookings(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable int eventId) {
+        
+        try {
+            // Verify token (admin check should be added in real app)
+            if (firebaseService.verifyToken(authToken) == null) {
+                logger.error("Invalid authentication token for event cancellation");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            Document job = eventCancellationService.start(eventId, authToken);
+            if (job == null) {
+                return createErrorResponse(new RuntimeException("Cancellation of this event is already running"), HttpStatus.CONFLICT);
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toJson());
+        } catch (Exception e) {
+            logger.error("Error starting cancellation of event {}: {}", eventId, e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Progress of an event cancellation
+    @GetMapping(value = "/api/admin/bookings/events/{eventId}/cancellation", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getEventCancellation(
+            @RequestHeader("Authorization") String authToken,
+            @PathVariable int eventId) {
+        
+        try {
+            // Verify token (admin check should be added in real app)
+            if (firebaseService.verifyToken(authToken) == null) {
+                logger.error("Invalid authentication token for event cancellation progress");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            Document job = eventCancellationService.getJob(eventId);
+            if (job == null) {
+                return createErrorResponse(new RuntimeException("This event has not been cancelled"), HttpStatus.NOT_FOUND);
+            }
+            return ResponseEntity.ok(job.toJson());
+        } catch (Exception e) {
+            logger.error("Error getting cancellation of event {}: {}", eventId, e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Compare ticket update bus implementations (throughput and latency) on throwaway queues
+    @PostMapping(value = "/api/admin/bookings/bus/benchmark", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> benchmarkTicketUpdateBus(
+            @RequestHeader("Authorization") String authToken,
+            @RequestParam(defaultValue = "memory,mongo") List<String> types,
+            @RequestParam(defaultValue = "10000") int messages,
+            @RequestParam(defaultValue = "4") int producers) {
+        
+        try {
+            // Only exposed where ticket.bus.benchmark.enabled is set, never in production
+            if (!ticketUpdateBusBenchmark.isEnabled()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body("{\"error\": \"Ticket update bus benchmark is disabled\"}");
+            }
+            
+            // Verify token (admin check should be added in real app)
+            if (firebaseService.verifyToken(authToken) == null) {
+                logger.error("Invalid authentication token for ticket update bus benchmark");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                        .body("{\"error\": \"Invalid token\"}");
+            }
+            
+            return ResponseEntity.ok(ticketUpdateBusBenchmark.run(types, messages, producers).toString());
+        } catch (IllegalArgumentException e) {
+            return createErrorResponse(e, HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            logger.error("Error running ticket update bus benchmark: {}", e.getMessage(), e);
+            return createErrorResponse(e, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     // Get any booking by ID (admin access)
     @GetMapping(value = "/api/admin/bookings/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<String> getBookingByIdAdmin(
@@ -343,6 +867,15 @@ public ResponseEntity<String> getBookingsForEvent(@PathVariable int eventId) {
         }
     }
     
+    // Error body for handlers that write to the servlet response directly
+    private void writeError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        JSONObject error = new JSONObject();
+        error.put("error", message);
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(error.toString());
+    }
+    
     // Helper method for creating error responses
     private ResponseEntity<String> createErrorResponse(Exception e, HttpStatus status) {
         try {
@@ -3,23 +3,35 @@ package com.example.booking.model;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
 @Document(collection = "bookings")
+@CompoundIndex(name = "status_bookingTime", def = "{'status': 1, 'bookingTime': -1}")
 public class Booking {
 
     @Id
     private String id;
+    @Indexed
     private String userFirebaseUid;
+    @Indexed
     private int eventId;
     private int ticketsBooked;
     private double totalPrice;
     private String currency;
+    @Indexed
     private LocalDateTime bookingTime;
     private BookingStatus status;
+    private EventSnapshot eventSnapshot; // Event display fields as of booking time (null for older bookings)
+    private String cancellationRun; // Event cancellation run that cancelled this booking (null otherwise)
+
+    @Version
+    private Long version; // Optimistic locking; bumped on every save
 
     // Possible booking statuses
     public enum BookingStatus {
@@ -109,6 +121,30 @@ public class Booking {
         this.status = status;
     }
 
+    public EventSnapshot getEventSnapshot() {
+        return eventSnapshot;
+    }
+    
+    public void setEventSnapshot(EventSnapshot eventSnapshot) {
+        this.eventSnapshot = eventSnapshot;
+    }
+
+    public String getCancellationRun() {
+        return cancellationRun;
+    }
+    
+    public void setCancellationRun(String cancellationRun) {
+        this.cancellationRun = cancellationRun;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     // Convert Booking to JSONObject for API responses
     public JSONObject toJSON() throws JSONException {
         JSONObject json = new JSONObject();
@@ -130,6 +166,13 @@ public class Booking {
         }
         
         json.put("status", status.toString());
+        json.put("version", version != null ? version : JSONObject.NULL);
+        if (cancellationRun != null) {
+            json.put("cancelledWithEvent", true);
+        }
+        if (eventSnapshot != null) {
+            json.put("event", eventSnapshot.toJSON(eventId));
+        }
         
         return json;
     }
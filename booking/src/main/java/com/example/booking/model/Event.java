@@ -1,5 +1,8 @@
 package com.example.booking.model;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 // This is a simplified Event model just for the Booking service
 public class Event {
     
@@ -10,6 +13,8 @@ public class Event {
     private double price;
     private String date;
     private String time;
+    private String venue;
+    private String city;
 
     // Default constructor
     public Event() {
@@ -64,4 +69,32 @@ public class Event {
     public void setTime(String time) {
         this.time = time;
     }
-}
\ No newline at end of file
+
+    public String getVenue() {
+        return venue;
+    }
+    public void setVenue(String venue) {
+        this.venue = venue;
+    }
+
+    public String getCity() {
+        return city;
+    }
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    // Summary embedded in enriched booking responses
+    public JSONObject toJSON() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("name", name != null ? name : JSONObject.NULL);
+        json.put("type", type != null ? type : JSONObject.NULL);
+        json.put("venue", venue != null ? venue : JSONObject.NULL);
+        json.put("city", city != null ? city : JSONObject.NULL);
+        json.put("date", date != null ? date : JSONObject.NULL);
+        json.put("time", time != null ? time : JSONObject.NULL);
+        json.put("price", price);
+        return json;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.booking.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Objects;
+
+// Display fields of an event copied into a booking when it is made, so reading a booking
+// needs no call to the Event Service. Replaced as a whole by EventSnapshotRefresher.
+// Serialised with the same fields as Event.toJSON, so bookings look alike with or without one.
+public class EventSnapshot {
+
+    private final String name;
+    private final String type;
+    private final String date;
+    private final String time;
+    private final String venue;
+    private final String city;
+    private final Double price; // Null in snapshots taken before it was copied
+
+    public EventSnapshot(String name, String type, String date, String time, String venue, String city, Double price) {
+        this.name = name;
+        this.type = type;
+        this.date = date;
+        this.time = time;
+        this.venue = venue;
+        this.city = city;
+        this.price = price;
+    }
+
+    public static EventSnapshot of(Event event) {
+        return new EventSnapshot(event.getName(), event.getType(), event.getDate(), event.getTime(), event.getVenue(),
+                event.getCity(), event.getPrice());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getDate() {
+        return date;
+    }
+
+    public String getTime() {
+        return time;
+    }
+
+    public String getVenue() {
+        return venue;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public JSONObject toJSON(int eventId) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("id", eventId);
+        json.put("name", name != null ? name : JSONObject.NULL);
+        json.put("type", type != null ? type : JSONObject.NULL);
+        json.put("venue", venue != null ? venue : JSONObject.NULL);
+        json.put("city", city != null ? city : JSONObject.NULL);
+        json.put("date", date != null ? date : JSONObject.NULL);
+        json.put("time", time != null ? time : JSONObject.NULL);
+        json.put("price", price != null ? price : JSONObject.NULL);
+        return json;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EventSnapshot other)) {
+            return false;
+        }
+        return Objects.equals(name, other.name) && Objects.equals(type, other.type)
+                && Objects.equals(date, other.date) && Objects.equals(time, other.time)
+                && Objects.equals(venue, other.venue) && Objects.equals(city, other.city)
+                && Objects.equals(price, other.price);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, type, date, time, venue, city, price);
+    }
+}
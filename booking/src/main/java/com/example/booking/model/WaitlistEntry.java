@@ -0,0 +1,164 @@
+package com.example.booking.model;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+@Document(collection = "waitlist")
+@CompoundIndexes({
+    @CompoundIndex(name = "eventId_status_position", def = "{'eventId': 1, 'status': 1, 'position': 1}"),
+    @CompoundIndex(name = "one_waiting_per_user", def = "{'eventId': 1, 'userFirebaseUid': 1}",
+            unique = true, partialFilter = "{'status': 'WAITING'}"),
+    @CompoundIndex(name = "userFirebaseUid_joinedAt", def = "{'userFirebaseUid': 1, 'joinedAt': -1}")
+})
+public class WaitlistEntry {
+
+    @Id
+    private String id;
+    private int eventId;
+    private String userFirebaseUid;
+    private int ticketsRequested;
+    private long position; // Place in the event's queue; lower is served first
+    private WaitlistStatus status;
+    private LocalDateTime joinedAt;
+    private LocalDateTime expiresAt;
+    private LocalDateTime allocatedAt;
+    private String bookingId; // Booking created for this entry once allocated
+    private LocalDateTime blockedSince; // When this entry first headed the queue without enough tickets for it
+
+    // Possible waitlist statuses
+    public enum WaitlistStatus {
+        WAITING,     // In the queue
+        ALLOCATING,  // Claimed by the allocator, booking in progress
+        ALLOCATED,   // Tickets booked for the user
+        CANCELLED,   // User left the queue
+        EXPIRED      // Not served before expiresAt
+    }
+
+    // Default constructor
+    public WaitlistEntry() {
+    }
+
+    // Constructor for a new entry
+    public WaitlistEntry(int eventId, String userFirebaseUid, int ticketsRequested, long position, LocalDateTime expiresAt) {
+        this.eventId = eventId;
+        this.userFirebaseUid = userFirebaseUid;
+        this.ticketsRequested = ticketsRequested;
+        this.position = position;
+        this.expiresAt = expiresAt;
+        this.status = WaitlistStatus.WAITING;
+        this.joinedAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    public void setEventId(int eventId) {
+        this.eventId = eventId;
+    }
+
+    public String getUserFirebaseUid() {
+        return userFirebaseUid;
+    }
+
+    public void setUserFirebaseUid(String userFirebaseUid) {
+        this.userFirebaseUid = userFirebaseUid;
+    }
+
+    public int getTicketsRequested() {
+        return ticketsRequested;
+    }
+
+    public void setTicketsRequested(int ticketsRequested) {
+        this.ticketsRequested = ticketsRequested;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    public WaitlistStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(WaitlistStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getJoinedAt() {
+        return joinedAt;
+    }
+
+    public void setJoinedAt(LocalDateTime joinedAt) {
+        this.joinedAt = joinedAt;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getAllocatedAt() {
+        return allocatedAt;
+    }
+
+    public void setAllocatedAt(LocalDateTime allocatedAt) {
+        this.allocatedAt = allocatedAt;
+    }
+
+    public String getBookingId() {
+        return bookingId;
+    }
+
+    public void setBookingId(String bookingId) {
+        this.bookingId = bookingId;
+    }
+
+    public LocalDateTime getBlockedSince() {
+        return blockedSince;
+    }
+
+    public void setBlockedSince(LocalDateTime blockedSince) {
+        this.blockedSince = blockedSince;
+    }
+
+    // Convert WaitlistEntry to JSONObject for API responses
+    public JSONObject toJSON() throws JSONException {
+        DateTimeFormatter formatter = DateTimeFormatter.ISO_DATE_TIME;
+        JSONObject json = new JSONObject();
+        json.put("id", id);
+        json.put("eventId", eventId);
+        json.put("userFirebaseUid", userFirebaseUid);
+        json.put("ticketsRequested", ticketsRequested);
+        json.put("position", position);
+        json.put("status", status.toString());
+        json.put("joinedAt", joinedAt != null ? joinedAt.format(formatter) : JSONObject.NULL);
+        json.put("expiresAt", expiresAt != null ? expiresAt.format(formatter) : JSONObject.NULL);
+        json.put("allocatedAt", allocatedAt != null ? allocatedAt.format(formatter) : JSONObject.NULL);
+        json.put("bookingId", bookingId != null ? bookingId : JSONObject.NULL);
+        return json;
+    }
+}
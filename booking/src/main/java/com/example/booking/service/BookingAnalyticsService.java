@@ -0,0 +1,477 @@
+package com.example.booking.service;
+
+import com.example.booking.analytics.HyperLogLog;
+import com.example.booking.analytics.SpaceSaving;
+import com.example.booking.analytics.TDigest;
+import com.example.booking.model.Booking;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Real-time booking dashboard built from sketches with bounded memory:
+ * HyperLogLog unique buyers (overall and per event), t-digests of tickets per booking and ticket price,
+ * and Space-Saving top events by tickets booked and cancelled over 5 minute, 1 hour and 24 hour windows
+ * (assembled from per-minute summaries).
+ *
+ * Booking creates and cancels are handed to a single worker thread, so the booking path never waits.
+ * Each replica persists its own sketches to analytics_sketches and merges those of its peers, and the
+ * dashboard JSON is rebuilt on a timer so queries only read a prepared string.
+ *
+ * Replica IDs default to the host name, which changes whenever a container is replaced. Every replica
+ * therefore writes a heartbeat, and the sketches of a replica whose heartbeat has gone stale are adopted
+ * by whichever live replica claims them first: folded into its own sketches and deleted, so history is
+ * kept without documents of dead replicas piling up.
+ */
+@Service
+public class BookingAnalyticsService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BookingAnalyticsService.class);
+    
+    private static final String COLLECTION = "analytics_sketches";
+    private static final int HLL_PRECISION = 12;
+    private static final double DIGEST_COMPRESSION = 100;
+    private static final long[] WINDOW_MINUTES = { 5, 60, 1440 };
+    private static final String[] WINDOW_NAMES = { "5m", "1h", "24h" };
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${booking.analytics.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${booking.analytics.replica-id:${HOSTNAME:local}}")
+    private String replicaId;
+    
+    @Value("${booking.analytics.top-k:10}")
+    private int topK;
+    
+    @Value("${booking.analytics.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    // A replica that has not persisted for this long is gone; its sketches are adopted by a live one
+    @Value("${booking.analytics.replica-expiry-ms:600000}")
+    private long replicaExpiryMs;
+    
+    private ThreadPoolExecutor worker;
+    private final AtomicLong dropped = new AtomicLong();
+    
+    // Local sketches, guarded by this
+    private final Map<Integer, HyperLogLog> buyersByEvent = new HashMap<>();
+    private HyperLogLog buyers = new HyperLogLog(HLL_PRECISION);
+    private TDigest ticketsPerBooking = new TDigest(DIGEST_COMPRESSION);
+    private TDigest ticketPrice = new TDigest(DIGEST_COMPRESSION);
+    private final TreeMap<Long, MinuteBucket> buckets = new TreeMap<>();
+    private final Set<Integer> dirtyEvents = new HashSet<>();
+    private final Set<Long> dirtyMinutes = new HashSet<>();
+    private boolean dirty;
+    
+    // Latest sketches persisted by other replicas
+    private volatile List<Document> peerState = List.of();
+    
+    // Prepared dashboard, swapped in whole
+    private volatile String dashboardJson = "{}";
+    private volatile Map<Integer, Long> uniqueBuyersByEvent = Map.of();
+    
+    // Booked and cancelled tickets per event within one minute
+    private static class MinuteBucket {
+        final SpaceSaving booked;
+        final SpaceSaving cancelled;
+        
+        MinuteBucket(SpaceSaving booked, SpaceSaving cancelled) {
+            this.booked = booked;
+            this.cancelled = cancelled;
+        }
+    }
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        worker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "booking-analytics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            restore();
+        } catch (Exception e) {
+            logger.warn("Could not restore analytics sketches for replica {}: {}", replicaId, e.getMessage());
+        }
+    }
+    
+    public void recordCreated(Booking booking) {
+        submit(() -> onCreated(booking));
+    }
+    
+    public void recordCancelled(Booking booking) {
+        submit(() -> onCancelled(booking));
+    }
+    
+    // Many cancellations for one event at once, e.g. when the event itself is cancelled
+    public void recordCancelled(int eventId, long tickets) {
+        submit(() -> onCancelled(eventId, tickets));
+    }
+    
+    public String getDashboardJson() {
+        return dashboardJson;
+    }
+    
+    // Estimated distinct buyers of one event across all replicas
+    public long getUniqueBuyers(int eventId) {
+        return uniqueBuyersByEvent.getOrDefault(eventId, 0L);
+    }
+    
+    private void submit(Runnable task) {
+        if (worker == null) {
+            return;
+        }
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) {
+            // The dashboard is approximate anyway; never slow the booking down for it
+            dropped.incrementAndGet();
+        }
+    }
+    
+    private synchronized void onCreated(Booking booking) {
+        buyers.add(booking.getUserFirebaseUid());
+        buyersByEvent.computeIfAbsent(booking.getEventId(), id -> new HyperLogLog(HLL_PRECISION))
+                .add(booking.getUserFirebaseUid());
+        ticketsPerBooking.add(booking.getTicketsBooked());
+        if (booking.getTicketsBooked() > 0) {
+            ticketPrice.add(booking.getTotalPrice() / booking.getTicketsBooked());
+        }
+        bucket(currentMinute()).booked.add(booking.getEventId(), booking.getTicketsBooked());
+        dirtyEvents.add(booking.getEventId());
+        dirty = true;
+    }
+    
+    private synchronized void onCancelled(Booking booking) {
+        onCancelled(booking.getEventId(), booking.getTicketsBooked());
+    }
+    
+    private synchronized void onCancelled(int eventId, long tickets) {
+        bucket(currentMinute()).cancelled.add(eventId, tickets);
+    }
+    
+    private MinuteBucket bucket(long minute) {
+        dirtyMinutes.add(minute);
+        return buckets.computeIfAbsent(minute, m -> new MinuteBucket(newSummary(), newSummary()));
+    }
+    
+    private SpaceSaving newSummary() {
+        // Extra counters keep the top-K accurate when summaries are merged
+        return new SpaceSaving(Math.max(50, topK * 10));
+    }
+    
+    private static long currentMinute() {
+        return System.currentTimeMillis() / 60_000;
+    }
+    
+    // Rebuild the prepared dashboard from local and peer sketches
+    @Scheduled(fixedDelayString = "${booking.analytics.refresh-ms:5000}")
+    public void refreshDashboard() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long now = currentMinute();
+            HyperLogLog allBuyers = new HyperLogLog(HLL_PRECISION);
+            Map<Integer, HyperLogLog> eventBuyers = new HashMap<>();
+            TDigest tickets = new TDigest(DIGEST_COMPRESSION);
+            TDigest prices = new TDigest(DIGEST_COMPRESSION);
+            SpaceSaving[] booked = new SpaceSaving[WINDOW_MINUTES.length];
+            SpaceSaving[] cancelled = new SpaceSaving[WINDOW_MINUTES.length];
+            for (int i = 0; i < WINDOW_MINUTES.length; i++) {
+                booked[i] = newSummary();
+                cancelled[i] = newSummary();
+            }
+            
+            synchronized (this) {
+                buckets.headMap(now - WINDOW_MINUTES[WINDOW_MINUTES.length - 1], false).clear();
+                allBuyers.merge(buyers);
+                buyersByEvent.forEach((id, sketch) -> mergeBuyers(eventBuyers, id, sketch));
+                tickets.merge(ticketsPerBooking);
+                prices.merge(ticketPrice);
+                buckets.forEach((minute, bucket) -> addToWindows(booked, cancelled, now, minute, bucket));
+            }
+            
+            for (Document document : peerState) {
+                Binary data = document.get("data", Binary.class);
+                switch (document.getString("kind")) {
+                    case "buyers" -> allBuyers.merge(HyperLogLog.fromBytes(data.getData()));
+                    case "event-buyers" -> mergeBuyers(eventBuyers, document.getInteger("eventId"),
+                            HyperLogLog.fromBytes(data.getData()));
+                    case "tickets-per-booking" -> tickets.merge(TDigest.fromBytes(data.getData()));
+                    case "ticket-price" -> prices.merge(TDigest.fromBytes(data.getData()));
+                    case "minute" -> addToWindows(booked, cancelled, now, document.getLong("minute"),
+                            new MinuteBucket(readSummary(document, "booked"), readSummary(document, "cancelled")));
+                    default -> { }
+                }
+            }
+            
+            Map<Integer, Long> perEvent = new HashMap<>();
+            eventBuyers.forEach((id, sketch) -> perEvent.put(id, sketch.estimate()));
+            
+            JSONObject json = new JSONObject();
+            json.put("asOf", Instant.now().toString());
+            json.put("uniqueBuyers", allBuyers.estimate());
+            json.put("uniqueBuyersByEvent", new JSONObject(perEvent));
+            json.put("ticketsPerBooking", quantiles(tickets));
+            json.put("ticketPrice", quantiles(prices));
+            JSONObject topEvents = new JSONObject();
+            JSONObject topCancelled = new JSONObject();
+            for (int i = 0; i < WINDOW_MINUTES.length; i++) {
+                topEvents.put(WINDOW_NAMES[i], top(booked[i]));
+                topCancelled.put(WINDOW_NAMES[i], top(cancelled[i]));
+            }
+            json.put("topEventsByTicketsBooked", topEvents);
+            json.put("topEventsByTicketsCancelled", topCancelled);
+            json.put("droppedUpdates", dropped.get());
+            
+            uniqueBuyersByEvent = perEvent;
+            dashboardJson = json.toString();
+        } catch (Exception e) {
+            logger.error("Failed to refresh booking dashboard: {}", e.getMessage(), e);
+        }
+    }
+    
+    private static void mergeBuyers(Map<Integer, HyperLogLog> target, int eventId, HyperLogLog sketch) {
+        target.computeIfAbsent(eventId, id -> new HyperLogLog(HLL_PRECISION)).merge(sketch);
+    }
+    
+    private static void addToWindows(SpaceSaving[] booked, SpaceSaving[] cancelled, long now, long minute, MinuteBucket bucket) {
+        for (int i = 0; i < WINDOW_MINUTES.length; i++) {
+            if (minute > now - WINDOW_MINUTES[i]) {
+                booked[i].merge(bucket.booked);
+                cancelled[i].merge(bucket.cancelled);
+            }
+        }
+    }
+    
+    private static JSONObject quantiles(TDigest digest) {
+        JSONObject json = new JSONObject();
+        json.put("count", (long) digest.count());
+        if (digest.count() > 0) {
+            json.put("mean", digest.mean());
+            json.put("p50", digest.quantile(0.5));
+            json.put("p90", digest.quantile(0.9));
+            json.put("p99", digest.quantile(0.99));
+        }
+        return json;
+    }
+    
+    private JSONArray top(SpaceSaving summary) {
+        JSONArray array = new JSONArray();
+        for (SpaceSaving.Entry entry : summary.top(topK)) {
+            JSONObject json = new JSONObject();
+            json.put("eventId", entry.item());
+            json.put("tickets", entry.count());
+            json.put("maxOverestimate", entry.error());
+            array.put(json);
+        }
+        return array;
+    }
+    
+    // Write this replica's changed sketches and load the latest from its peers
+    @Scheduled(initialDelayString = "${booking.analytics.persist-interval-ms:30000}",
+            fixedDelayString = "${booking.analytics.persist-interval-ms:30000}")
+    public void persist() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<Document> changed = new ArrayList<>();
+            synchronized (this) {
+                if (dirty) {
+                    changed.add(sketch("buyers", "buyers", buyers.toBytes()));
+                    changed.add(sketch("tickets-per-booking", "tickets-per-booking", ticketsPerBooking.toBytes()));
+                    changed.add(sketch("ticket-price", "ticket-price", ticketPrice.toBytes()));
+                }
+                for (Integer eventId : dirtyEvents) {
+                    changed.add(sketch("event-buyers:" + eventId, "event-buyers", buyersByEvent.get(eventId).toBytes())
+                            .append("eventId", eventId));
+                }
+                for (Long minute : dirtyMinutes) {
+                    MinuteBucket bucket = buckets.get(minute);
+                    if (bucket != null) {
+                        changed.add(new Document("_id", replicaId + ":minute:" + minute)
+                                .append("replica", replicaId)
+                                .append("kind", "minute")
+                                .append("minute", minute)
+                                .append("booked", writeSummary(bucket.booked))
+                                .append("cancelled", writeSummary(bucket.cancelled)));
+                    }
+                }
+                dirty = false;
+                dirtyEvents.clear();
+                dirtyMinutes.clear();
+            }
+            
+            changed.add(new Document("_id", replicaId + ":heartbeat")
+                    .append("replica", replicaId)
+                    .append("kind", "heartbeat")
+                    .append("at", new Date()));
+            if (!changed.isEmpty()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+                for (Document document : changed) {
+                    document.append("updatedAt", Instant.now().toString());
+                    bulk.replaceOne(new Query(Criteria.where("_id").is(document.get("_id"))), document,
+                            FindAndReplaceOptions.options().upsert());
+                }
+                bulk.execute();
+            }
+            
+            // Minute summaries older than the longest window are no longer needed by anyone
+            long cutoff = currentMinute() - WINDOW_MINUTES[WINDOW_MINUTES.length - 1];
+            mongoTemplate.remove(new Query(Criteria.where("kind").is("minute").and("minute").lte(cutoff)), COLLECTION);
+            
+            adoptStaleReplicas();
+            peerState = mongoTemplate.find(new Query(Criteria.where("replica").ne(replicaId)), Document.class, COLLECTION);
+        } catch (Exception e) {
+            logger.warn("Failed to persist analytics sketches: {}", e.getMessage());
+        }
+    }
+    
+    // Fold the sketches of replicas that stopped persisting into this one's and delete them
+    private void adoptStaleReplicas() {
+        Date stale = new Date(System.currentTimeMillis() - replicaExpiryMs);
+        Query heartbeats = new Query(Criteria.where("kind").is("heartbeat").and("replica").ne(replicaId).and("at").lt(stale));
+        for (Document heartbeat : mongoTemplate.find(heartbeats, Document.class, COLLECTION)) {
+            // Removing the heartbeat is the claim: only one live replica gets to adopt each dead one
+            Query claim = new Query(Criteria.where("_id").is(heartbeat.get("_id")).and("at").is(heartbeat.get("at")));
+            if (mongoTemplate.findAndRemove(claim, Document.class, COLLECTION) == null) {
+                continue;
+            }
+            String staleReplica = heartbeat.getString("replica");
+            Query sketches = new Query(Criteria.where("replica").is(staleReplica));
+            List<Document> documents = mongoTemplate.find(sketches, Document.class, COLLECTION);
+            synchronized (this) {
+                for (Document document : documents) {
+                    adopt(document);
+                }
+                dirty = true;
+            }
+            mongoTemplate.remove(sketches, COLLECTION);
+            logger.info("Adopted {} analytics sketches of stale replica {}", documents.size(), staleReplica);
+        }
+    }
+    
+    private void adopt(Document document) {
+        Binary data = document.get("data", Binary.class);
+        switch (document.getString("kind")) {
+            case "buyers" -> buyers.merge(HyperLogLog.fromBytes(data.getData()));
+            case "event-buyers" -> {
+                int eventId = document.getInteger("eventId");
+                buyersByEvent.computeIfAbsent(eventId, id -> new HyperLogLog(HLL_PRECISION))
+                        .merge(HyperLogLog.fromBytes(data.getData()));
+                dirtyEvents.add(eventId);
+            }
+            case "tickets-per-booking" -> ticketsPerBooking.merge(TDigest.fromBytes(data.getData()));
+            case "ticket-price" -> ticketPrice.merge(TDigest.fromBytes(data.getData()));
+            case "minute" -> {
+                MinuteBucket bucket = bucket(document.getLong("minute"));
+                bucket.booked.merge(readSummary(document, "booked"));
+                bucket.cancelled.merge(readSummary(document, "cancelled"));
+            }
+            default -> { }
+        }
+    }
+    
+    private Document sketch(String key, String kind, byte[] data) {
+        return new Document("_id", replicaId + ":" + key)
+                .append("replica", replicaId)
+                .append("kind", kind)
+                .append("data", new Binary(data));
+    }
+    
+    // Reload this replica's own sketches after a restart
+    private synchronized void restore() {
+        long cutoff = currentMinute() - WINDOW_MINUTES[WINDOW_MINUTES.length - 1];
+        int restored = 0;
+        for (Document document : mongoTemplate.find(new Query(Criteria.where("replica").is(replicaId)), Document.class, COLLECTION)) {
+            Binary data = document.get("data", Binary.class);
+            switch (document.getString("kind")) {
+                case "buyers" -> buyers = HyperLogLog.fromBytes(data.getData());
+                case "event-buyers" -> buyersByEvent.put(document.getInteger("eventId"), HyperLogLog.fromBytes(data.getData()));
+                case "tickets-per-booking" -> ticketsPerBooking = TDigest.fromBytes(data.getData());
+                case "ticket-price" -> ticketPrice = TDigest.fromBytes(data.getData());
+                case "minute" -> {
+                    long minute = document.getLong("minute");
+                    if (minute > cutoff) {
+                        buckets.put(minute, new MinuteBucket(readSummary(document, "booked"), readSummary(document, "cancelled")));
+                    }
+                }
+                default -> { }
+            }
+            restored++;
+        }
+        if (restored > 0) {
+            logger.info("Restored {} analytics sketches for replica {}", restored, replicaId);
+        }
+    }
+    
+    private static List<List<Long>> writeSummary(SpaceSaving summary) {
+        List<List<Long>> entries = new ArrayList<>();
+        for (SpaceSaving.Entry entry : summary.entries()) {
+            entries.add(List.of((long) entry.item(), entry.count(), entry.error()));
+        }
+        return entries;
+    }
+    
+    private SpaceSaving readSummary(Document document, String field) {
+        List<SpaceSaving.Entry> entries = new ArrayList<>();
+        for (Object value : document.getList(field, Object.class, List.of())) {
+            List<?> entry = (List<?>) value;
+            entries.add(new SpaceSaving.Entry(((Number) entry.get(0)).intValue(),
+                    ((Number) entry.get(1)).longValue(), ((Number) entry.get(2)).longValue()));
+        }
+        return SpaceSaving.of(Math.max(50, topK * 10), entries);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (worker == null) {
+            return;
+        }
+        worker.shutdown();
+        try {
+            worker.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        persist();
+    }
+}
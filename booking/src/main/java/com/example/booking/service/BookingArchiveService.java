@@ -0,0 +1,205 @@
+package com.example.booking.service;
+
+import com.example.booking.model.Booking;
+import com.example.booking.model.Event;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves cold bookings out of the hot bookings collection into bookings_archive, which only carries
+ * the indexes history lookups need. A booking is cold once it is older than the retention window
+ * and is either cancelled or for an event that has already taken place.
+ */
+@Service
+public class BookingArchiveService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BookingArchiveService.class);
+    
+    public static final String ARCHIVE_COLLECTION = "bookings_archive";
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private EventProjectionService eventProjectionService;
+    
+    @Value("${booking.archive.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${booking.archive.retention-days:90}")
+    private int retentionDays;
+    
+    @Value("${booking.archive.batch-size:500}")
+    private int batchSize;
+    
+    @Value("${booking.archive.batch-pause-ms:100}")
+    private long batchPauseMs;
+    
+    private final AtomicBoolean running = new AtomicBoolean();
+    
+    @PostConstruct
+    public void ensureIndexes() {
+        try {
+            mongoTemplate.indexOps(ARCHIVE_COLLECTION).ensureIndex(new Index().on("userFirebaseUid", Sort.Direction.ASC));
+            mongoTemplate.indexOps(ARCHIVE_COLLECTION).ensureIndex(new Index().on("eventId", Sort.Direction.ASC));
+        } catch (Exception e) {
+            logger.warn("Failed to create booking archive indexes: {}", e.getMessage());
+        }
+    }
+    
+    @Scheduled(cron = "${booking.archive.cron:0 30 3 * * *}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archive();
+        }
+    }
+    
+    /**
+     * Move all currently cold bookings in batches. Each batch is upserted into the archive first and then
+     * removed from bookings only if its version is unchanged. A booking modified mid-move stays hot, its
+     * archive copy is deleted again, and it is simply moved on the next run.
+     * @return the number of bookings moved, or -1 if a run is already in progress
+     */
+    public long archive() {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        long moved = 0;
+        long start = System.currentTimeMillis();
+        try {
+            Object lastId = null;
+            while (true) {
+                Query query = new Query(coldCriteria(lastId)).with(Sort.by(Sort.Direction.ASC, "_id")).limit(batchSize);
+                List<Document> found = mongoTemplate.find(query, Document.class, "bookings");
+                if (found.isEmpty()) {
+                    break;
+                }
+                lastId = found.get(found.size() - 1).get("_id");
+                List<Document> batch = withoutUpcoming(found);
+                if (batch.isEmpty()) {
+                    if (found.size() < batchSize) {
+                        break;
+                    }
+                    continue;
+                }
+                
+                BulkOperations copy = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ARCHIVE_COLLECTION);
+                BulkOperations remove = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "bookings");
+                for (Document booking : batch) {
+                    copy.replaceOne(new Query(Criteria.where("_id").is(booking.get("_id"))), booking,
+                            FindAndReplaceOptions.options().upsert());
+                    remove.remove(new Query(Criteria.where("_id").is(booking.get("_id")).and("version").is(booking.get("version"))));
+                }
+                copy.execute();
+                int removed = remove.execute().getDeletedCount();
+                if (removed < batch.size()) {
+                    dropStaleCopies(batch);
+                }
+                moved += removed;
+                
+                if (found.size() < batchSize) {
+                    break;
+                }
+                Thread.sleep(batchPauseMs);
+            }
+            logger.info("Archived {} bookings in {} ms", moved, System.currentTimeMillis() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Booking archive run failed after moving {} bookings", moved, e);
+        } finally {
+            running.set(false);
+        }
+        return moved;
+    }
+    
+    public List<Booking> findByUserFirebaseUid(String userFirebaseUid) {
+        return mongoTemplate.find(new Query(Criteria.where("userFirebaseUid").is(userFirebaseUid)), Booking.class, ARCHIVE_COLLECTION);
+    }
+    
+    public Optional<Booking> findById(String bookingId) {
+        return Optional.ofNullable(mongoTemplate.findById(bookingId, Booking.class, ARCHIVE_COLLECTION));
+    }
+    
+    // Bookings from before event snapshots existed only carry the event ID; keep those whose event
+    // is not known to be over, whatever their age
+    private List<Document> withoutUpcoming(List<Document> bookings) {
+        Set<Integer> eventIds = new HashSet<>();
+        for (Document booking : bookings) {
+            if (booking.get("eventSnapshot") == null && !isCancelled(booking)) {
+                eventIds.add(((Number) booking.get("eventId")).intValue());
+            }
+        }
+        if (eventIds.isEmpty()) {
+            return bookings;
+        }
+        
+        Map<Integer, Event> events = eventProjectionService.getEvents(eventIds);
+        String today = LocalDate.now().toString();
+        List<Document> cold = new ArrayList<>();
+        for (Document booking : bookings) {
+            if (booking.get("eventSnapshot") == null && !isCancelled(booking)) {
+                Event event = events.get(((Number) booking.get("eventId")).intValue());
+                if (event == null || event.getDate() == null || event.getDate().compareTo(today) >= 0) {
+                    continue;
+                }
+            }
+            cold.add(booking);
+        }
+        return cold;
+    }
+    
+    private static boolean isCancelled(Document booking) {
+        return Booking.BookingStatus.CANCELLED.name().equals(booking.getString("status"));
+    }
+    
+    // Bookings that changed mid-move are still hot; remove their copies so no reader sees them twice
+    private void dropStaleCopies(List<Document> batch) {
+        List<Object> ids = batch.stream().map(booking -> booking.get("_id")).toList();
+        Query stillHot = new Query(Criteria.where("_id").in(ids));
+        stillHot.fields().include("_id");
+        List<Object> staleIds = mongoTemplate.find(stillHot, Document.class, "bookings").stream()
+                .map(booking -> booking.get("_id")).toList();
+        if (!staleIds.isEmpty()) {
+            mongoTemplate.remove(new Query(Criteria.where("_id").in(staleIds)), ARCHIVE_COLLECTION);
+            logger.info("{} bookings changed while being archived; left them in bookings", staleIds.size());
+        }
+    }
+    
+    // Older than the retention window, and cancelled or for an event that is already over
+    private Criteria coldCriteria(Object afterId) {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        Criteria criteria = Criteria.where("bookingTime").lt(Date.from(cutoff.atZone(ZoneId.systemDefault()).toInstant()))
+                .orOperator(
+                        Criteria.where("status").is(Booking.BookingStatus.CANCELLED.name()),
+                        Criteria.where("eventSnapshot.date").lt(LocalDate.now().toString()),
+                        // Bookings from before event snapshots existed: checked against the projection
+                        Criteria.where("eventSnapshot").exists(false));
+        return afterId != null ? criteria.and("_id").gt(afterId) : criteria;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.booking.service;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes bookings as CSV or NDJSON straight from a MongoDB cursor, one row at a time,
+ * so an export of any size runs in constant memory.
+ */
+@Service
+public class BookingExportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BookingExportService.class);
+    
+    private static final String[] COLUMNS = { "id", "userFirebaseUid", "eventId", "ticketsBooked", "totalPrice",
+            "currency", "bookingTime", "status" };
+    
+    public enum Format {
+        CSV, NDJSON
+    }
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${booking.export.batch-size:2000}")
+    private int batchSize;
+    
+    /**
+     * Stream matching bookings to the output. Null filters are not applied; from is inclusive and to exclusive.
+     * @return the number of bookings written
+     */
+    public long export(Format format, LocalDateTime from, LocalDateTime to, Integer eventId, OutputStream out) throws IOException {
+        long start = System.currentTimeMillis();
+        long rows = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        
+        if (format == Format.CSV) {
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+        
+        // Hot bookings first, then the archive, so the export covers the full history
+        for (String collection : List.of("bookings", BookingArchiveService.ARCHIVE_COLLECTION)) {
+            try (MongoCursor<Document> cursor = mongoTemplate.getCollection(collection)
+                    .find(filter(from, to, eventId))
+                    .projection(Projections.include("userFirebaseUid", "eventId", "ticketsBooked", "totalPrice",
+                            "currency", "bookingTime", "status"))
+                    .batchSize(batchSize)
+                    .cursor()) {
+                while (cursor.hasNext()) {
+                    Object[] values = row(cursor.next());
+                    if (format == Format.CSV) {
+                        writeCsv(writer, values);
+                    } else {
+                        writeJson(writer, values);
+                    }
+                    rows++;
+                }
+            }
+        }
+        writer.flush();
+        
+        logger.info("Exported {} bookings as {} in {} ms", rows, format, System.currentTimeMillis() - start);
+        return rows;
+    }
+    
+    private static Bson filter(LocalDateTime from, LocalDateTime to, Integer eventId) {
+        List<Bson> conditions = new ArrayList<>();
+        if (from != null) {
+            conditions.add(Filters.gte("bookingTime", toDate(from)));
+        }
+        if (to != null) {
+            conditions.add(Filters.lt("bookingTime", toDate(to)));
+        }
+        if (eventId != null) {
+            conditions.add(Filters.eq("eventId", eventId));
+        }
+        return conditions.isEmpty() ? new Document() : Filters.and(conditions);
+    }
+    
+    // LocalDateTime is stored as a Date in the JVM's zone, so convert the same way
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+    
+    // Column values in COLUMNS order; bookingTime formatted as in Booking.toJSON()
+    private static Object[] row(Document booking) {
+        Date bookingTime = booking.getDate("bookingTime");
+        return new Object[] {
+                booking.getObjectId("_id").toHexString(),
+                booking.get("userFirebaseUid"),
+                booking.get("eventId"),
+                booking.get("ticketsBooked"),
+                booking.get("totalPrice"),
+                booking.get("currency"),
+                bookingTime != null
+                        ? LocalDateTime.ofInstant(bookingTime.toInstant(), ZoneId.systemDefault()).format(DateTimeFormatter.ISO_DATE_TIME)
+                        : null,
+                booking.get("status")
+        };
+    }
+    
+    private static void writeCsv(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                String value = values[i].toString();
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                    writer.write('"');
+                    writer.write(value.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(value);
+                }
+            }
+        }
+        writer.write('\n');
+    }
+    
+    private static void writeJson(Writer writer, Object[] values) throws IOException {
+        writer.write('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(JSONObject.quote(COLUMNS[i]));
+            writer.write(':');
+            Object value = values[i];
+            if (value == null) {
+                writer.write("null");
+            } else if (value instanceof Number) {
+                writer.write(value.toString());
+            } else {
+                writer.write(JSONObject.quote(value.toString()));
+            }
+        }
+        writer.write("}\n");
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.booking.service;
+
+import com.example.booking.model.Booking;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Admin booking reports joined with event and user details in a single aggregation:
+ * $match (indexed) -> $sort -> $facet { page: $skip/$limit -> $lookup events/users -> $project, total: $count }.
+ * Lookups run after pagination, so only the rows of the requested page are joined.
+ */
+@Service
+public class BookingReportService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BookingReportService.class);
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${booking.report.max-page-size:200}")
+    private int maxPageSize;
+    
+    /**
+     * Run the report for one page. Null filters are not applied; from is inclusive and to exclusive.
+     * @return {"page", "size", "total", "bookings": [...]} as a JSON-ready document
+     */
+    public Document getReport(Booking.BookingStatus status, Integer eventId, String userFirebaseUid,
+            LocalDateTime from, LocalDateTime to, int page, int size) {
+        if (page < 0 || size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("page must be >= 0 and size between 1 and " + maxPageSize);
+        }
+        
+        List<AggregationOperation> pageStages = new ArrayList<>();
+        pageStages.add(Aggregation.skip((long) page * size));
+        pageStages.add(Aggregation.limit(size));
+        pageStages.add(lookup("events", "eventId", "_id", "event",
+                new Document("name", 1).append("type", 1).append("venue", 1).append("city", 1)
+                        .append("date", 1).append("time", 1)));
+        pageStages.add(lookup("users", "userFirebaseUid", "firebaseUid", "user",
+                new Document("_id", 0).append("email", 1).append("fullName", 1)));
+        pageStages.add(context -> new Document("$project", new Document("_id", 0)
+                .append("id", new Document("$toString", "$_id"))
+                .append("eventId", 1)
+                .append("userFirebaseUid", 1)
+                .append("ticketsBooked", 1)
+                .append("totalPrice", 1)
+                .append("currency", 1)
+                .append("status", 1)
+                .append("bookingTime", new Document("$dateToString", new Document("date", "$bookingTime")
+                        .append("format", "%Y-%m-%dT%H:%M:%S.%LZ")))
+                .append("event", new Document("$first", "$event"))
+                .append("user", new Document("$first", "$user"))));
+        
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria(status, eventId, userFirebaseUid, from, to)),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "bookingTime", "_id")),
+                Aggregation.facet(pageStages.toArray(new AggregationOperation[0])).as("bookings")
+                        .and(Aggregation.count().as("total")).as("total"));
+        
+        long start = System.currentTimeMillis();
+        Document result = mongoTemplate.aggregate(aggregation, "bookings", Document.class).getUniqueMappedResult();
+        
+        List<?> bookings = result != null ? result.getList("bookings", Object.class) : List.of();
+        List<?> totals = result != null ? result.getList("total", Document.class) : List.of();
+        long total = totals.isEmpty() ? 0 : ((Number) ((Document) totals.get(0)).get("total")).longValue();
+        
+        logger.info("Booking report page {} ({} rows of {}) built in {} ms",
+                page, bookings.size(), total, System.currentTimeMillis() - start);
+        
+        return new Document("page", page)
+                .append("size", size)
+                .append("total", total)
+                .append("bookings", bookings);
+    }
+    
+    // Each field maps to an index on bookings (see Booking), so the $match never scans the collection
+    private Criteria criteria(Booking.BookingStatus status, Integer eventId, String userFirebaseUid,
+            LocalDateTime from, LocalDateTime to) {
+        List<Criteria> conditions = new ArrayList<>();
+        if (status != null) {
+            conditions.add(Criteria.where("status").is(status.name()));
+        }
+        if (eventId != null) {
+            conditions.add(Criteria.where("eventId").is(eventId));
+        }
+        if (userFirebaseUid != null) {
+            conditions.add(Criteria.where("userFirebaseUid").is(userFirebaseUid));
+        }
+        if (from != null || to != null) {
+            Criteria time = Criteria.where("bookingTime");
+            if (from != null) {
+                time = time.gte(toDate(from));
+            }
+            if (to != null) {
+                time = time.lt(toDate(to));
+            }
+            conditions.add(time);
+        }
+        return conditions.isEmpty() ? new Criteria() : new Criteria().andOperator(conditions);
+    }
+    
+    // LocalDateTime is stored as a Date in the JVM's zone, so convert the same way
+    private static Date toDate(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+    
+    // Equality $lookup with a projection, so joined documents never carry large fields such as event images
+    private static AggregationOperation lookup(String from, String localField, String foreignField, String as, Document fields) {
+        return context -> new Document("$lookup", new Document("from", from)
+                .append("localField", localField)
+                .append("foreignField", foreignField)
+                .append("pipeline", List.of(new Document("$project", fields)))
+                .append("as", as));
+    }
+}
@@ -2,14 +2,23 @@ package com.example.booking.service;
 
 import com.example.booking.model.Booking;
 import com.example.booking.model.Event;
+import com.example.booking.model.EventSnapshot;
 import com.example.booking.repository.BookingRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class BookingService {
@@ -22,21 +31,85 @@ public class BookingService {
     @Autowired
     private EventService eventService;
     
+    @Autowired
+    private EventProjectionService eventProjectionService;
+    
+    @Autowired
+    private BookingStatsService bookingStatsService;
+    
+    @Autowired
+    private BookingAnalyticsService bookingAnalyticsService;
+    
+    @Autowired
+    private BookingArchiveService bookingArchiveService;
+    
+    @Autowired
+    private EventCancellationService eventCancellationService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    // Lazy: the waitlist allocator books through this service
+    @Autowired
+    @Lazy
+    private WaitlistService waitlistService;
+    
     // Create a new booking
     public Booking createBooking(String userFirebaseUid, int eventId, int tickets, String authToken) {
+        Event event;
         try {
             logger.info("Creating booking for user: {}, event: {}, tickets: {}", userFirebaseUid, eventId, tickets);
             
-            // Step 1: Check if event exists and has enough tickets
-            Event event = eventService.getEventById(eventId, authToken);
+            // Step 1: Check if event exists. The projection is only trusted for availability while its
+            // change stream is live; a resynced copy can miss tickets released since the last resync
+            event = eventProjectionService.isLive() ? eventProjectionService.getEvent(eventId) : null;
+            if (event == null || event.getAvailableTickets() < tickets) {
+                Event current = eventService.getEventById(eventId, authToken);
+                if (current != null) {
+                    event = current;
+                } else if (event == null) {
+                    // Event Service unreachable: fall back to the projection; the booking call below decides
+                    event = eventProjectionService.getEvent(eventId);
+                }
+            }
             
             if (event == null) {
                 logger.error("Event not found: {}", eventId);
                 throw new RuntimeException("Event not found");
             }
             
+            // Released tickets go to the waitlist first; direct bookings only get what it cannot use
+            if (waitlistService.holdsTickets(eventId, event.getAvailableTickets())) {
+                logger.info("Event {} has a waitlist; refusing direct booking for user {}", eventId, userFirebaseUid);
+                throw new RuntimeException("Not enough tickets available: the waitlist for this event is being served first");
+            }
+        } catch (Exception e) {
+            logger.error("Error creating booking for event {} and user {}: {}", eventId, userFirebaseUid, e.getMessage(), e);
+            throw new RuntimeException("Failed to create booking: " + e.getMessage());
+        }
+        
+        return bookTickets(userFirebaseUid, event, tickets, authToken);
+    }
+    
+    // Book tickets for a waitlisted user the allocator has just served; skips the waitlist check
+    // the allocator itself is working through. No user token is involved
+    Booking createWaitlistBooking(String userFirebaseUid, Event event, int tickets) {
+        logger.info("Creating waitlist booking for user: {}, event: {}, tickets: {}", userFirebaseUid, event.getId(), tickets);
+        return bookTickets(userFirebaseUid, event, tickets, null);
+    }
+    
+    // Create a booking against event details the caller has just fetched
+    private Booking bookTickets(String userFirebaseUid, Event event, int tickets, String authToken) {
+        int eventId = event.getId();
+        try {
             logger.info("Event found: {}, available tickets: {}", event.getName(), event.getAvailableTickets());
             
+            if (eventCancellationService.isEventCancelled(eventId)) {
+                logger.error("Event {} has been cancelled", eventId);
+                throw new RuntimeException("This event has been cancelled");
+            }
+            
+            // Check there are enough tickets
             if (event.getAvailableTickets() < tickets) {
                 logger.error("Not enough tickets available. Requested: {}, Available: {}", tickets, event.getAvailableTickets());
                 throw new RuntimeException("Not enough tickets available");
@@ -58,7 +131,10 @@ public class BookingService {
             
             // Step 4: Create and save the booking
             Booking booking = new Booking(userFirebaseUid, eventId, tickets, totalPrice);
+            booking.setEventSnapshot(EventSnapshot.of(event));
             Booking savedBooking = bookingRepository.save(booking);
+            bookingStatsService.recordCreated(savedBooking);
+            bookingAnalyticsService.recordCreated(savedBooking);
             
             logger.info("Booking created successfully with ID: {}", savedBooking.getId());
             
@@ -73,11 +149,13 @@ public class BookingService {
     public Booking cancelBooking(String bookingId, String userFirebaseUid, String authToken) {
         logger.info("Attempting to cancel booking: {} for user: {}", bookingId, userFirebaseUid);
         
-        // Find the booking
-        Optional<Booking> bookingOpt = bookingRepository.findById(bookingId);
-        
-        if (bookingOpt.isPresent()) {
-            Booking booking = bookingOpt.get();
+        // Flip the status first with a version-checked save, so only one concurrent
+        // cancel of the same booking ever gets to return its tickets
+        Booking cancelledBooking = OptimisticRetry.run("cancel booking " + bookingId, () -> {
+            Booking booking = bookingRepository.findById(bookingId).orElseThrow(() -> {
+                logger.error("Booking not found: {}", bookingId);
+                return new RuntimeException("Booking not found");
+            });
             
             // Check if this booking belongs to the user (skip this check for admin users)
             if (!booking.getUserFirebaseUid().equals(userFirebaseUid)) {
@@ -92,38 +170,94 @@ public class BookingService {
                 throw new RuntimeException("This booking is already cancelled");
             }
             
-            // Return tickets to the event
-            boolean returnSuccessful = eventService.returnTickets(
-                    booking.getEventId(), booking.getTicketsBooked(), authToken);
-            
-            if (!returnSuccessful) {
-                logger.error("Failed to return tickets to Event Service for booking: {}", bookingId);
-                throw new RuntimeException("Failed to return tickets to Event Service");
-            }
-            
-            logger.info("Successfully returned tickets to Event Service");
-            
-            // Update booking status
             booking.setStatus(Booking.BookingStatus.CANCELLED);
-            Booking updatedBooking = bookingRepository.save(booking);
-            
-            logger.info("Booking {} successfully cancelled", bookingId);
-            
-            return updatedBooking;
-        } else {
-            logger.error("Booking not found: {}", bookingId);
-            throw new RuntimeException("Booking not found");
+            return bookingRepository.save(booking);
+        });
+        
+        // Return tickets to the event
+        boolean returnSuccessful = false;
+        try {
+            returnSuccessful = eventService.returnTickets(
+                    cancelledBooking.getEventId(), cancelledBooking.getTicketsBooked(), authToken);
+        } catch (Exception e) {
+            logger.error("Error returning tickets for booking {}: {}", bookingId, e.getMessage(), e);
+        }
+        
+        if (!returnSuccessful) {
+            logger.error("Failed to return tickets to Event Service for booking: {}", bookingId);
+            restoreStatus(bookingId, Booking.BookingStatus.CONFIRMED);
+            throw new RuntimeException("Failed to return tickets to Event Service");
+        }
+        
+        logger.info("Successfully returned tickets to Event Service");
+        eventPublisher.publishEvent(new TicketsReleasedEvent(cancelledBooking.getEventId(), cancelledBooking.getTicketsBooked()));
+        bookingStatsService.recordCancelled(cancelledBooking);
+        bookingAnalyticsService.recordCancelled(cancelledBooking);
+        logger.info("Booking {} successfully cancelled", bookingId);
+        
+        return cancelledBooking;
+    }
+    
+    // Undo a cancellation whose ticket return failed
+    private void restoreStatus(String bookingId, Booking.BookingStatus status) {
+        try {
+            OptimisticRetry.run("restore booking " + bookingId, () -> {
+                bookingRepository.findById(bookingId).ifPresent(booking -> {
+                    booking.setStatus(status);
+                    bookingRepository.save(booking);
+                });
+                return null;
+            });
+        } catch (Exception e) {
+            logger.error("Failed to restore status of booking {} after a failed cancellation", bookingId, e);
         }
     }
     
     // Get bookings for a specific user
     public List<Booking> getUserBookings(String userFirebaseUid) {
-        logger.info("Getting bookings for user: {}", userFirebaseUid);
+        return getUserBookings(userFirebaseUid, false);
+    }
+    
+    // Get bookings for a specific user, including archived history if asked for
+    public List<Booking> getUserBookings(String userFirebaseUid, boolean includeHistory) {
+        logger.info("Getting bookings for user: {} (history: {})", userFirebaseUid, includeHistory);
         List<Booking> bookings = bookingRepository.findByUserFirebaseUid(userFirebaseUid);
+        if (includeHistory) {
+            // A booking caught mid-move can briefly be in both collections; the hot copy wins
+            Set<String> hotIds = new HashSet<>();
+            bookings.forEach(booking -> hotIds.add(booking.getId()));
+            bookings = new ArrayList<>(bookings);
+            for (Booking archived : bookingArchiveService.findByUserFirebaseUid(userFirebaseUid)) {
+                if (!hotIds.contains(archived.getId())) {
+                    bookings.add(archived);
+                }
+            }
+        }
         logger.info("Found {} bookings for user", bookings.size());
         return bookings;
     }
     
+    // Event details for bookings without an embedded snapshot: local projection first,
+    // then one batched Event Service call for anything it does not know yet
+    public Map<Integer, Event> getEventsForBookings(List<Booking> bookings, String authToken) {
+        Set<Integer> eventIds = new LinkedHashSet<>();
+        for (Booking booking : bookings) {
+            if (booking.getEventSnapshot() == null) {
+                eventIds.add(booking.getEventId());
+            }
+        }
+        if (eventIds.isEmpty()) {
+            return Map.of();
+        }
+        
+        Map<Integer, Event> events = new HashMap<>(eventProjectionService.getEvents(eventIds));
+        eventIds.removeAll(events.keySet());
+        if (!eventIds.isEmpty()) {
+            events.putAll(eventService.getEventsByIds(eventIds, authToken));
+        }
+        return events;
+    }
+    
     // Get bookings for a specific event
     public List<Booking> getEventBookings(int eventId) {
         logger.info("Getting bookings for event: {}", eventId);
@@ -136,6 +270,10 @@ public class BookingService {
     public Optional<Booking> getBookingById(String bookingId) {
         logger.info("Getting booking by ID: {}", bookingId);
         Optional<Booking> booking = bookingRepository.findById(bookingId);
+        if (booking.isEmpty()) {
+            // Old bookings live in the archive
+            booking = bookingArchiveService.findById(bookingId);
+        }
         
         if (booking.isPresent()) {
             logger.info("Booking found: {}", bookingId);
@@ -160,12 +298,16 @@ public class BookingService {
                     logger.info("Returning tickets for booking: {} before deletion", bookingId);
                     // We're sending a null authToken here, which might not work in your system.
                     // You might need to handle this differently, perhaps with an admin token or a system token.
-                    eventService.returnTickets(
+                    boolean returned = eventService.returnTickets(
                             bookingOpt.get().getEventId(), 
                             bookingOpt.get().getTicketsBooked(), 
                             null);
                     
-                    logger.info("Successfully returned tickets to Event Service");
+                    if (returned) {
+                        logger.info("Successfully returned tickets to Event Service");
+                        eventPublisher.publishEvent(new TicketsReleasedEvent(
+                                bookingOpt.get().getEventId(), bookingOpt.get().getTicketsBooked()));
+                    }
                 } catch (Exception e) {
                     logger.error("Error returning tickets during booking deletion: {}", e.getMessage(), e);
                     // Continue with deletion even if returning tickets fails
@@ -173,6 +315,7 @@ public class BookingService {
             }
             
             bookingRepository.deleteById(bookingId);
+            bookingOpt.ifPresent(bookingStatsService::recordDeleted);
             logger.info("Booking deleted: {}", bookingId);
         } else {
             logger.error("Booking not found for deletion: {}", bookingId);
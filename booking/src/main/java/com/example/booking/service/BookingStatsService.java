@@ -0,0 +1,313 @@
+package com.example.booking.service;
+
+import com.example.booking.model.Booking;
+import com.mongodb.client.model.RenameCollectionOptions;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sales counters per event and per day in the booking_stats collection, kept current with $inc
+ * as bookings are created, cancelled and deleted, so reading them is a single _id lookup.
+ * Counters are attributed to the day the booking was made, and ticketsSold/revenue are net of cancellations.
+ * rebuild() recomputes everything from the hot and archived bookings with parallel range aggregations.
+ */
+@Service
+public class BookingStatsService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(BookingStatsService.class);
+    
+    private static final String STATS_COLLECTION = "booking_stats";
+    private static final String REBUILD_COLLECTION = "booking_stats_rebuild";
+    private static final String[] COUNTERS = { "bookings", "cancellations", "ticketsSold", "ticketsCancelled", "revenue" };
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Value("${booking.stats.rebuild-parallelism:4}")
+    private int rebuildParallelism;
+    
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    
+    public void recordCreated(Booking booking) {
+        apply(booking, new Counters(1, 0, booking.getTicketsBooked(), 0, booking.getTotalPrice()));
+    }
+    
+    public void recordCancelled(Booking booking) {
+        apply(booking, new Counters(0, 1, -booking.getTicketsBooked(), booking.getTicketsBooked(), -booking.getTotalPrice()));
+    }
+    
+    // Cancel many bookings at once: counters are summed per event and per day and written in one bulk
+    public void recordCancelled(List<Booking> bookings) {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        Map<Integer, Counters> byEvent = new HashMap<>();
+        Map<LocalDate, Counters> byDay = new HashMap<>();
+        for (Booking booking : bookings) {
+            Counters delta = new Counters(0, 1, -booking.getTicketsBooked(), booking.getTicketsBooked(), -booking.getTotalPrice());
+            byEvent.merge(booking.getEventId(), delta, Counters::plus);
+            if (booking.getBookingTime() != null) {
+                byDay.merge(booking.getBookingTime().toLocalDate(), delta, Counters::plus);
+            }
+        }
+        try {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, STATS_COLLECTION);
+            byEvent.forEach((eventId, delta) -> bulk.upsert(new Query(Criteria.where("_id").is(eventKey(eventId))),
+                    delta.toUpdate().set("type", "event").set("eventId", eventId)));
+            byDay.forEach((day, delta) -> bulk.upsert(new Query(Criteria.where("_id").is(dayKey(day))),
+                    delta.toUpdate().set("type", "day").set("date", day.toString())));
+            bulk.execute();
+        } catch (Exception e) {
+            logger.error("Failed to update booking stats for {} cancelled bookings: {}", bookings.size(), e.getMessage());
+        }
+    }
+    
+    // Take a deleted booking out of the counters entirely
+    public void recordDeleted(Booking booking) {
+        if (booking.getStatus() == Booking.BookingStatus.CANCELLED) {
+            apply(booking, new Counters(-1, -1, 0, -booking.getTicketsBooked(), 0));
+        } else {
+            apply(booking, new Counters(-1, 0, -booking.getTicketsBooked(), 0, -booking.getTotalPrice()));
+        }
+    }
+    
+    public Document getEventStats(int eventId) {
+        Document stats = mongoTemplate.findById(eventKey(eventId), Document.class, STATS_COLLECTION);
+        return stats != null ? stats : emptyStats(eventKey(eventId)).append("type", "event").append("eventId", eventId);
+    }
+    
+    // Per-day counters between two dates (inclusive), read as one _id range scan
+    public List<Document> getDailyStats(LocalDate from, LocalDate to) {
+        Query query = new Query(Criteria.where("_id").gte(dayKey(from)).lte(dayKey(to)))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        return mongoTemplate.find(query, Document.class, STATS_COLLECTION);
+    }
+    
+    // Start a rebuild in the background; false if one is already running
+    public boolean startRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread worker = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                logger.error("Booking stats rebuild failed", e);
+            } finally {
+                rebuilding.set(false);
+            }
+        }, "booking-stats-rebuild");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+    
+    public boolean isRebuilding() {
+        return rebuilding.get();
+    }
+    
+    private void apply(Booking booking, Counters delta) {
+        try {
+            LocalDate day = booking.getBookingTime() != null ? booking.getBookingTime().toLocalDate() : null;
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, STATS_COLLECTION);
+            bulk.upsert(new Query(Criteria.where("_id").is(eventKey(booking.getEventId()))),
+                    delta.toUpdate().set("type", "event").set("eventId", booking.getEventId()));
+            if (day != null) {
+                bulk.upsert(new Query(Criteria.where("_id").is(dayKey(day))),
+                        delta.toUpdate().set("type", "day").set("date", day.toString()));
+            }
+            bulk.execute();
+        } catch (Exception e) {
+            // Counters can be repaired with a rebuild; never fail the booking over them
+            logger.error("Failed to update booking stats for booking {}: {}", booking.getId(), e.getMessage());
+        }
+    }
+    
+    /**
+     * Recompute all counters from the bookings collection. The eventId range is split into
+     * rebuildParallelism slices aggregated concurrently (each an index range scan), the partial
+     * per-day sums are merged here, and the result replaces booking_stats in one rename.
+     * Increments that land while a rebuild runs are lost, so run it when booking traffic is quiet.
+     */
+    public void rebuild() throws Exception {
+        long start = System.currentTimeMillis();
+        int[] range = eventIdRange();
+        
+        Map<String, Document> stats = new HashMap<>();
+        if (range != null) {
+            int slices = Math.max(1, rebuildParallelism);
+            long width = Math.max(1, ((long) range[1] - range[0] + slices) / slices);
+            ExecutorService pool = Executors.newFixedThreadPool(slices);
+            try {
+                List<Future<Document>> partials = new ArrayList<>();
+                for (long lo = range[0]; lo <= range[1]; lo += width) {
+                    long from = lo;
+                    long to = Math.min((long) range[1] + 1, lo + width);
+                    partials.add(pool.submit(() -> aggregateSlice(from, to)));
+                }
+                for (Future<Document> partial : partials) {
+                    merge(stats, partial.get());
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        
+        mongoTemplate.dropCollection(REBUILD_COLLECTION);
+        if (!stats.isEmpty()) {
+            mongoTemplate.getCollection(REBUILD_COLLECTION).insertMany(new ArrayList<>(stats.values()));
+            mongoTemplate.getCollection(REBUILD_COLLECTION).renameCollection(
+                    mongoTemplate.getCollection(STATS_COLLECTION).getNamespace(),
+                    new RenameCollectionOptions().dropTarget(true));
+        } else {
+            mongoTemplate.dropCollection(STATS_COLLECTION);
+        }
+        logger.info("Booking stats rebuilt: {} documents in {} ms", stats.size(), System.currentTimeMillis() - start);
+    }
+    
+    // Lowest and highest booked eventId across hot and archived bookings, or null if there are none
+    private int[] eventIdRange() {
+        int[] range = null;
+        for (String collection : List.of("bookings", BookingArchiveService.ARCHIVE_COLLECTION)) {
+            Query first = new Query().with(Sort.by(Sort.Direction.ASC, "eventId")).limit(1);
+            Query last = new Query().with(Sort.by(Sort.Direction.DESC, "eventId")).limit(1);
+            first.fields().include("eventId");
+            last.fields().include("eventId");
+            Booking min = mongoTemplate.findOne(first, Booking.class, collection);
+            Booking max = mongoTemplate.findOne(last, Booking.class, collection);
+            if (min != null && max != null) {
+                range = range == null
+                        ? new int[] { min.getEventId(), max.getEventId() }
+                        : new int[] { Math.min(range[0], min.getEventId()), Math.max(range[1], max.getEventId()) };
+            }
+        }
+        return range;
+    }
+    
+    // Per-event and per-day sums for bookings with eventId in [from, to)
+    private Document aggregateSlice(long from, long to) {
+        Document cancelled = new Document("$eq", List.of("$status", Booking.BookingStatus.CANCELLED.name()));
+        Document sums = new Document("bookings", new Document("$sum", 1))
+                .append("cancellations", new Document("$sum", new Document("$cond", List.of(cancelled, 1, 0))))
+                .append("ticketsSold", new Document("$sum", new Document("$cond", List.of(cancelled, 0, "$ticketsBooked"))))
+                .append("ticketsCancelled", new Document("$sum", new Document("$cond", List.of(cancelled, "$ticketsBooked", 0))))
+                .append("revenue", new Document("$sum", new Document("$cond", List.of(cancelled, 0, "$totalPrice"))));
+        Document day = new Document("$dateToString", new Document("format", "%Y-%m-%d")
+                .append("date", "$bookingTime")
+                .append("timezone", ZoneId.systemDefault().getId()));
+        
+        AggregationOperation facet = context -> new Document("$facet", new Document()
+                .append("events", List.of(group("$eventId", sums)))
+                .append("days", List.of(
+                        new Document("$match", new Document("bookingTime", new Document("$ne", null))),
+                        group(day, sums))));
+        
+        // Archived bookings still count; the same slice of the archive is unioned in
+        Document slice = new Document("eventId", new Document("$gte", from).append("$lt", to));
+        AggregationOperation unionArchive = context -> new Document("$unionWith",
+                new Document("coll", BookingArchiveService.ARCHIVE_COLLECTION)
+                        .append("pipeline", List.of(new Document("$match", slice))));
+        
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("eventId").gte(from).lt(to)),
+                unionArchive,
+                facet);
+        return mongoTemplate.aggregate(aggregation, "bookings", Document.class).getUniqueMappedResult();
+    }
+    
+    private static Document group(Object key, Document sums) {
+        Document group = new Document("_id", key);
+        group.putAll(sums);
+        return new Document("$group", group);
+    }
+    
+    private void merge(Map<String, Document> stats, Document partial) {
+        if (partial == null) {
+            return;
+        }
+        for (Document group : partial.getList("events", Document.class)) {
+            int eventId = ((Number) group.get("_id")).intValue();
+            Document target = stats.computeIfAbsent(eventKey(eventId),
+                    key -> emptyStats(key).append("type", "event").append("eventId", eventId));
+            add(target, group);
+        }
+        for (Document group : partial.getList("days", Document.class)) {
+            String date = group.getString("_id");
+            Document target = stats.computeIfAbsent(dayKey(LocalDate.parse(date)),
+                    key -> emptyStats(key).append("type", "day").append("date", date));
+            add(target, group);
+        }
+    }
+    
+    private static void add(Document target, Document group) {
+        for (String counter : COUNTERS) {
+            Number value = (Number) group.get(counter);
+            if (counter.equals("revenue")) {
+                target.put(counter, target.getDouble(counter) + value.doubleValue());
+            } else {
+                target.put(counter, target.getLong(counter) + value.longValue());
+            }
+        }
+        target.put("updatedAt", Instant.now().toString());
+    }
+    
+    private static Document emptyStats(String id) {
+        return new Document("_id", id)
+                .append("bookings", 0L)
+                .append("cancellations", 0L)
+                .append("ticketsSold", 0L)
+                .append("ticketsCancelled", 0L)
+                .append("revenue", 0.0);
+    }
+    
+    private static String eventKey(int eventId) {
+        return "event:" + eventId;
+    }
+    
+    private static String dayKey(LocalDate date) {
+        return "day:" + date;
+    }
+    
+    // One change to all counters of a stats document
+    private record Counters(long bookings, long cancellations, long ticketsSold, long ticketsCancelled, double revenue) {
+        
+        Update toUpdate() {
+            return new Update()
+                    .inc("bookings", bookings)
+                    .inc("cancellations", cancellations)
+                    .inc("ticketsSold", ticketsSold)
+                    .inc("ticketsCancelled", ticketsCancelled)
+                    .inc("revenue", revenue)
+                    .set("updatedAt", Instant.now().toString());
+        }
+        
+        Counters plus(Counters other) {
+            return new Counters(bookings + other.bookings, cancellations + other.cancellations,
+                    ticketsSold + other.ticketsSold, ticketsCancelled + other.ticketsCancelled, revenue + other.revenue);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.booking.service;
+
+import java.util.function.Consumer;
+
+// No transport at all: ticket updates go straight to the Event Service over HTTP
+public class DirectTicketUpdateBus implements TicketUpdateBus {
+    
+    @Override
+    public String getName() {
+        return "http";
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+    
+    @Override
+    public boolean publishTicketUpdate(int eventId, int ticketChange) {
+        return false;
+    }
+    
+    // Nothing is ever published, so there is nothing to deliver
+    @Override
+    public void subscribe(Consumer<TicketUpdate> handler) {
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.booking.service;
+
+import com.example.booking.model.Booking;
+import com.example.booking.model.WaitlistEntry;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Cancels every active booking of an event as a background job. Bookings are cancelled in chunks with
+ * one updateMany each, tagged with the job's run ID so exactly the bookings this job cancelled are
+ * counted, and the tickets go back to the Event Service as a single aggregated adjustment at the end.
+ *
+ * Progress lives in the event_cancellations collection (one document per event), so any replica can
+ * report it and a failed or abandoned job resumes with the same run ID when started again.
+ */
+@Service
+public class EventCancellationService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EventCancellationService.class);
+    
+    private static final String JOB_COLLECTION = "event_cancellations";
+    private static final List<String> ACTIVE_STATUSES = List.of(
+            Booking.BookingStatus.CONFIRMED.name(), Booking.BookingStatus.PENDING.name());
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private EventService eventService;
+    
+    @Autowired
+    private BookingStatsService bookingStatsService;
+    
+    @Autowired
+    private BookingAnalyticsService bookingAnalyticsService;
+    
+    @Value("${booking.event-cancellation.chunk-size:500}")
+    private int chunkSize;
+    
+    // Bookings that passed the cancelled-event check just before the job started land within this window
+    @Value("${booking.event-cancellation.settle-ms:2000}")
+    private long settleMs;
+    
+    // A running job whose heartbeat is older than this belonged to a replica that died
+    @Value("${booking.event-cancellation.stale-after-ms:120000}")
+    private long staleAfterMs;
+    
+    /**
+     * Start (or resume) cancelling all bookings of an event in the background.
+     * @return the job document, or null if a job for this event is already running
+     */
+    public Document start(int eventId, String authToken) {
+        Date now = new Date();
+        Query claimable = new Query(Criteria.where("_id").is(eventId).orOperator(
+                Criteria.where("status").ne("RUNNING"),
+                Criteria.where("heartbeatAt").lt(new Date(now.getTime() - staleAfterMs))));
+        
+        Document existing = mongoTemplate.findById(eventId, Document.class, JOB_COLLECTION);
+        // Resume an unfinished run under the same ID so its bookings are still counted once
+        boolean resume = existing != null && !"COMPLETED".equals(existing.getString("status"))
+                && existing.getString("runId") != null;
+        String runId = resume ? existing.getString("runId") : new ObjectId().toHexString();
+        
+        Update update = new Update()
+                .set("status", "RUNNING")
+                .set("runId", runId)
+                .set("heartbeatAt", now)
+                .set("startedAt", now)
+                .unset("finishedAt")
+                .unset("error");
+        if (!resume) {
+            update.set("cancelledBookings", 0L).set("ticketsCancelled", 0L).set("ticketsReturned", false);
+        }
+        
+        Document job;
+        try {
+            job = mongoTemplate.findAndModify(claimable, update,
+                    FindAndModifyOptions.options().upsert(true).returnNew(true), Document.class, JOB_COLLECTION);
+        } catch (DuplicateKeyException e) {
+            return null; // Running elsewhere
+        }
+        
+        Thread worker = new Thread(() -> run(eventId, runId, authToken), "event-cancellation-" + eventId);
+        worker.setDaemon(true);
+        worker.start();
+        return job;
+    }
+    
+    public Document getJob(int eventId) {
+        return mongoTemplate.findById(eventId, Document.class, JOB_COLLECTION);
+    }
+    
+    // Whether an event has been (or is being) cancelled; no new bookings are taken for it
+    public boolean isEventCancelled(int eventId) {
+        return mongoTemplate.exists(new Query(Criteria.where("_id").is(eventId)), JOB_COLLECTION);
+    }
+    
+    private void run(int eventId, String runId, String authToken) {
+        try {
+            logger.info("Cancelling all bookings for event {} (run {})", eventId, runId);
+            cancelRemaining(eventId, runId);
+            Thread.sleep(settleMs);
+            cancelRemaining(eventId, runId);
+            
+            // Nobody else waits for this event any more
+            mongoTemplate.updateMulti(
+                    new Query(Criteria.where("eventId").is(eventId).and("status").is(WaitlistEntry.WaitlistStatus.WAITING)),
+                    new Update().set("status", WaitlistEntry.WaitlistStatus.CANCELLED), WaitlistEntry.class);
+            
+            returnTickets(eventId, runId, authToken);
+            
+            Document job = getJob(eventId);
+            logger.info("Event {} cancelled: {} bookings, {} tickets returned", eventId,
+                    job.get("cancelledBookings"), job.get("ticketsCancelled"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(eventId, "Interrupted");
+        } catch (Exception e) {
+            logger.error("Cancelling bookings for event {} failed", eventId, e);
+            fail(eventId, e.getMessage());
+        }
+    }
+    
+    // Cancel active bookings chunk by chunk until none are left
+    private void cancelRemaining(int eventId, String runId) {
+        Query active = new Query(Criteria.where("eventId").is(eventId).and("status").in(ACTIVE_STATUSES)).limit(chunkSize);
+        active.fields().include("_id");
+        
+        while (true) {
+            List<Object> ids = new ArrayList<>();
+            for (Document booking : mongoTemplate.find(active, Document.class, "bookings")) {
+                ids.add(booking.get("_id"));
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+            
+            // The status filter makes a concurrent user cancellation and ours mutually exclusive
+            mongoTemplate.updateMulti(
+                    new Query(Criteria.where("_id").in(ids).and("status").in(ACTIVE_STATUSES)),
+                    new Update()
+                            .set("status", Booking.BookingStatus.CANCELLED.name())
+                            .set("cancellationRun", runId)
+                            .inc("version", 1),
+                    "bookings");
+            
+            // Count only what this run cancelled
+            Query cancelledByRun = new Query(Criteria.where("_id").in(ids).and("cancellationRun").is(runId));
+            cancelledByRun.fields().include("eventId", "ticketsBooked", "totalPrice", "bookingTime");
+            List<Booking> cancelled = mongoTemplate.find(cancelledByRun, Booking.class);
+            long tickets = cancelled.stream().mapToLong(Booking::getTicketsBooked).sum();
+            
+            bookingStatsService.recordCancelled(cancelled);
+            bookingAnalyticsService.recordCancelled(eventId, tickets);
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(eventId)),
+                    new Update()
+                            .inc("cancelledBookings", (long) cancelled.size())
+                            .inc("ticketsCancelled", tickets)
+                            .set("heartbeatAt", new Date()),
+                    JOB_COLLECTION);
+        }
+    }
+    
+    // One inventory adjustment for the whole run
+    private void returnTickets(int eventId, String runId, String authToken) {
+        Document job = getJob(eventId);
+        if (job != null && Boolean.TRUE.equals(job.getBoolean("ticketsReturned"))) {
+            complete(eventId);
+            return;
+        }
+        
+        // Sum from the bookings themselves so a resumed run returns everything its earlier attempts cancelled
+        List<Document> pipeline = List.of(
+                new Document("$match", new Document("eventId", eventId).append("cancellationRun", runId)),
+                new Document("$group", new Document("_id", null).append("tickets", new Document("$sum", "$ticketsBooked"))));
+        Document total = mongoTemplate.getCollection("bookings").aggregate(pipeline).first();
+        int tickets = total != null ? ((Number) total.get("tickets")).intValue() : 0;
+        
+        if (tickets > 0 && !eventService.returnTickets(eventId, tickets, authToken)) {
+            throw new IllegalStateException("Returning " + tickets + " tickets to the Event Service failed; start the job again to retry");
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(eventId)),
+                new Update().set("ticketsReturned", true).set("ticketsCancelled", (long) tickets), JOB_COLLECTION);
+        complete(eventId);
+    }
+    
+    private void complete(int eventId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(eventId)),
+                new Update().set("status", "COMPLETED").set("finishedAt", new Date()), JOB_COLLECTION);
+    }
+    
+    private void fail(int eventId, String error) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(eventId)),
+                new Update().set("status", "FAILED").set("error", error).set("finishedAt", new Date()), JOB_COLLECTION);
+    }
+}
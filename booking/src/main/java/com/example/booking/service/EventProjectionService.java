@@ -0,0 +1,332 @@
+package com.example.booking.service;
+
+import com.example.booking.model.Event;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local read model of the events the booking service needs (event_projection collection).
+ * Fed by a change stream on events with the resume token persisted, so a restart picks up where it stopped.
+ * Without a replica set (or while the stream is down) it falls back to periodic resyncs, which copy only
+ * the events whose version changed. Enrichment reads from here, so it keeps working while the Event Service
+ * is down; ticket availability is only read from here while the stream is live (see isLive).
+ */
+@Service
+public class EventProjectionService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EventProjectionService.class);
+    
+    private static final String PROJECTION_COLLECTION = "event_projection";
+    private static final String STATE_COLLECTION = "projection_state";
+    private static final String STATE_ID = "event_projection";
+    
+    // Fields copied from events; image data never leaves the event service. The version tells a resync
+    // which events changed
+    private static final String[] FIELDS = { "name", "type", "availableTickets", "price", "date", "time", "venue", "city", "version" };
+    
+    private static final int RESYNC_BATCH = 500;
+    
+    // Change stream history no longer holds the saved resume token
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${booking.projection.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${booking.projection.change-stream.enabled:false}")
+    private boolean changeStreamEnabled;
+    
+    private volatile boolean running = true;
+    private volatile boolean streaming;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStreamCursor;
+    
+    // Latest position seen on the stream, persisted by a scheduled task rather than per change
+    private volatile BsonDocument resumeToken;
+    private volatile BsonDocument savedResumeToken;
+    
+    // Source time of the newest change applied; null until the projection has synced once
+    private volatile Instant appliedUpTo;
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        Gauge.builder("booking.event_projection.lag", this, EventProjectionService::getLagSeconds)
+                .baseUnit("seconds")
+                .description("How far the event projection trails the events collection")
+                .register(meterRegistry);
+        
+        if (changeStreamEnabled) {
+            Thread watcher = new Thread(this::watchChangeStream, "event-projection-stream");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+    
+    // Projected event, or null if it is unknown locally
+    public Event getEvent(int eventId) {
+        return enabled ? mongoTemplate.findById(eventId, Event.class, PROJECTION_COLLECTION) : null;
+    }
+    
+    // Projected events keyed by ID; IDs unknown locally are left out
+    public Map<Integer, Event> getEvents(Collection<Integer> eventIds) {
+        Map<Integer, Event> events = new HashMap<>();
+        if (!enabled || eventIds.isEmpty()) {
+            return events;
+        }
+        for (Event event : mongoTemplate.find(new Query(Criteria.where("_id").in(eventIds)), Event.class, PROJECTION_COLLECTION)) {
+            events.put(event.getId(), event);
+        }
+        return events;
+    }
+    
+    // True while the change stream is applying changes as they happen; otherwise the projection is
+    // only as fresh as the last resync
+    public boolean isLive() {
+        return enabled && streaming;
+    }
+    
+    // Seconds the projection trails the source (-1 until the first sync)
+    public double getLagSeconds() {
+        Instant upTo = appliedUpTo;
+        return upTo == null ? -1 : Math.max(0, (System.currentTimeMillis() - upTo.toEpochMilli()) / 1000.0);
+    }
+    
+    /**
+     * Rebuild the projection from the events collection. Runs on a timer whenever the change stream
+     * is not active, and once when the stream starts without a usable resume token.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${booking.projection.resync-interval-ms:30000}")
+    public void scheduledResync() {
+        if (enabled && !streaming) {
+            resync();
+        }
+    }
+    
+    /**
+     * Bring the projection up to date with the events collection. Every write to an event bumps its
+     * version, so only IDs and versions are compared; full documents are fetched for events that changed
+     * and deletions are applied by ID.
+     */
+    private synchronized void resync() {
+        try {
+            Instant startedAt = Instant.now();
+            Map<Object, Object> sourceVersions = versions("events");
+            Map<Object, Object> projectedVersions = versions(PROJECTION_COLLECTION);
+            
+            List<Object> changed = new ArrayList<>();
+            sourceVersions.forEach((id, version) -> {
+                if (version == null || !version.equals(projectedVersions.get(id))) {
+                    changed.add(id);
+                }
+            });
+            List<Object> deleted = new ArrayList<>(projectedVersions.keySet());
+            deleted.removeAll(sourceVersions.keySet());
+            
+            for (int from = 0; from < changed.size(); from += RESYNC_BATCH) {
+                Query query = new Query(Criteria.where("_id").in(changed.subList(from, Math.min(from + RESYNC_BATCH, changed.size()))));
+                query.fields().include(FIELDS);
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, PROJECTION_COLLECTION);
+                for (Document event : mongoTemplate.find(query, Document.class, "events")) {
+                    bulk.upsert(new Query(Criteria.where("_id").is(event.get("_id"))), toUpdate(event));
+                }
+                bulk.execute();
+            }
+            if (!deleted.isEmpty()) {
+                mongoTemplate.remove(new Query(Criteria.where("_id").in(deleted)), PROJECTION_COLLECTION);
+            }
+            
+            appliedUpTo = startedAt;
+            logger.debug("Event projection resynced: {} events, {} changed, {} deleted",
+                    sourceVersions.size(), changed.size(), deleted.size());
+        } catch (Exception e) {
+            logger.warn("Event projection resync failed: {}", e.getMessage());
+        }
+    }
+    
+    // Version of every document in a collection, keyed by ID
+    private Map<Object, Object> versions(String collection) {
+        Map<Object, Object> versions = new HashMap<>();
+        Query query = new Query();
+        query.fields().include("version");
+        for (Document document : mongoTemplate.find(query, Document.class, collection)) {
+            Object version = document.get("version");
+            versions.put(document.get("_id"), version instanceof Number number ? number.longValue() : null);
+        }
+        return versions;
+    }
+    
+    private void watchChangeStream() {
+        List<Bson> pipeline = List.of(
+                Aggregates.match(Filters.in("operationType", "insert", "update", "replace", "delete")),
+                Aggregates.project(Projections.exclude("updateDescription",
+                        "fullDocument.imageData", "fullDocument.thumbnailUrl", "fullDocument.mediumImageUrl")));
+        
+        while (running) {
+            BsonDocument startAfter = loadResumeToken();
+            ChangeStreamIterable<Document> stream = mongoTemplate.getCollection("events")
+                    .watch(pipeline)
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .maxAwaitTime(1, TimeUnit.SECONDS);
+            if (startAfter != null) {
+                stream = stream.resumeAfter(startAfter);
+            }
+            
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                changeStreamCursor = cursor;
+                if (startAfter == null) {
+                    // Fresh start: the cursor is already open, so changes made during the copy are replayed after it
+                    resync();
+                }
+                streaming = true;
+                logger.info("Watching events change stream for the event projection ({})",
+                        startAfter != null ? "resumed" : "from a full copy");
+                
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext();
+                    if (change == null) {
+                        // Caught up with the source
+                        appliedUpTo = Instant.now();
+                    } else {
+                        apply(change);
+                    }
+                    if (cursor.getResumeToken() != null) {
+                        resumeToken = cursor.getResumeToken();
+                    }
+                }
+            } catch (MongoCommandException e) {
+                streaming = false;
+                if (e.getErrorCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    logger.warn("Event projection resume token expired; rebuilding from a full copy");
+                    clearResumeToken();
+                } else if (!pause(e)) {
+                    return;
+                }
+            } catch (Exception e) {
+                streaming = false;
+                if (!pause(e)) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    private void apply(ChangeStreamDocument<Document> change) {
+        BsonValue key = change.getDocumentKey() != null ? change.getDocumentKey().get("_id") : null;
+        if (key == null || !key.isNumber()) {
+            return;
+        }
+        int eventId = key.asNumber().intValue();
+        Query query = new Query(Criteria.where("_id").is(eventId));
+        
+        if (change.getOperationType() == OperationType.DELETE) {
+            mongoTemplate.remove(query, PROJECTION_COLLECTION);
+        } else if (change.getFullDocument() != null) {
+            mongoTemplate.upsert(query, toUpdate(change.getFullDocument()), PROJECTION_COLLECTION);
+        }
+        if (change.getClusterTime() != null) {
+            appliedUpTo = Instant.ofEpochSecond(change.getClusterTime().getTime());
+        }
+    }
+    
+    private static Update toUpdate(Document event) {
+        Update update = new Update();
+        for (String field : FIELDS) {
+            update.set(field, event.get(field));
+        }
+        return update.set("syncedAt", Instant.now().toString());
+    }
+    
+    // Back off before reopening the stream; false if the service is shutting down
+    private boolean pause(Exception e) {
+        if (!running) {
+            return false;
+        }
+        logger.warn("Event projection change stream interrupted, retrying in 5 seconds: {}", e.getMessage());
+        try {
+            Thread.sleep(5000);
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${booking.projection.checkpoint-interval-ms:1000}")
+    public void saveResumeToken() {
+        BsonDocument token = resumeToken;
+        if (token == null || token.equals(savedResumeToken)) {
+            return;
+        }
+        try {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(STATE_ID)),
+                    new Update().set("resumeToken", token.toJson()).set("updatedAt", Instant.now().toString()),
+                    STATE_COLLECTION);
+            savedResumeToken = token;
+        } catch (Exception e) {
+            logger.warn("Failed to save event projection resume token: {}", e.getMessage());
+        }
+    }
+    
+    private BsonDocument loadResumeToken() {
+        Document state = mongoTemplate.findById(STATE_ID, Document.class, STATE_COLLECTION);
+        String token = state != null ? state.getString("resumeToken") : null;
+        return token != null ? BsonDocument.parse(token) : null;
+    }
+    
+    private void clearResumeToken() {
+        resumeToken = null;
+        savedResumeToken = null;
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(STATE_ID)), STATE_COLLECTION);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        saveResumeToken();
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStreamCursor;
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.example.booking.service;
 
 import com.example.booking.model.Event;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Service
 public class EventService {
     
@@ -21,10 +32,20 @@ public class EventService {
     private RestTemplate restTemplate;
 
     @Autowired
-    private SqsPublisher sqsPublisher;
+    private TicketUpdateBus ticketUpdateBus;
+    
+    @Autowired
+    private TicketUpdateSpool ticketUpdateSpool;
+    
+    @Autowired
+    private TicketDeltaBatcher ticketDeltaBatcher;
     
     @Value("${event.service.url}")
     private String eventServiceUrl;
+
+    // Must not exceed event.batch.max-ids on the Event Service
+    @Value("${event.service.batch-size:500}")
+    private int batchSize;
     
     // Get event details from Event Service
     public Event getEventById(int eventId, String authToken) {
@@ -67,56 +88,150 @@ public class EventService {
         }
     }
     
-    // Book tickets at Event Service (SQS first, HTTP fallback)
-    public boolean bookTickets(int eventId, int tickets, String authToken) {
-        // Try SQS first for async decoupled communication
-        if (sqsPublisher.isEnabled()) {
-            boolean sent = sqsPublisher.publishTicketUpdate(eventId, -tickets);
-            if (sent) {
-                logger.info("Ticket update published via SQS for event: {}", eventId);
-                return true;
+    /**
+     * Get many events from the Event Service in as few calls as possible (one per batchSize IDs).
+     * @return events keyed by ID; IDs that were not found or could not be fetched are left out
+     */
+    public Map<Integer, Event> getEventsByIds(Collection<Integer> eventIds, String authToken) {
+        Map<Integer, Event> events = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(eventIds);
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (authToken != null && !authToken.isEmpty()) {
+            headers.set("Authorization", authToken);
+        }
+        
+        String url = eventServiceUrl + "/api/internal/events";
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Integer> batch = ids.subList(from, Math.min(ids.size(), from + batchSize));
+            try {
+                logger.info("Getting {} events from Event Service: {}", batch.size(), url);
+                ResponseEntity<Map<Integer, Event>> response = restTemplate.exchange(
+                        url, HttpMethod.POST, new HttpEntity<>(batch, headers),
+                        new ParameterizedTypeReference<Map<Integer, Event>>() {});
+                if (response.getBody() != null) {
+                    events.putAll(response.getBody());
+                }
+            } catch (Exception e) {
+                logger.error("Error getting events from Event Service: {}", e.getMessage(), e);
             }
-            logger.warn("SQS publish failed, falling back to HTTP for event: {}", eventId);
         }
-
-        // Fallback to direct HTTP call
+        
+        logger.info("Retrieved {} of {} requested events", events.size(), ids.size());
+        return events;
+    }
+    
+    // Book tickets at Event Service (ticket update bus first, HTTP fallback); fails if the Event Service cannot be reached
+    public boolean bookTickets(int eventId, int tickets, String authToken) {
+        return sendTicketUpdate(eventId, -tickets, authToken);
+    }
+    
+    // Return tickets to Event Service (ticket update bus first, HTTP fallback, local spool if both are down)
+    public boolean returnTickets(int eventId, int tickets, String authToken) {
+        return sendTicketUpdate(eventId, tickets, authToken);
+    }
+    
+    @PostConstruct
+    public void startSpoolDrainer() {
+        if (ticketUpdateBus.isInProcess()) {
+            // Nothing outside this JVM reads an in-process bus, so forward what it carries to the Event Service ourselves
+            ticketUpdateBus.subscribe(this::forwardTicketUpdate);
+            ticketUpdateSpool.startDraining(delta -> deliverOverHttp(delta.eventId(), delta.ticketChange(), null, delta.operationId()));
+        } else {
+            ticketUpdateSpool.startDraining(delta -> deliverTicketUpdate(delta.eventId(), delta.ticketChange(), null, delta.operationId()));
+        }
+    }
+    
+    // Only returns travel on the in-process bus (see deliverTicketUpdate), so a refusal here oversells nothing
+    private void forwardTicketUpdate(TicketUpdate update) {
+        long operationId = ticketDeltaBatcher.newOperationId();
+        if (ticketDeltaBatcher.isEnabled()) {
+            // Keep the bus consumer moving so updates arriving meanwhile share the next batch
+            ticketDeltaBatcher.submit(update.eventId(), update.ticketChange(), operationId)
+                    .thenAccept(delivery -> handleForwarded(update, operationId, delivery));
+        } else {
+            handleForwarded(update, operationId, deliverOverHttp(update.eventId(), update.ticketChange(), null, operationId));
+        }
+    }
+    
+    private void handleForwarded(TicketUpdate update, long operationId, TicketUpdateSpool.Delivery delivery) {
+        if (delivery == TicketUpdateSpool.Delivery.REJECTED) {
+            logger.error("Event Service refused returned tickets for event {} ({}); dropping them",
+                    update.eventId(), update.ticketChange());
+            return;
+        }
+        if (delivery != TicketUpdateSpool.Delivery.FAILED) {
+            return;
+        }
         try {
-            String url = eventServiceUrl + "/api/internal/events/" + eventId + "/tickets?ticketChange=-" + tickets;
-            logger.info("Booking tickets at Event Service via HTTP: {}", url);
-            
-            HttpHeaders headers = new HttpHeaders();
-            if (authToken != null && !authToken.isEmpty()) {
-                headers.set("Authorization", authToken);
+            ticketUpdateSpool.append(update.eventId(), update.ticketChange(), operationId);
+            logger.warn("Event Service unreachable; spooled ticket update for event {} ({})", update.eventId(), update.ticketChange());
+        } catch (IOException e) {
+            logger.error("Failed to spool ticket update for event {}: {}", update.eventId(), e.getMessage(), e);
+        }
+    }
+    
+    private boolean sendTicketUpdate(int eventId, int ticketChange, String authToken) {
+        // One operation ID for every attempt at this delta, including a later replay from the spool
+        long operationId = ticketDeltaBatcher.newOperationId();
+        
+        // Taking tickets needs the Event Service to admit it now: a spooled decrement could be refused on replay
+        // after its booking was confirmed, so it is never spooled and the booking fails instead
+        if (ticketChange < 0) {
+            TicketUpdateSpool.Delivery delivery = deliverTicketUpdate(eventId, ticketChange, authToken, operationId);
+            if (delivery == TicketUpdateSpool.Delivery.FAILED) {
+                logger.error("Event Service unreachable; cannot take {} tickets for event {}", -ticketChange, eventId);
             }
-            
-            HttpEntity<String> entity = new HttpEntity<>(headers);
-            ResponseEntity<Event> response = restTemplate.exchange(url, HttpMethod.PUT, entity, Event.class);
-            
-            boolean success = response.getStatusCode().is2xxSuccessful();
-            logger.info("Event Service booking response: status={}, success={}", response.getStatusCode(), success);
-            return success;
-        } catch (Exception e) {
-            logger.error("Error booking tickets from Event Service: {}", e.getMessage(), e);
+            return delivery == TicketUpdateSpool.Delivery.DELIVERED;
+        }
+        
+        // Returns: while older ones are still spooled, queue behind them rather than wait on a service that is down
+        if (!ticketUpdateSpool.hasBacklog()) {
+            TicketUpdateSpool.Delivery delivery = deliverTicketUpdate(eventId, ticketChange, authToken, operationId);
+            if (delivery != TicketUpdateSpool.Delivery.FAILED) {
+                return delivery == TicketUpdateSpool.Delivery.DELIVERED;
+            }
+        }
+        
+        try {
+            ticketUpdateSpool.append(eventId, ticketChange, operationId);
+            logger.warn("Event Service unreachable; spooled ticket update for event {} ({})", eventId, ticketChange);
+            return true;
+        } catch (IOException e) {
+            logger.error("Failed to spool ticket update for event {}: {}", eventId, e.getMessage(), e);
             return false;
         }
     }
     
-    // Return tickets to Event Service (SQS first, HTTP fallback)
-    public boolean returnTickets(int eventId, int tickets, String authToken) {
-        // Try SQS first
-        if (sqsPublisher.isEnabled()) {
-            boolean sent = sqsPublisher.publishTicketUpdate(eventId, tickets);
+    /**
+     * Deliver one ticket delta: the ticket update bus first, then a direct HTTP call.
+     * REJECTED means the Event Service refused it (e.g. not enough tickets), FAILED that it could not be reached.
+     */
+    private TicketUpdateSpool.Delivery deliverTicketUpdate(int eventId, int ticketChange, String authToken, long operationId) {
+        // Try the bus first for async decoupled communication. The in-process bus forwards in the background and
+        // cannot report a refusal back to the booking, so decrements skip it and go straight to the Event Service
+        if (ticketUpdateBus.isEnabled() && !(ticketUpdateBus.isInProcess() && ticketChange < 0)) {
+            boolean sent = ticketUpdateBus.publishTicketUpdate(eventId, ticketChange);
             if (sent) {
-                logger.info("Ticket return published via SQS for event: {}", eventId);
-                return true;
+                logger.info("Ticket update published via {} bus for event: {}", ticketUpdateBus.getName(), eventId);
+                return TicketUpdateSpool.Delivery.DELIVERED;
             }
-            logger.warn("SQS publish failed, falling back to HTTP for event: {}", eventId);
+            logger.warn("{} bus publish failed, falling back to HTTP for event: {}", ticketUpdateBus.getName(), eventId);
         }
 
-        // Fallback to direct HTTP call
+        return deliverOverHttp(eventId, ticketChange, authToken, operationId);
+    }
+    
+    // Direct HTTP call to the Event Service, batched with concurrent updates unless booking.ticket-batch.enabled=false
+    private TicketUpdateSpool.Delivery deliverOverHttp(int eventId, int ticketChange, String authToken, long operationId) {
+        if (ticketDeltaBatcher.isEnabled()) {
+            return ticketDeltaBatcher.submit(eventId, ticketChange, operationId).join();
+        }
+        
         try {
-            String url = eventServiceUrl + "/api/internal/events/" + eventId + "/tickets?ticketChange=" + tickets;
-            logger.info("Returning tickets to Event Service via HTTP: {}", url);
+            String url = eventServiceUrl + "/api/internal/events/" + eventId + "/tickets?ticketChange=" + ticketChange;
+            logger.info("Sending ticket update to Event Service via HTTP: {}", url);
             
             HttpHeaders headers = new HttpHeaders();
             if (authToken != null && !authToken.isEmpty()) {
@@ -127,11 +242,14 @@ public class EventService {
             ResponseEntity<Event> response = restTemplate.exchange(url, HttpMethod.PUT, entity, Event.class);
             
             boolean success = response.getStatusCode().is2xxSuccessful();
-            logger.info("Event Service return tickets response: status={}, success={}", response.getStatusCode(), success);
-            return success;
+            logger.info("Event Service ticket update response: status={}, success={}", response.getStatusCode(), success);
+            return success ? TicketUpdateSpool.Delivery.DELIVERED : TicketUpdateSpool.Delivery.FAILED;
+        } catch (HttpClientErrorException e) {
+            logger.error("Event Service refused ticket update for event {}: {}", eventId, e.getMessage());
+            return TicketUpdateSpool.Delivery.REJECTED;
         } catch (Exception e) {
-            logger.error("Error returning tickets from Event Service: {}", e.getMessage(), e);
-            return false;
+            logger.error("Error sending ticket update to Event Service: {}", e.getMessage(), e);
+            return TicketUpdateSpool.Delivery.FAILED;
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,84 @@
+package com.example.booking.service;
+
+import com.example.booking.model.Booking;
+import com.example.booking.model.Event;
+import com.example.booking.model.EventSnapshot;
+import com.mongodb.bulk.BulkWriteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the event snapshots embedded in bookings in line with the Event Service.
+ * Periodically fetches every booked event in batched calls and rewrites, in one unordered bulk write,
+ * the snapshots of bookings whose display fields no longer match (or that have none yet).
+ */
+@Service
+public class EventSnapshotRefresher {
+    
+    private static final Logger logger = LoggerFactory.getLogger(EventSnapshotRefresher.class);
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private EventService eventService;
+    
+    @Value("${booking.snapshot.refresh-enabled:true}")
+    private boolean enabled;
+    
+    @Scheduled(initialDelayString = "${booking.snapshot.refresh-interval-ms:300000}",
+            fixedDelayString = "${booking.snapshot.refresh-interval-ms:300000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        
+        try {
+            List<Integer> eventIds = mongoTemplate.findDistinct(new Query(), "eventId", Booking.class, Integer.class);
+            if (eventIds.isEmpty()) {
+                return;
+            }
+            
+            Map<Integer, Event> events = eventService.getEventsByIds(eventIds, null);
+            if (events.isEmpty()) {
+                logger.warn("Event Service returned no events; skipping snapshot refresh");
+                return;
+            }
+            
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Booking.class);
+            for (Event event : events.values()) {
+                EventSnapshot snapshot = EventSnapshot.of(event);
+                bulk.updateMulti(
+                        new Query(Criteria.where("eventId").is(event.getId()).orOperator(
+                                Criteria.where("eventSnapshot.name").ne(snapshot.getName()),
+                                Criteria.where("eventSnapshot.type").ne(snapshot.getType()),
+                                Criteria.where("eventSnapshot.date").ne(snapshot.getDate()),
+                                Criteria.where("eventSnapshot.time").ne(snapshot.getTime()),
+                                Criteria.where("eventSnapshot.venue").ne(snapshot.getVenue()),
+                                Criteria.where("eventSnapshot.city").ne(snapshot.getCity()),
+                                Criteria.where("eventSnapshot.price").ne(snapshot.getPrice()))),
+                        new Update().set("eventSnapshot", snapshot).inc("version", 1));
+            }
+            
+            BulkWriteResult result = bulk.execute();
+            if (result.getModifiedCount() > 0) {
+                logger.info("Refreshed event snapshot on {} bookings across {} events",
+                        result.getModifiedCount(), events.size());
+            }
+        } catch (Exception e) {
+            logger.error("Event snapshot refresh failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.booking.service;
+
+import com.mongodb.CursorType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Durable ticket update bus on a MongoDB capped collection. Publishers insert, subscribers follow
+ * the collection with a tailable cursor and claim each document (claimed false to true) before
+ * handling it, so several consumers can share the queue and each update is taken once.
+ * The collection is capped by size, so updates nobody consumes are eventually overwritten.
+ */
+public class MongoTicketUpdateBus implements TicketUpdateBus {
+    
+    private static final Logger logger = LoggerFactory.getLogger(MongoTicketUpdateBus.class);
+    
+    private final MongoTemplate mongoTemplate;
+    private final String collectionName;
+    private final long sizeBytes;
+    
+    private volatile boolean running = true;
+    private volatile MongoCollection<Document> collection;
+    
+    public MongoTicketUpdateBus(MongoTemplate mongoTemplate, String collectionName, long sizeBytes) {
+        this.mongoTemplate = mongoTemplate;
+        this.collectionName = collectionName;
+        this.sizeBytes = sizeBytes;
+    }
+    
+    @Override
+    public String getName() {
+        return "mongo";
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+    
+    @Override
+    public boolean publishTicketUpdate(int eventId, int ticketChange) {
+        try {
+            collection().insertOne(new Document("eventId", eventId)
+                    .append("ticketChange", ticketChange)
+                    .append("timestamp", System.currentTimeMillis())
+                    .append("claimed", false));
+            logger.debug("Published ticket update to {}: eventId={}, ticketChange={}", collectionName, eventId, ticketChange);
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to publish ticket update to {}", collectionName, e);
+            return false;
+        }
+    }
+    
+    @Override
+    public void subscribe(Consumer<TicketUpdate> handler) {
+        Thread tailer = new Thread(() -> tail(handler), "ticket-bus-mongo");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+    
+    private void tail(Consumer<TicketUpdate> handler) {
+        ObjectId lastSeen = null;
+        while (running) {
+            Bson filter = lastSeen == null
+                    ? Filters.eq("claimed", false)
+                    : Filters.and(Filters.gt("_id", lastSeen), Filters.eq("claimed", false));
+            
+            // A tailable cursor dies when the collection is empty or its position is overwritten; reopen after the last document seen
+            try (MongoCursor<Document> cursor = collection().find(filter)
+                    .cursorType(CursorType.TailableAwait)
+                    .maxAwaitTime(1, TimeUnit.SECONDS)
+                    .iterator()) {
+                while (running) {
+                    Document document = cursor.tryNext();
+                    if (document == null) {
+                        if (cursor.getServerCursor() == null) {
+                            break;
+                        }
+                        continue;
+                    }
+                    lastSeen = document.getObjectId("_id");
+                    if (claim(lastSeen)) {
+                        handle(handler, document);
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    logger.warn("Tailable cursor on {} failed: {}", collectionName, e.getMessage());
+                }
+            }
+            pause();
+        }
+    }
+    
+    private boolean claim(ObjectId id) {
+        return collection().updateOne(Filters.and(Filters.eq("_id", id), Filters.eq("claimed", false)),
+                Updates.set("claimed", true)).getModifiedCount() == 1;
+    }
+    
+    private void handle(Consumer<TicketUpdate> handler, Document document) {
+        try {
+            handler.accept(new TicketUpdate(document.getInteger("eventId"), document.getInteger("ticketChange"),
+                    document.getLong("timestamp")));
+        } catch (Exception e) {
+            logger.error("Error handling ticket update {} from {}", document.getObjectId("_id"), collectionName, e);
+        }
+    }
+    
+    private void pause() {
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+    
+    // Created on first use; a tailable cursor needs a capped collection
+    private MongoCollection<Document> collection() {
+        MongoCollection<Document> current = collection;
+        if (current == null) {
+            synchronized (this) {
+                if (collection == null) {
+                    if (!mongoTemplate.collectionExists(collectionName)) {
+                        try {
+                            mongoTemplate.getDb().createCollection(collectionName,
+                                    new CreateCollectionOptions().capped(true).sizeInBytes(sizeBytes));
+                            logger.info("Created capped collection {} ({} bytes) for ticket updates", collectionName, sizeBytes);
+                        } catch (Exception e) {
+                            // Another instance created it first
+                            logger.debug("Capped collection {} not created: {}", collectionName, e.getMessage());
+                        }
+                    }
+                    collection = mongoTemplate.getCollection(collectionName);
+                }
+                current = collection;
+            }
+        }
+        return current;
+    }
+    
+    // Drop the collection; used for throwaway benchmark queues
+    public void drop() {
+        mongoTemplate.dropCollection(collectionName);
+        collection = null;
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+    }
+}
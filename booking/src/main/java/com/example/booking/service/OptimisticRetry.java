@@ -0,0 +1,47 @@
+package com.example.booking.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+/**
+ * Re-runs a read-modify-write operation when its versioned save loses a race.
+ * Only use it for operations that re-read and re-validate on every attempt.
+ */
+public final class OptimisticRetry {
+
+    private static final Logger logger = LoggerFactory.getLogger(OptimisticRetry.class);
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 10;
+    private static final long MAX_BACKOFF_MS = 200;
+
+    private OptimisticRetry() {
+    }
+
+    public static <T> T run(String description, Supplier<T> operation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return operation.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    logger.error("Giving up on {} after {} conflicting attempts", description, attempt);
+                    throw e;
+                }
+                // Exponential backoff with full jitter so competing writers spread out
+                long cap = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << attempt);
+                long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+                logger.debug("Version conflict on {} (attempt {}), retrying in {} ms", description, attempt, delay);
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+}
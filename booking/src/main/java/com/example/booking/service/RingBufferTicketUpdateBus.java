@@ -0,0 +1,149 @@
+package com.example.booking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * In-process ticket update bus: a bounded, lock-free, multi-producer single-consumer ring buffer
+ * in the style of the LMAX Disruptor. Slots are preallocated as parallel primitive arrays, producers
+ * claim a sequence with a CAS and publish it by writing the sequence into the slot's marker, and
+ * the consumer thread spins, then yields, then parks while the ring is empty. A parked consumer is
+ * woken by the next publish, so an idle bus costs nothing.
+ *
+ * Nothing is durable: updates still in the ring are lost if the process dies, so this is meant for
+ * co-located, single-host and test deployments.
+ */
+public class RingBufferTicketUpdateBus implements TicketUpdateBus {
+    
+    private static final Logger logger = LoggerFactory.getLogger(RingBufferTicketUpdateBus.class);
+    
+    private final int mask;
+    private final int[] eventIds;
+    private final int[] ticketChanges;
+    private final long[] timestamps;
+    private final AtomicLongArray published; // Sequence last published into each slot
+    
+    private final AtomicLong claimed = new AtomicLong(-1); // Highest sequence handed to a producer
+    private final AtomicLong consumed = new AtomicLong(-1); // Highest sequence the consumer has finished with
+    
+    // Parks are bounded anyway, so a missed wake-up costs at most this long
+    private static final long MAX_PARK_NANOS = 10_000_000;
+    
+    private volatile boolean running = true;
+    private volatile boolean parked; // Consumer is about to park or parked; publishers must wake it
+    private volatile Thread consumer;
+    
+    public RingBufferTicketUpdateBus(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.eventIds = new int[size];
+        this.ticketChanges = new int[size];
+        this.timestamps = new long[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+    }
+    
+    @Override
+    public String getName() {
+        return "memory";
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+    
+    @Override
+    public boolean isInProcess() {
+        return true;
+    }
+    
+    // Never blocks: returns false when the ring is full so the caller can fall back
+    @Override
+    public boolean publishTicketUpdate(int eventId, int ticketChange) {
+        long sequence;
+        do {
+            sequence = claimed.get() + 1;
+            if (sequence - consumed.get() > mask + 1) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence - 1, sequence));
+        
+        int slot = (int) sequence & mask;
+        eventIds[slot] = eventId;
+        ticketChanges[slot] = ticketChange;
+        timestamps[slot] = System.currentTimeMillis();
+        // Volatile write, so it cannot be reordered with the read of parked below: either the consumer
+        // sees this marker when it rechecks, or we see it parked and wake it
+        published.set(slot, sequence);
+        if (parked) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+    
+    @Override
+    public synchronized void subscribe(Consumer<TicketUpdate> handler) {
+        if (consumer != null) {
+            throw new IllegalStateException("Ring buffer bus already has a subscriber");
+        }
+        consumer = new Thread(() -> consume(handler), "ticket-bus-ring");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+    
+    private void consume(Consumer<TicketUpdate> handler) {
+        long next = 0;
+        int idle = 0;
+        while (running) {
+            int slot = (int) next & mask;
+            if (published.get(slot) != next) {
+                // Spin, then yield, then park until a publisher wakes us
+                if (++idle < 100) {
+                    Thread.onSpinWait();
+                } else if (idle < 200) {
+                    Thread.yield();
+                } else {
+                    parked = true;
+                    if (published.get(slot) != next && running) {
+                        LockSupport.parkNanos(MAX_PARK_NANOS);
+                    }
+                    parked = false;
+                }
+                continue;
+            }
+            idle = 0;
+            
+            TicketUpdate update = new TicketUpdate(eventIds[slot], ticketChanges[slot], timestamps[slot]);
+            consumed.lazySet(next); // Slot may be reused once its fields are copied out
+            next++;
+            try {
+                handler.accept(update);
+            } catch (Exception e) {
+                logger.error("Error handling ticket update for event {}", update.eventId(), e);
+            }
+        }
+    }
+    
+    // Updates published but not yet taken by the consumer
+    @Override
+    public long getBacklog() {
+        return claimed.get() - consumed.get();
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.booking.service;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,15 +12,19 @@ import org.springframework.stereotype.Service;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 
 @Service
-public class SqsPublisher {
+public class SqsPublisher implements TicketUpdateBus {
 
     private static final Logger logger = LoggerFactory.getLogger(SqsPublisher.class);
 
     private final SqsClient sqsClient;
     private final String queueUrl;
+    private volatile boolean running = true;
 
     public SqsPublisher(
             @Value("${aws.sqs.queue-url:#{null}}") String queueUrl,
@@ -36,6 +43,12 @@ public class SqsPublisher {
         }
     }
 
+    @Override
+    public String getName() {
+        return "sqs";
+    }
+
+    @Override
     public boolean isEnabled() {
         return sqsClient != null && queueUrl != null;
     }
@@ -45,6 +58,7 @@ public class SqsPublisher {
      * @param eventId the event ID
      * @param ticketChange negative for booking, positive for cancellation/return
      */
+    @Override
     public boolean publishTicketUpdate(int eventId, int ticketChange) {
         if (!isEnabled()) {
             return false;
@@ -69,4 +83,40 @@ public class SqsPublisher {
             return false;
         }
     }
+
+    // The Event Service normally consumes this queue; subscribing here is for benchmarks against a dedicated queue
+    @Override
+    public void subscribe(Consumer<TicketUpdate> handler) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("SQS queue not configured");
+        }
+        Thread poller = new Thread(() -> {
+            while (running) {
+                try {
+                    List<Message> messages = sqsClient.receiveMessage(ReceiveMessageRequest.builder()
+                            .queueUrl(queueUrl)
+                            .maxNumberOfMessages(10)
+                            .waitTimeSeconds(1)
+                            .build()).messages();
+                    for (Message message : messages) {
+                        JSONObject json = new JSONObject(message.body());
+                        handler.accept(new TicketUpdate(json.getInt("eventId"), json.getInt("ticketChange"), json.getLong("timestamp")));
+                        sqsClient.deleteMessage(DeleteMessageRequest.builder()
+                                .queueUrl(queueUrl)
+                                .receiptHandle(message.receiptHandle())
+                                .build());
+                    }
+                } catch (Exception e) {
+                    logger.error("Error polling SQS queue", e);
+                }
+            }
+        }, "ticket-bus-sqs");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+    }
 }
@@ -0,0 +1,61 @@
+package com.example.booking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+
+/**
+ * Publishes how many ticket updates this replica still has to deliver (ticket_update_backlog, one
+ * document per replica): spooled returns, deltas waiting on the batcher and updates in the in-process
+ * bus. The Event Service's inventory reconciliation reads it and does not correct stock while
+ * returns are still on their way, since they would otherwise be credited twice.
+ */
+@Service
+public class TicketBacklogReporter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TicketBacklogReporter.class);
+    
+    private static final String COLLECTION = "ticket_update_backlog";
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private TicketUpdateSpool ticketUpdateSpool;
+    
+    @Autowired
+    private TicketDeltaBatcher ticketDeltaBatcher;
+    
+    @Autowired
+    private TicketUpdateBus ticketUpdateBus;
+    
+    @Value("${booking.replica-id:${HOSTNAME:local}}")
+    private String replicaId;
+    
+    @Scheduled(fixedDelayString = "${booking.ticket-backlog.report-interval-ms:2000}")
+    public void report() {
+        long spooled = ticketUpdateSpool.getBacklog();
+        long batched = ticketDeltaBatcher.getOutstanding();
+        long bus = ticketUpdateBus.getBacklog();
+        try {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(replicaId)),
+                    new Update().set("spooled", spooled)
+                            .set("batched", batched)
+                            .set("bus", bus)
+                            .set("pending", spooled + batched + bus)
+                            .set("updatedAt", new Date()),
+                    COLLECTION);
+        } catch (Exception e) {
+            logger.warn("Failed to report ticket update backlog: {}", e.getMessage());
+        }
+    }
+}
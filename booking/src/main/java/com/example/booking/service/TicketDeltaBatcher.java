@@ -0,0 +1,202 @@
+package com.example.booking.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers ticket deltas bound for the Event Service and sends them in batches to
+ * POST /api/internal/events/tickets/batch, instead of one PUT per booking.
+ *
+ * A single sender thread takes whatever has queued up while the previous batch was in flight (optionally
+ * lingering a little to gather more), so batches grow with load without delaying a quiet system.
+ * Every delta carries an operation ID, so a batch whose response was lost is simply sent again.
+ *
+ * Wire format (big-endian): int32 count, then count items of int64 operationId, int32 eventId, int32 delta;
+ * the response is one status byte per item: 0 applied, 1 not enough tickets, 2 event not found, 3 invalid,
+ * 4 in progress (another request holds the operation; reported as FAILED so the caller tries again later).
+ */
+@Service
+public class TicketDeltaBatcher {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TicketDeltaBatcher.class);
+    
+    private static final int ITEM_BYTES = 16;
+    private static final byte APPLIED = 0;
+    private static final byte IN_PROGRESS = 4;
+    
+    @Autowired
+    private RestTemplate restTemplate;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${event.service.url}")
+    private String eventServiceUrl;
+    
+    @Value("${booking.ticket-batch.enabled:true}")
+    private boolean enabled;
+    
+    // Must not exceed event.tickets.batch.max-items on the Event Service
+    @Value("${booking.ticket-batch.max-items:256}")
+    private int maxItems;
+    
+    @Value("${booking.ticket-batch.linger-ms:0}")
+    private long lingerMs;
+    
+    // Extra attempts for a batch that got no answer; safe because deltas are idempotent by operation ID
+    @Value("${booking.ticket-batch.retries:2}")
+    private int retries;
+    
+    private record Pending(long operationId, int eventId, int delta, CompletableFuture<TicketUpdateSpool.Delivery> result) {
+    }
+    
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger outstanding = new AtomicInteger(); // Submitted and not yet answered
+    
+    // Operation IDs: random per-process prefix in the high half, counter in the low half
+    private final long operationPrefix = (long) new SecureRandom().nextInt() << 32;
+    private final AtomicInteger operationCounter = new AtomicInteger();
+    
+    private volatile boolean running = true;
+    private DistributionSummary batchSizes;
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        batchSizes = DistributionSummary.builder("booking.ticket_batch.size")
+                .description("Ticket deltas sent per batch to the Event Service")
+                .register(meterRegistry);
+        Thread sender = new Thread(this::sendLoop, "ticket-delta-batcher");
+        sender.setDaemon(true);
+        sender.start();
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    // A fresh operation ID; callers that may resend a delta later (e.g. from the spool) keep it and pass it again
+    public long newOperationId() {
+        return operationPrefix | (operationCounter.getAndIncrement() & 0xFFFFFFFFL);
+    }
+    
+    // Queue a delta for the next batch; the future completes once the Event Service has answered for it
+    public CompletableFuture<TicketUpdateSpool.Delivery> submit(int eventId, int delta, long operationId) {
+        CompletableFuture<TicketUpdateSpool.Delivery> result = new CompletableFuture<>();
+        outstanding.incrementAndGet();
+        result.whenComplete((delivery, error) -> outstanding.decrementAndGet());
+        queue.add(new Pending(operationId, eventId, delta, result));
+        return result;
+    }
+    
+    // Deltas queued or in a batch the Event Service has not answered yet
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+    
+    private void sendLoop() {
+        List<Pending> batch = new ArrayList<>(maxItems);
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (lingerMs > 0) {
+                    Thread.sleep(lingerMs);
+                }
+                queue.drainTo(batch, maxItems - 1);
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Ticket delta batch failed: {}", e.getMessage(), e);
+                batch.forEach(pending -> pending.result().complete(TicketUpdateSpool.Delivery.FAILED));
+            }
+            batch.clear();
+        }
+    }
+    
+    private void send(List<Pending> batch) {
+        ByteBuffer body = ByteBuffer.allocate(4 + batch.size() * ITEM_BYTES);
+        body.putInt(batch.size());
+        for (Pending pending : batch) {
+            body.putLong(pending.operationId()).putInt(pending.eventId()).putInt(pending.delta());
+        }
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setAccept(List.of(MediaType.APPLICATION_OCTET_STREAM, MediaType.APPLICATION_JSON));
+        HttpEntity<byte[]> entity = new HttpEntity<>(body.array(), headers);
+        String url = eventServiceUrl + "/api/internal/events/tickets/batch";
+        
+        byte[] statuses = null;
+        for (int attempt = 0; statuses == null; attempt++) {
+            try {
+                ResponseEntity<byte[]> response = restTemplate.exchange(url, HttpMethod.POST, entity, byte[].class);
+                statuses = response.getBody();
+                if (statuses == null || statuses.length != batch.size()) {
+                    throw new IllegalStateException("Event Service answered " + (statuses == null ? 0 : statuses.length)
+                            + " statuses for " + batch.size() + " ticket deltas");
+                }
+            } catch (Exception e) {
+                if (attempt >= retries || !running) {
+                    throw e;
+                }
+                logger.warn("Ticket delta batch of {} failed, retrying: {}", batch.size(), e.getMessage());
+                statuses = null;
+            }
+        }
+        
+        batchSizes.record(batch.size());
+        logger.debug("Sent ticket delta batch of {} to Event Service", batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            if (statuses[i] == APPLIED) {
+                pending.result().complete(TicketUpdateSpool.Delivery.DELIVERED);
+            } else if (statuses[i] == IN_PROGRESS) {
+                logger.warn("Ticket update for event {} is still being applied by an earlier attempt", pending.eventId());
+                pending.result().complete(TicketUpdateSpool.Delivery.FAILED);
+            } else {
+                logger.error("Event Service refused ticket update for event {} (status {})", pending.eventId(), statuses[i]);
+                pending.result().complete(TicketUpdateSpool.Delivery.REJECTED);
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        // Whatever is still queued is reported as undelivered so the callers spool it
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().complete(TicketUpdateSpool.Delivery.FAILED);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.booking.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport for ticket updates from the Booking Service to the Event Service.
+ * Implementations: SQS ({@link SqsPublisher}), a MongoDB capped collection ({@link MongoTicketUpdateBus})
+ * and an in-process ring buffer ({@link RingBufferTicketUpdateBus}); the active one is chosen by ticket.bus.type.
+ */
+public interface TicketUpdateBus {
+    
+    String getName();
+    
+    // False when the transport is not configured; callers then go straight to HTTP
+    boolean isEnabled();
+    
+    // True when updates are consumed inside this JVM, so this service has to deliver them itself
+    default boolean isInProcess() {
+        return false;
+    }
+    
+    /**
+     * Hand an update to the transport.
+     * @return false if it could not be accepted (transport down or full)
+     */
+    boolean publishTicketUpdate(int eventId, int ticketChange);
+    
+    // Start delivering updates to the handler on a background thread (one subscriber per bus)
+    void subscribe(Consumer<TicketUpdate> handler);
+    
+    // Updates accepted but not yet handed on; only an in-process transport holds any
+    default long getBacklog() {
+        return 0;
+    }
+    
+    default void close() {
+    }
+}
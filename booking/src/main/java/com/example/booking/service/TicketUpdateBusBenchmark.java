@@ -0,0 +1,199 @@
+package com.example.booking.service;
+
+import com.example.booking.analytics.TDigest;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Compares ticket update bus implementations on throwaway instances: several producers publish a fixed
+ * number of updates while one subscriber receives them, measuring publish rate, end-to-end throughput and
+ * publish-to-receive latency. Each message carries its sequence number in the eventId field, so nothing
+ * here ever reaches the Event Service.
+ */
+@Service
+public class TicketUpdateBusBenchmark {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TicketUpdateBusBenchmark.class);
+    
+    private static final int MAX_MESSAGES = 1_000_000;
+    private static final int MAX_PRODUCERS = 64;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    // Off unless explicitly switched on: a run floods throwaway queues and creates and drops collections
+    @Value("${ticket.bus.benchmark.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${ticket.bus.memory.capacity:65536}")
+    private int memoryCapacity;
+    
+    @Value("${ticket.bus.benchmark.mongo-collection:ticket_updates_benchmark}")
+    private String mongoCollection;
+    
+    @Value("${ticket.bus.mongo.size-bytes:67108864}")
+    private long mongoSizeBytes;
+    
+    // SQS is only benchmarked against its own queue, never the live one the Event Service consumes
+    @Value("${ticket.bus.benchmark.sqs-queue-url:}")
+    private String sqsQueueUrl;
+    
+    @Value("${aws.sqs.region:eu-west-2}")
+    private String sqsRegion;
+    
+    @Value("${ticket.bus.benchmark.timeout-ms:60000}")
+    private long timeoutMs;
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    // One benchmark at a time, so runs do not skew each other
+    public synchronized JSONObject run(List<String> types, int messages, int producers) {
+        if (!enabled) {
+            throw new IllegalStateException("Ticket update bus benchmark is disabled");
+        }
+        if (messages < 1 || messages > MAX_MESSAGES) {
+            throw new IllegalArgumentException("messages must be between 1 and " + MAX_MESSAGES);
+        }
+        if (producers < 1 || producers > MAX_PRODUCERS) {
+            throw new IllegalArgumentException("producers must be between 1 and " + MAX_PRODUCERS);
+        }
+        
+        JSONObject results = new JSONObject();
+        for (String type : types) {
+            TicketUpdateBus bus = createBus(type);
+            try {
+                results.put(type, measure(bus, messages, producers));
+            } catch (Exception e) {
+                logger.error("Ticket update bus benchmark of {} failed", type, e);
+                results.put(type, new JSONObject().put("error", String.valueOf(e.getMessage())));
+            } finally {
+                bus.close();
+                if (bus instanceof MongoTicketUpdateBus mongoBus) {
+                    mongoBus.drop();
+                }
+            }
+        }
+        return results;
+    }
+    
+    private TicketUpdateBus createBus(String type) {
+        return switch (type) {
+            case "memory" -> new RingBufferTicketUpdateBus(memoryCapacity);
+            case "mongo" -> {
+                MongoTicketUpdateBus bus = new MongoTicketUpdateBus(mongoTemplate, mongoCollection, mongoSizeBytes);
+                bus.drop(); // Leftovers from an aborted run would be received as noise
+                yield bus;
+            }
+            case "sqs" -> {
+                if (sqsQueueUrl == null || sqsQueueUrl.isEmpty()) {
+                    throw new IllegalArgumentException("ticket.bus.benchmark.sqs-queue-url is not set");
+                }
+                yield new SqsPublisher(sqsQueueUrl, sqsRegion);
+            }
+            default -> throw new IllegalArgumentException("Unknown ticket update bus: " + type);
+        };
+    }
+    
+    private JSONObject measure(TicketUpdateBus bus, int messages, int producers) throws Exception {
+        AtomicLongArray sentAt = new AtomicLongArray(messages);
+        AtomicIntegerArray seen = new AtomicIntegerArray(messages);
+        CountDownLatch received = new CountDownLatch(messages);
+        TDigest latencyMicros = new TDigest(100);
+        AtomicLong duplicates = new AtomicLong();
+        AtomicLong lastReceivedAt = new AtomicLong();
+        
+        bus.subscribe(update -> {
+            int sequence = update.eventId();
+            if (sequence < 0 || sequence >= messages || !seen.compareAndSet(sequence, 0, 1)) {
+                duplicates.incrementAndGet();
+                return;
+            }
+            long now = System.nanoTime();
+            synchronized (latencyMicros) {
+                latencyMicros.add((now - sentAt.get(sequence)) / 1000.0);
+            }
+            lastReceivedAt.set(now);
+            received.countDown();
+        });
+        
+        AtomicLong failed = new AtomicLong();
+        AtomicLong retries = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                int first = p;
+                running.add(pool.submit(() -> {
+                    for (int sequence = first; sequence < messages; sequence += producers) {
+                        sentAt.set(sequence, System.nanoTime());
+                        while (!bus.publishTicketUpdate(sequence, 1)) {
+                            if (!bus.isInProcess()) {
+                                failed.incrementAndGet();
+                                received.countDown();
+                                break;
+                            }
+                            // A full ring applies backpressure rather than losing the update; yield so the
+                            // consumer gets the CPU on small hosts
+                            retries.incrementAndGet();
+                            Thread.yield();
+                            sentAt.set(sequence, System.nanoTime());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> producer : running) {
+                producer.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long published = System.nanoTime();
+        boolean complete = received.await(timeoutMs, TimeUnit.MILLISECONDS);
+        
+        long receivedCount = messages - failed.get() - received.getCount();
+        double publishSeconds = Math.max(1, published - start) / 1e9;
+        double totalSeconds = Math.max(1, (receivedCount > 0 ? lastReceivedAt.get() : System.nanoTime()) - start) / 1e9;
+        
+        JSONObject result = new JSONObject();
+        result.put("messages", messages);
+        result.put("producers", producers);
+        result.put("publishFailures", failed.get());
+        result.put("publishRetries", retries.get());
+        result.put("received", receivedCount);
+        result.put("lost", complete ? 0 : received.getCount());
+        result.put("duplicates", duplicates.get());
+        result.put("publishPerSecond", Math.round((messages - failed.get()) / publishSeconds));
+        result.put("deliveredPerSecond", Math.round(receivedCount / totalSeconds));
+        // After a timeout the subscriber may still be adding late arrivals
+        synchronized (latencyMicros) {
+            if (latencyMicros.count() > 0) {
+                result.put("latencyMicros", new JSONObject()
+                        .put("p50", Math.round(latencyMicros.quantile(0.5)))
+                        .put("p90", Math.round(latencyMicros.quantile(0.9)))
+                        .put("p99", Math.round(latencyMicros.quantile(0.99)))
+                        .put("max", Math.round(latencyMicros.quantile(1.0))));
+            }
+        }
+        logger.info("Ticket update bus benchmark of {}: {}", bus.getName(), result);
+        return result;
+    }
+}
@@ -0,0 +1,428 @@
+package com.example.booking.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Local write-ahead spool for ticket returns the Event Service could not be reached for.
+ * Only returns are spooled: a booking's decrement must be admitted by the Event Service before the
+ * booking is confirmed, so it fails instead (see EventService.sendTicketUpdate).
+ *
+ * Deltas are appended to fixed-size, memory-mapped segment files. Each record carries a CRC so a torn
+ * write after a crash is detected and discarded on recovery. Appends only touch the mapping; a flusher
+ * thread forces the active segment to disk in batches and appenders wait for the batch holding their
+ * record (group commit). A drainer thread replays records in order with exponential backoff, persists
+ * its read position after every delivered record, and deletes segments once they are fully drained.
+ * A crash between delivering a record and saving the position replays it, under the operation ID it was
+ * first sent with, so the Event Service's batch endpoint does not apply it twice.
+ */
+@Service
+public class TicketUpdateSpool {
+    
+    private static final Logger logger = LoggerFactory.getLogger(TicketUpdateSpool.class);
+    
+    private static final int PAYLOAD_BYTES = 16; // eventId, ticketChange, operationId
+    private static final int RECORD_BYTES = 8 + PAYLOAD_BYTES; // length, crc, payload
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CURSOR_FILE = "cursor";
+    
+    // A spooled ticket delta; the operation ID it was first sent under is reused on replay, so the Event
+    // Service can recognise a delta it already applied when only the response was lost
+    public record Delta(int eventId, int ticketChange, long operationId) {
+    }
+    
+    // Outcome of one delivery attempt by the drainer
+    public enum Delivery {
+        DELIVERED,  // Applied downstream; move on
+        REJECTED,   // Refused for good (e.g. the event is gone); drop it and move on
+        FAILED      // Downstream unavailable; retry later
+    }
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    @Value("${booking.spool.dir:spool}")
+    private String spoolDir;
+    
+    @Value("${booking.spool.segment-bytes:4194304}")
+    private int segmentBytes;
+    
+    @Value("${booking.spool.fsync-interval-ms:20}")
+    private long fsyncIntervalMs;
+    
+    // Wait for the fsync of the batch holding the record before returning from append
+    @Value("${booking.spool.sync-on-append:true}")
+    private boolean syncOnAppend;
+    
+    @Value("${booking.spool.backoff-initial-ms:500}")
+    private long backoffInitialMs;
+    
+    @Value("${booking.spool.backoff-max-ms:60000}")
+    private long backoffMaxMs;
+    
+    private Path dir;
+    private final Object writeLock = new Object();
+    
+    // Writer state, guarded by writeLock; the reader only looks at the volatile copies
+    private FileChannel activeChannel;
+    private MappedByteBuffer activeBuffer;
+    private volatile long activeIndex;
+    private volatile int writePos;
+    private long appendedRecords;
+    private long flushedRecords;
+    
+    // Reader state, owned by the drainer thread
+    private long readIndex;
+    private int readPos;
+    private FileChannel cursorChannel;
+    
+    private final AtomicLong backlog = new AtomicLong();
+    private volatile boolean running;
+    private volatile Function<Delta, Delivery> deliverer;
+    private Thread flusher;
+    private Thread drainer;
+    
+    @PostConstruct
+    public void open() throws IOException {
+        dir = Paths.get(spoolDir);
+        Files.createDirectories(dir);
+        
+        List<Long> segments = listSegments();
+        if (segments.isEmpty()) {
+            segments.add(0L);
+        }
+        activeIndex = segments.get(segments.size() - 1);
+        mapActive(activeIndex);
+        writePos = scanValidEnd(activeIndex);
+        
+        cursorChannel = FileChannel.open(dir.resolve(CURSOR_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadCursor(segments.get(0));
+        backlog.set(countBacklog());
+        if (backlog.get() > 0) {
+            logger.warn("Ticket update spool holds {} undelivered updates from a previous run", backlog.get());
+        }
+        
+        Gauge.builder("booking.spool.backlog", backlog, AtomicLong::get)
+                .description("Ticket updates spooled locally and not yet delivered to the Event Service")
+                .register(meterRegistry);
+        
+        running = true;
+        flusher = new Thread(this::flushLoop, "ticket-spool-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    // Start replaying spooled deltas through the given delivery function
+    public void startDraining(Function<Delta, Delivery> deliverer) {
+        this.deliverer = deliverer;
+        drainer = new Thread(this::drainLoop, "ticket-spool-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+    
+    // True while earlier deltas are still waiting; new ones should queue behind them
+    public boolean hasBacklog() {
+        return backlog.get() > 0;
+    }
+    
+    public long getBacklog() {
+        return backlog.get();
+    }
+    
+    /**
+     * Append a delta. Returns once the record is in the mapping, or once it has been
+     * forced to disk when sync-on-append is set.
+     */
+    public void append(int eventId, int ticketChange, long operationId) throws IOException {
+        long sequence;
+        synchronized (writeLock) {
+            if (!running) {
+                throw new IOException("Ticket update spool is closed");
+            }
+            if (writePos + RECORD_BYTES > segmentBytes) {
+                roll();
+            }
+            
+            ByteBuffer payload = ByteBuffer.allocate(PAYLOAD_BYTES);
+            payload.putInt(eventId).putInt(ticketChange).putLong(operationId).flip();
+            CRC32C crc = new CRC32C();
+            crc.update(payload.duplicate());
+            
+            // Length goes in last: a zero length marks the end of the written records
+            activeBuffer.position(writePos + 8);
+            activeBuffer.put(payload);
+            activeBuffer.putInt(writePos + 4, (int) crc.getValue());
+            activeBuffer.putInt(writePos, PAYLOAD_BYTES);
+            writePos += RECORD_BYTES;
+            sequence = ++appendedRecords;
+        }
+        backlog.incrementAndGet();
+        
+        if (syncOnAppend) {
+            awaitFlush(sequence);
+        }
+    }
+    
+    private void awaitFlush(long sequence) throws IOException {
+        synchronized (writeLock) {
+            long deadline = System.currentTimeMillis() + Math.max(1000, fsyncIntervalMs * 50);
+            while (flushedRecords < sequence) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    // The record is already in the page cache; only a host crash could lose it now
+                    logger.warn("Timed out waiting for the ticket update spool to sync");
+                    return;
+                }
+                try {
+                    writeLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the ticket update spool to sync");
+                }
+            }
+        }
+    }
+    
+    // Force the active segment every interval if anything was appended, then wake the appenders
+    private void flushLoop() {
+        while (running) {
+            try {
+                Thread.sleep(fsyncIntervalMs);
+                synchronized (writeLock) {
+                    if (appendedRecords > flushedRecords) {
+                        activeBuffer.force();
+                        flushedRecords = appendedRecords;
+                        writeLock.notifyAll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.error("Failed to sync ticket update spool", e);
+            }
+        }
+    }
+    
+    // Seal the full segment and start the next one; caller holds writeLock
+    private void roll() throws IOException {
+        activeBuffer.force();
+        flushedRecords = appendedRecords;
+        writeLock.notifyAll();
+        activeChannel.close();
+        mapActive(activeIndex + 1);
+        writePos = 0;
+        activeIndex = activeIndex + 1;
+    }
+    
+    private void mapActive(long index) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentPath(index).toFile(), "rw")) {
+            if (file.length() < segmentBytes) {
+                file.setLength(segmentBytes);
+            }
+        }
+        activeChannel = FileChannel.open(segmentPath(index), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeBuffer = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+    }
+    
+    private void drainLoop() {
+        int failures = 0;
+        while (running) {
+            try {
+                Delta delta = peek();
+                if (delta == null) {
+                    Thread.sleep(200);
+                    continue;
+                }
+                
+                Delivery delivery = deliverer.apply(delta);
+                if (delivery == Delivery.FAILED) {
+                    failures++;
+                    Thread.sleep(backoff(failures));
+                    continue;
+                }
+                if (delivery == Delivery.REJECTED) {
+                    logger.error("Event Service rejected spooled ticket update (event {}, change {}); dropping it",
+                            delta.eventId(), delta.ticketChange());
+                } else if (failures > 0) {
+                    logger.info("Event Service reachable again; replaying {} spooled ticket updates", backlog.get());
+                }
+                failures = 0;
+                readPos += RECORD_BYTES;
+                saveCursor();
+                backlog.decrementAndGet();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.error("Error draining ticket update spool", e);
+                try {
+                    Thread.sleep(backoff(++failures));
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+    
+    // Exponential backoff with full jitter
+    private long backoff(int failures) {
+        long ceiling = Math.min(backoffMaxMs, backoffInitialMs << Math.min(failures - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+    
+    // Next undelivered record, moving past (and deleting) drained segments; null when caught up
+    private Delta peek() throws IOException {
+        while (true) {
+            long active = activeIndex;
+            int limit = readIndex == active ? writePos : segmentBytes;
+            if (readIndex < active || readPos < limit) {
+                Delta delta = readPos + RECORD_BYTES <= limit ? readRecord(readIndex, readPos) : null;
+                if (delta != null) {
+                    return delta;
+                }
+                if (readIndex == active) {
+                    return null;
+                }
+                // End of a sealed segment (or a corrupt tail left by a crash): on to the next one
+                Files.deleteIfExists(segmentPath(readIndex));
+                readIndex++;
+                readPos = 0;
+                saveCursor();
+                continue;
+            }
+            return null;
+        }
+    }
+    
+    private Delta readRecord(long index, int position) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+            return readRecord(channel, position);
+        }
+    }
+    
+    private static Delta readRecord(FileChannel channel, int position) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        while (record.hasRemaining()) {
+            if (channel.read(record, position + record.position()) < 0) {
+                return null;
+            }
+        }
+        record.flip();
+        int length = record.getInt();
+        int checksum = record.getInt();
+        if (length != PAYLOAD_BYTES) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(record.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+        return new Delta(record.getInt(), record.getInt(), record.getLong());
+    }
+    
+    // Offset just past the last intact record of a segment
+    private int scanValidEnd(long index) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(index), StandardOpenOption.READ)) {
+            int position = 0;
+            while (position + RECORD_BYTES <= segmentBytes && readRecord(channel, position) != null) {
+                position += RECORD_BYTES;
+            }
+            return position;
+        }
+    }
+    
+    private long countBacklog() throws IOException {
+        long count = 0;
+        for (long index : listSegments()) {
+            if (index < readIndex) {
+                continue;
+            }
+            int end = index == activeIndex ? writePos : scanValidEnd(index);
+            int start = index == readIndex ? readPos : 0;
+            count += Math.max(0, end - start) / RECORD_BYTES;
+        }
+        return count;
+    }
+    
+    private void loadCursor(long firstSegment) throws IOException {
+        ByteBuffer cursor = ByteBuffer.allocate(12);
+        cursorChannel.read(cursor, 0);
+        cursor.flip();
+        if (cursor.remaining() == 12) {
+            readIndex = cursor.getLong();
+            readPos = cursor.getInt();
+        }
+        if (readIndex < firstSegment || !Files.exists(segmentPath(readIndex))) {
+            readIndex = firstSegment;
+            readPos = 0;
+        }
+    }
+    
+    private void saveCursor() throws IOException {
+        ByteBuffer cursor = ByteBuffer.allocate(12).putLong(readIndex).putInt(readPos).flip();
+        cursorChannel.write(cursor, 0);
+        cursorChannel.force(false);
+    }
+    
+    private List<Long> listSegments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .forEach(segments::add);
+        }
+        return segments;
+    }
+    
+    private Path segmentPath(long index) {
+        return dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+    
+    @PreDestroy
+    public void close() {
+        running = false;
+        if (drainer != null) {
+            drainer.interrupt();
+        }
+        flusher.interrupt();
+        synchronized (writeLock) {
+            try {
+                activeBuffer.force();
+                flushedRecords = appendedRecords;
+                writeLock.notifyAll();
+                activeChannel.close();
+                cursorChannel.close();
+            } catch (IOException e) {
+                logger.warn("Error closing ticket update spool: {}", e.getMessage());
+            }
+        }
+    }
+}
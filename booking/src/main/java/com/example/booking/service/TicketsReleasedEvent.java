@@ -0,0 +1,5 @@
+package com.example.booking.service;
+
+// Published after tickets for an event have been handed back to the Event Service
+public record TicketsReleasedEvent(int eventId, int tickets) {
+}
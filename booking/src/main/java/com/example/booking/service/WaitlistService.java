@@ -0,0 +1,388 @@
+package com.example.booking.service;
+
+import com.example.booking.model.Booking;
+import com.example.booking.model.Event;
+import com.example.booking.model.WaitlistEntry;
+import com.example.booking.model.WaitlistEntry.WaitlistStatus;
+import com.example.booking.repository.BookingRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event FIFO waitlist for sold-out events. Users join with the number of tickets they want and
+ * are served in queue order: whenever tickets are released (a cancellation, a deleted booking,
+ * or anything else picked up by the periodic sweep) the head of the queue is booked automatically as
+ * long as enough tickets are available, and the user is sent a notification.
+ *
+ * Released tickets are held for a head that needs more than are free, but only for head-hold-minutes.
+ * After that the head keeps its place, later entries that the free tickets cover are served past it,
+ * and once no entry fits, direct bookings may take the tickets again, so one large request cannot
+ * stop sales until it expires.
+ */
+@Service
+public class WaitlistService {
+    
+    private static final Logger logger = LoggerFactory.getLogger(WaitlistService.class);
+    
+    private static final String COUNTER_COLLECTION = "waitlist_counters";
+    private static final String NOTIFICATION_COLLECTION = "notifications";
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private BookingService bookingService;
+    
+    @Autowired
+    private BookingRepository bookingRepository;
+    
+    @Autowired
+    private EventService eventService;
+    
+    @Value("${booking.waitlist.max-tickets:10}")
+    private int maxTickets;
+    
+    @Value("${booking.waitlist.ttl-hours:168}")
+    private int ttlHours;
+    
+    @Value("${booking.waitlist.max-allocations-per-run:50}")
+    private int maxAllocationsPerRun;
+    
+    // How long released tickets are held for a head of the queue they are not enough for
+    @Value("${booking.waitlist.head-hold-minutes:10}")
+    private int headHoldMinutes;
+    
+    // An entry claimed longer ago than this was abandoned by a crashed allocator
+    @Value("${booking.waitlist.claim-timeout-minutes:5}")
+    private int claimTimeoutMinutes;
+    
+    private ThreadPoolExecutor allocator;
+    private final Set<Integer> scheduled = ConcurrentHashMap.newKeySet();
+    
+    @PostConstruct
+    public void start() {
+        // One allocator thread keeps allocation for an event strictly sequential
+        allocator = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000), r -> {
+                    Thread thread = new Thread(r, "waitlist-allocator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        allocator.shutdownNow();
+    }
+    
+    /**
+     * Join the waitlist of a sold-out event.
+     * @throws IllegalArgumentException for an invalid ticket count or unknown event
+     * @throws IllegalStateException if the tickets can be booked right away or the user is already waiting
+     */
+    public WaitlistEntry join(String userFirebaseUid, int eventId, int tickets, String authToken) {
+        if (tickets <= 0 || tickets > maxTickets) {
+            throw new IllegalArgumentException("You can wait for between 1 and " + maxTickets + " tickets");
+        }
+        Event event = eventService.getEventById(eventId, authToken);
+        if (event == null) {
+            throw new IllegalArgumentException("Event not found");
+        }
+        if (event.getAvailableTickets() >= tickets && !holdsTickets(eventId, event.getAvailableTickets())) {
+            throw new IllegalStateException("Tickets are available; book them directly");
+        }
+        
+        WaitlistEntry entry = new WaitlistEntry(eventId, userFirebaseUid, tickets, nextPosition(eventId),
+                LocalDateTime.now().plusHours(ttlHours));
+        try {
+            entry = mongoTemplate.insert(entry);
+        } catch (DuplicateKeyException e) {
+            throw new IllegalStateException("You are already on the waitlist for this event");
+        }
+        logger.info("User {} joined the waitlist for event {} at position {} ({} tickets)",
+                userFirebaseUid, eventId, entry.getPosition(), tickets);
+        
+        // Tickets may have been released while we were queueing
+        scheduleAllocation(eventId);
+        return entry;
+    }
+    
+    // Leave the waitlist; returns false if the entry is not waiting or not the user's
+    public boolean leave(String userFirebaseUid, String entryId) {
+        Query query = new Query(Criteria.where("_id").is(entryId)
+                .and("userFirebaseUid").is(userFirebaseUid)
+                .and("status").is(WaitlistStatus.WAITING));
+        return mongoTemplate.updateFirst(query, new Update().set("status", WaitlistStatus.CANCELLED), WaitlistEntry.class)
+                .getModifiedCount() > 0;
+    }
+    
+    // A user's waitlist entries, newest first
+    public List<WaitlistEntry> getUserEntries(String userFirebaseUid) {
+        Query query = new Query(Criteria.where("userFirebaseUid").is(userFirebaseUid))
+                .with(Sort.by(Sort.Direction.DESC, "joinedAt"));
+        return mongoTemplate.find(query, WaitlistEntry.class);
+    }
+    
+    // The queue of an event in serving order
+    public List<WaitlistEntry> getEventQueue(int eventId) {
+        return mongoTemplate.find(waitingQuery(eventId), WaitlistEntry.class);
+    }
+    
+    // Number of people ahead of a waiting entry
+    public long countAhead(WaitlistEntry entry) {
+        Query query = new Query(Criteria.where("eventId").is(entry.getEventId())
+                .and("status").is(WaitlistStatus.WAITING)
+                .and("position").lt(entry.getPosition()));
+        return mongoTemplate.count(query, WaitlistEntry.class);
+    }
+    
+    /**
+     * Unread notifications of a user, marking them read.
+     */
+    public List<Map<String, Object>> takeNotifications(String userFirebaseUid) {
+        Query query = new Query(Criteria.where("userFirebaseUid").is(userFirebaseUid).and("read").is(false))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        List<Map<String, Object>> notifications = new ArrayList<>();
+        List<Object> ids = new ArrayList<>();
+        for (Document notification : mongoTemplate.find(query, Document.class, NOTIFICATION_COLLECTION)) {
+            ids.add(notification.get("_id"));
+            notification.remove("_id");
+            notification.remove("read");
+            Date createdAt = notification.getDate("createdAt");
+            if (createdAt != null) {
+                notification.put("createdAt", createdAt.toInstant().toString());
+            }
+            notifications.add(notification);
+        }
+        if (!ids.isEmpty()) {
+            mongoTemplate.updateMulti(new Query(Criteria.where("_id").in(ids)), new Update().set("read", true),
+                    NOTIFICATION_COLLECTION);
+        }
+        return notifications;
+    }
+    
+    @EventListener
+    public void onTicketsReleased(TicketsReleasedEvent released) {
+        scheduleAllocation(released.eventId());
+    }
+    
+    // Expire stale entries, recover abandoned claims and retry every event that still has a queue
+    @Scheduled(fixedDelayString = "${booking.waitlist.sweep-interval-ms:30000}")
+    public void sweep() {
+        try {
+            for (WaitlistEntry entry : mongoTemplate.find(new Query(Criteria.where("status").is(WaitlistStatus.WAITING)
+                    .and("expiresAt").lt(LocalDateTime.now())), WaitlistEntry.class)) {
+                if (transition(entry.getId(), WaitlistStatus.WAITING, new Update().set("status", WaitlistStatus.EXPIRED))) {
+                    notify(entry.getUserFirebaseUid(), "WAITLIST_EXPIRED", entry, null);
+                }
+            }
+            
+            LocalDateTime claimCutoff = LocalDateTime.now().minusMinutes(claimTimeoutMinutes);
+            for (WaitlistEntry entry : mongoTemplate.find(new Query(Criteria.where("status").is(WaitlistStatus.ALLOCATING)
+                    .and("allocatedAt").lt(claimCutoff)), WaitlistEntry.class)) {
+                recoverClaim(entry);
+            }
+            
+            for (Integer eventId : mongoTemplate.findDistinct(new Query(Criteria.where("status").is(WaitlistStatus.WAITING)),
+                    "eventId", WaitlistEntry.class, Integer.class)) {
+                scheduleAllocation(eventId);
+            }
+        } catch (Exception e) {
+            logger.error("Error sweeping the waitlist", e);
+        }
+    }
+    
+    private void scheduleAllocation(int eventId) {
+        if (!scheduled.add(eventId)) {
+            return; // Already queued; that run will see the released tickets too
+        }
+        try {
+            allocator.execute(() -> {
+                scheduled.remove(eventId);
+                allocate(eventId);
+            });
+        } catch (RejectedExecutionException e) {
+            scheduled.remove(eventId);
+            logger.warn("Waitlist allocator busy; event {} will be retried by the next sweep", eventId);
+        }
+    }
+    
+    // Serve the head of the queue while enough tickets are available
+    private void allocate(int eventId) {
+        try {
+            for (int served = 0; served < maxAllocationsPerRun; served++) {
+                WaitlistEntry head = mongoTemplate.findOne(waitingQuery(eventId).limit(1), WaitlistEntry.class);
+                if (head == null) {
+                    return;
+                }
+                
+                // Ask the Event Service directly; the local projection may not have seen the release yet
+                Event event = eventService.getEventById(eventId, null);
+                if (event == null) {
+                    return;
+                }
+                WaitlistEntry next = head;
+                if (event.getAvailableTickets() < head.getTicketsRequested()) {
+                    if (!isHoldExpired(head)) {
+                        // Nobody overtakes the head while the released tickets are held for it
+                        markBlocked(head);
+                        return;
+                    }
+                    // The head has had its hold; serve the first entry the free tickets are enough for
+                    next = mongoTemplate.findOne(fittingQuery(eventId, event.getAvailableTickets()).limit(1), WaitlistEntry.class);
+                    if (next == null) {
+                        return;
+                    }
+                }
+                
+                WaitlistEntry claimed = mongoTemplate.findAndModify(
+                        new Query(Criteria.where("_id").is(next.getId()).and("status").is(WaitlistStatus.WAITING)),
+                        new Update().set("status", WaitlistStatus.ALLOCATING).set("allocatedAt", LocalDateTime.now()),
+                        FindAndModifyOptions.options().returnNew(true), WaitlistEntry.class);
+                if (claimed == null) {
+                    continue; // Left the queue or expired in the meantime
+                }
+                
+                Booking booking;
+                try {
+                    // System booking on the user's behalf
+                    booking = bookingService.createWaitlistBooking(claimed.getUserFirebaseUid(), event,
+                            claimed.getTicketsRequested());
+                } catch (Exception e) {
+                    logger.warn("Could not book waitlisted tickets for entry {}: {}", claimed.getId(), e.getMessage());
+                    transition(claimed.getId(), WaitlistStatus.ALLOCATING, new Update().set("status", WaitlistStatus.WAITING)
+                            .unset("allocatedAt"));
+                    return;
+                }
+                
+                transition(claimed.getId(), WaitlistStatus.ALLOCATING, new Update().set("status", WaitlistStatus.ALLOCATED)
+                        .set("bookingId", booking.getId()));
+                notify(claimed.getUserFirebaseUid(), "WAITLIST_ALLOCATED", claimed, booking.getId());
+                logger.info("Allocated {} tickets for event {} to waitlisted user {} (booking {})",
+                        claimed.getTicketsRequested(), eventId, claimed.getUserFirebaseUid(), booking.getId());
+            }
+            // More to serve; go round again rather than holding the allocator
+            scheduleAllocation(eventId);
+        } catch (Exception e) {
+            logger.error("Error allocating waitlisted tickets for event {}", eventId, e);
+        }
+    }
+    
+    // An allocator died between claiming an entry and recording the result: settle it from the bookings
+    private void recoverClaim(WaitlistEntry entry) {
+        Booking booking = bookingRepository.findByUserFirebaseUidAndEventId(entry.getUserFirebaseUid(), entry.getEventId())
+                .stream()
+                .filter(candidate -> candidate.getBookingTime() != null && !candidate.getBookingTime().isBefore(entry.getAllocatedAt()))
+                .findFirst()
+                .orElse(null);
+        if (booking != null) {
+            if (transition(entry.getId(), WaitlistStatus.ALLOCATING, new Update().set("status", WaitlistStatus.ALLOCATED)
+                    .set("bookingId", booking.getId()))) {
+                notify(entry.getUserFirebaseUid(), "WAITLIST_ALLOCATED", entry, booking.getId());
+            }
+        } else {
+            transition(entry.getId(), WaitlistStatus.ALLOCATING, new Update().set("status", WaitlistStatus.WAITING)
+                    .unset("allocatedAt"));
+        }
+    }
+    
+    private boolean transition(String entryId, WaitlistStatus from, Update update) {
+        Query query = new Query(Criteria.where("_id").is(entryId).and("status").is(from));
+        return mongoTemplate.updateFirst(query, update, WaitlistEntry.class).getModifiedCount() > 0;
+    }
+    
+    private void notify(String userFirebaseUid, String type, WaitlistEntry entry, String bookingId) {
+        try {
+            Document notification = new Document("userFirebaseUid", userFirebaseUid)
+                    .append("type", type)
+                    .append("eventId", entry.getEventId())
+                    .append("tickets", entry.getTicketsRequested())
+                    .append("waitlistEntryId", entry.getId())
+                    .append("bookingId", bookingId)
+                    .append("read", false)
+                    .append("createdAt", new Date());
+            mongoTemplate.insert(notification, NOTIFICATION_COLLECTION);
+        } catch (Exception e) {
+            logger.error("Failed to notify user {} about waitlist entry {}", userFirebaseUid, entry.getId(), e);
+        }
+    }
+    
+    // Whether anyone is queued for an event
+    public boolean hasWaiting(int eventId) {
+        return mongoTemplate.exists(waitingQuery(eventId), WaitlistEntry.class);
+    }
+    
+    /**
+     * Whether the queue has first call on an event's free tickets, so direct bookings must be refused:
+     * while the head's hold runs, or while some waiting entry could be served from them.
+     */
+    public boolean holdsTickets(int eventId, int availableTickets) {
+        WaitlistEntry head = mongoTemplate.findOne(waitingQuery(eventId).limit(1), WaitlistEntry.class);
+        if (head == null) {
+            return false;
+        }
+        return !isHoldExpired(head) || mongoTemplate.exists(fittingQuery(eventId, availableTickets), WaitlistEntry.class);
+    }
+    
+    private boolean isHoldExpired(WaitlistEntry head) {
+        return head.getBlockedSince() != null
+                && head.getBlockedSince().isBefore(LocalDateTime.now().minusMinutes(headHoldMinutes));
+    }
+    
+    // Start the hold of a head that cannot be served yet; later calls keep the original start
+    private void markBlocked(WaitlistEntry head) {
+        if (head.getBlockedSince() == null) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(head.getId()).and("blockedSince").is(null)),
+                    new Update().set("blockedSince", LocalDateTime.now()), WaitlistEntry.class);
+        }
+    }
+    
+    // Waiting entries the given number of free tickets is enough for, in serving order
+    private Query fittingQuery(int eventId, int availableTickets) {
+        return new Query(Criteria.where("eventId").is(eventId).and("status").is(WaitlistStatus.WAITING)
+                .and("ticketsRequested").lte(availableTickets))
+                .with(Sort.by(Sort.Direction.ASC, "position"));
+    }
+    
+    private Query waitingQuery(int eventId) {
+        return new Query(Criteria.where("eventId").is(eventId).and("status").is(WaitlistStatus.WAITING))
+                .with(Sort.by(Sort.Direction.ASC, "position"));
+    }
+    
+    // Per-event queue positions from an atomic counter
+    private long nextPosition(int eventId) {
+        Document counter = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(eventId)),
+                new Update().inc("seq", 1L),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Document.class, COUNTER_COLLECTION);
+        return ((Number) counter.get("seq")).longValue();
+    }
+}
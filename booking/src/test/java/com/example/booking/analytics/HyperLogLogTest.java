@@ -0,0 +1,90 @@
+package com.example.booking.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+    private static final int PRECISION = 12;
+
+    // Three standard errors at p = 12 (1.04 / sqrt(4096) is about 1.6%)
+    private static final double TOLERANCE = 3 * 1.04 / Math.sqrt(1 << PRECISION);
+
+    @Test
+    void estimatesLargeCardinalitiesWithinTheErrorBound() {
+        for (int distinct : new int[] { 10_000, 100_000, 1_000_000 }) {
+            HyperLogLog sketch = new HyperLogLog(PRECISION);
+            for (int i = 0; i < distinct; i++) {
+                sketch.add("user-" + i);
+            }
+            assertWithin(distinct, sketch.estimate());
+        }
+    }
+
+    @Test
+    void countsSmallCardinalitiesAlmostExactly() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 100; i++) {
+            sketch.add("user-" + i);
+        }
+        assertTrue(Math.abs(sketch.estimate() - 100) <= 2, "estimate " + sketch.estimate());
+    }
+
+    @Test
+    void ignoresRepeatedValues() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int round = 0; round < 1000; round++) {
+            for (int i = 0; i < 10; i++) {
+                sketch.add("user-" + i);
+            }
+        }
+        assertEquals(10, sketch.estimate());
+    }
+
+    @Test
+    void mergeEqualsTheSketchOfTheUnion() {
+        HyperLogLog first = new HyperLogLog(PRECISION);
+        HyperLogLog second = new HyperLogLog(PRECISION);
+        HyperLogLog union = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 60_000; i++) {
+            first.add("user-" + i);
+            union.add("user-" + i);
+        }
+        for (int i = 40_000; i < 100_000; i++) {
+            second.add("user-" + i);
+            union.add("user-" + i);
+        }
+
+        first.merge(second);
+
+        assertArrayEquals(union.toBytes(), first.toBytes());
+        assertWithin(100_000, first.estimate());
+    }
+
+    @Test
+    void survivesARoundTripThroughBytes() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 5000; i++) {
+            sketch.add("user-" + i);
+        }
+
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+        assertEquals(PRECISION, restored.getPrecision());
+        assertEquals(sketch.estimate(), restored.estimate());
+    }
+
+    @Test
+    void refusesToMergeDifferentPrecisions() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+    }
+
+    private static void assertWithin(long expected, long estimate) {
+        double error = Math.abs(estimate - expected) / (double) expected;
+        assertTrue(error <= TOLERANCE, "estimate " + estimate + " for " + expected + " is off by " + error);
+    }
+}
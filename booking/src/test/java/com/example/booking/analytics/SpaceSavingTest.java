@@ -0,0 +1,97 @@
+package com.example.booking.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class SpaceSavingTest {
+
+    private static final int CAPACITY = 50;
+
+    @Test
+    void countsExactlyWhileUnderCapacity() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        for (int item = 1; item <= 10; item++) {
+            summary.add(item, item * 3L);
+        }
+
+        List<SpaceSaving.Entry> top = summary.top(3);
+
+        assertEquals(List.of(new SpaceSaving.Entry(10, 30, 0), new SpaceSaving.Entry(9, 27, 0),
+                new SpaceSaving.Entry(8, 24, 0)), top);
+    }
+
+    @Test
+    void findsHeavyHittersWithBoundedOverestimates() {
+        Map<Integer, Long> truth = new HashMap<>();
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        feedSkewedStream(new Random(1), 200_000, truth, summary);
+
+        assertBounds(summary, truth);
+        assertEquals(trueTop(truth, 5), items(summary.top(5)));
+    }
+
+    @Test
+    void mergedSummariesKeepTheBoundsAndTheTop() {
+        Map<Integer, Long> truth = new HashMap<>();
+        SpaceSaving merged = new SpaceSaving(CAPACITY);
+        for (int minute = 0; minute < 6; minute++) {
+            // One summary per minute bucket, folded into a window as the dashboard does
+            SpaceSaving bucket = new SpaceSaving(CAPACITY);
+            feedSkewedStream(new Random(100 + minute), 30_000, truth, bucket);
+            merged.merge(bucket);
+        }
+
+        assertBounds(merged, truth);
+        assertEquals(trueTop(truth, 5), items(merged.top(5)));
+    }
+
+    @Test
+    void survivesARoundTripThroughItsEntries() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        feedSkewedStream(new Random(9), 10_000, new HashMap<>(), summary);
+
+        SpaceSaving restored = SpaceSaving.of(CAPACITY, summary.entries());
+
+        assertEquals(summary.top(CAPACITY), restored.top(CAPACITY));
+    }
+
+    // Zipf-like popularity over 1000 events, so a handful of them dominate
+    private static void feedSkewedStream(Random random, int bookings, Map<Integer, Long> truth, SpaceSaving summary) {
+        for (int i = 0; i < bookings; i++) {
+            int item = (int) Math.floor(Math.pow(1000, random.nextDouble()));
+            long tickets = 1 + random.nextInt(4);
+            truth.merge(item, tickets, Long::sum);
+            summary.add(item, tickets);
+        }
+    }
+
+    // Every counter over-estimates its item by at most its error
+    private static void assertBounds(SpaceSaving summary, Map<Integer, Long> truth) {
+        for (SpaceSaving.Entry entry : summary.entries()) {
+            long actual = truth.getOrDefault(entry.item(), 0L);
+            assertTrue(entry.count() >= actual, "item " + entry.item() + " under-counted");
+            assertTrue(entry.count() - entry.error() <= actual, "item " + entry.item() + " error bound violated");
+        }
+    }
+
+    private static Set<Integer> trueTop(Map<Integer, Long> truth, int k) {
+        return truth.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<Integer> items(List<SpaceSaving.Entry> entries) {
+        return entries.stream().map(SpaceSaving.Entry::item).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.booking.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TDigestTest {
+
+    private static final double COMPRESSION = 100;
+    private static final double[] QUANTILES = { 0.01, 0.1, 0.5, 0.9, 0.99, 0.999 };
+
+    @Test
+    void estimatesQuantilesOfAUniformDistribution() {
+        TDigest digest = new TDigest(COMPRESSION);
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            digest.add(random.nextDouble());
+        }
+
+        for (double q : QUANTILES) {
+            assertEquals(q, digest.quantile(q), 0.01, "quantile " + q);
+        }
+        assertEquals(100_000, digest.count());
+        assertEquals(0.5, digest.mean(), 0.01);
+    }
+
+    @Test
+    void keepsTheTailsOfASkewedDistributionPrecise() {
+        double[] values = new double[100_000];
+        Random random = new Random(7);
+        TDigest digest = new TDigest(COMPRESSION);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.exp(random.nextGaussian());
+            digest.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : QUANTILES) {
+            // Judge by rank rather than value: the estimate must sit close to the true q-th position
+            double estimate = digest.quantile(q);
+            int rank = Math.abs(Arrays.binarySearch(values, estimate));
+            assertEquals(q, rank / (double) values.length, 0.005, "quantile " + q);
+        }
+    }
+
+    @Test
+    void mergedDigestsMatchOneDigestOfAllValues() {
+        Random random = new Random(3);
+        TDigest whole = new TDigest(COMPRESSION);
+        TDigest[] parts = new TDigest[4];
+        for (int p = 0; p < parts.length; p++) {
+            parts[p] = new TDigest(COMPRESSION);
+        }
+        for (int i = 0; i < 80_000; i++) {
+            // Each part sees a different range, the worst case for merging
+            double value = (i % 4) * 10 + random.nextDouble() * 10;
+            whole.add(value);
+            parts[i % 4].add(value);
+        }
+
+        TDigest merged = new TDigest(COMPRESSION);
+        for (TDigest part : parts) {
+            merged.merge(part);
+        }
+
+        assertEquals(whole.count(), merged.count());
+        assertEquals(whole.mean(), merged.mean(), 1e-9);
+        for (double q : QUANTILES) {
+            assertEquals(q * 40, merged.quantile(q), 0.5, "quantile " + q);
+            assertEquals(whole.quantile(q), merged.quantile(q), 0.5, "quantile " + q);
+        }
+    }
+
+    @Test
+    void survivesARoundTripThroughBytes() {
+        TDigest digest = new TDigest(COMPRESSION);
+        Random random = new Random(11);
+        for (int i = 0; i < 10_000; i++) {
+            digest.add(random.nextInt(10) + 1);
+        }
+
+        TDigest restored = TDigest.fromBytes(digest.toBytes());
+
+        assertEquals(digest.count(), restored.count());
+        assertEquals(digest.mean(), restored.mean(), 1e-12);
+        for (double q : QUANTILES) {
+            assertEquals(digest.quantile(q), restored.quantile(q), 1e-12);
+        }
+    }
+
+    @Test
+    void staysWithinTheObservedRange() {
+        TDigest digest = new TDigest(COMPRESSION);
+        for (int i = 1; i <= 1000; i++) {
+            digest.add(i);
+        }
+        assertTrue(digest.quantile(0) >= 1);
+        assertTrue(digest.quantile(1) <= 1000);
+        assertEquals(1000, digest.quantile(1), 1e-9);
+    }
+
+    @Test
+    void reportsNothingWhenEmpty() {
+        TDigest digest = new TDigest(COMPRESSION);
+        assertEquals(0, digest.count());
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+        assertTrue(Double.isNaN(digest.mean()));
+    }
+}
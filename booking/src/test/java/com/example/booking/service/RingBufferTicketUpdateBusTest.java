@@ -0,0 +1,132 @@
+package com.example.booking.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class RingBufferTicketUpdateBusTest {
+    
+    private RingBufferTicketUpdateBus bus;
+    
+    @AfterEach
+    void closeBus() {
+        if (bus != null) {
+            bus.close();
+        }
+    }
+    
+    @Test
+    void deliversEveryUpdateOfConcurrentProducersOnceAndInOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 250_000;
+        bus = new RingBufferTicketUpdateBus(1024);
+        
+        // eventId identifies the producer and ticketChange its sequence, so order can be checked per producer
+        int[] lastSeen = new int[producers];
+        long[] received = new long[1];
+        CountDownLatch done = new CountDownLatch(1);
+        bus.subscribe(update -> {
+            int producer = update.eventId();
+            if (update.ticketChange() != lastSeen[producer] + 1) {
+                throw new AssertionError("Producer " + producer + " sent " + update.ticketChange()
+                        + " after " + lastSeen[producer]);
+            }
+            lastSeen[producer] = update.ticketChange();
+            if (++received[0] == (long) producers * perProducer) {
+                done.countDown();
+            }
+        });
+        
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 1; i <= perProducer; i++) {
+                    // A full ring refuses the update; the producer retries rather than dropping it
+                    while (!bus.publishTicketUpdate(producer, i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        // A gap makes the handler throw, which stops the consumer, so a timeout here means a lost or repeated update
+        assertTrue(done.await(30, TimeUnit.SECONDS), "received " + received[0]);
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer, lastSeen[p]);
+        }
+        assertEquals(0, bus.getBacklog());
+    }
+    
+    @Test
+    void refusesUpdatesWhenTheRingIsFull() {
+        bus = new RingBufferTicketUpdateBus(8);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(bus.publishTicketUpdate(1, i));
+        }
+        assertFalse(bus.publishTicketUpdate(1, 8));
+        assertEquals(8, bus.getBacklog());
+    }
+    
+    @Test
+    void wakesAParkedConsumer() throws Exception {
+        bus = new RingBufferTicketUpdateBus(16);
+        BlockingQueue<TicketUpdate> updates = new ArrayBlockingQueue<>(16);
+        bus.subscribe(updates::add);
+        
+        // Long enough for the consumer to go from spinning to parked
+        Thread.sleep(200);
+        assertTrue(bus.publishTicketUpdate(3, -2));
+        
+        TicketUpdate update = updates.poll(1, TimeUnit.SECONDS);
+        assertEquals(3, update.eventId());
+        assertEquals(-2, update.ticketChange());
+    }
+    
+    @Test
+    void keepsConsumingAfterAHandlerFails() throws Exception {
+        bus = new RingBufferTicketUpdateBus(16);
+        BlockingQueue<TicketUpdate> updates = new ArrayBlockingQueue<>(16);
+        bus.subscribe(update -> {
+            if (update.eventId() == 1) {
+                throw new IllegalStateException("handler failure");
+            }
+            updates.add(update);
+        });
+        
+        bus.publishTicketUpdate(1, 1);
+        bus.publishTicketUpdate(2, 1);
+        
+        assertEquals(2, updates.poll(1, TimeUnit.SECONDS).eventId());
+    }
+    
+    @Test
+    void acceptsOnlyOneSubscriber() {
+        bus = new RingBufferTicketUpdateBus(16);
+        bus.subscribe(update -> { });
+        assertThrows(IllegalStateException.class, () -> bus.subscribe(update -> { }));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.booking.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+class TicketDeltaBatcherTest {
+    
+    // The same bytes TicketDeltaBatchTest in the Event Service decodes into these two deltas
+    private static final byte[] EVENT_SERVICE_BATCH = {
+            0, 0, 0, 2,
+            1, 2, 3, 4, 5, 6, 7, 8, 0, 0, 0, 42, -1, -1, -1, -3,
+            -128, 0, 0, 0, 0, 0, 0, 1, 127, -1, -1, -1, 0, 0, 0, 7 };
+    
+    private TicketDeltaBatcher batcher;
+    
+    @AfterEach
+    void shutdown() {
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+    }
+    
+    @Test
+    void sendsTheWireFormatTheEventServiceDecodes() throws Exception {
+        BatchEndpoint endpoint = new BatchEndpoint(body -> new byte[] { 0, 0 });
+        batcher = create(endpoint);
+        CompletableFuture<TicketUpdateSpool.Delivery> first = batcher.submit(42, -3, 0x0102030405060708L);
+        CompletableFuture<TicketUpdateSpool.Delivery> second = batcher.submit(Integer.MAX_VALUE, 7, Long.MIN_VALUE + 1);
+        batcher.start();
+        
+        assertEquals(TicketUpdateSpool.Delivery.DELIVERED, first.get(5, TimeUnit.SECONDS));
+        assertEquals(TicketUpdateSpool.Delivery.DELIVERED, second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, endpoint.requests.size());
+        HttpEntity<?> request = endpoint.requests.get(0);
+        assertArrayEquals(EVENT_SERVICE_BATCH, (byte[]) request.getBody());
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, request.getHeaders().getContentType());
+        assertEquals("http://event/api/internal/events/tickets/batch", endpoint.urls.get(0));
+    }
+    
+    @Test
+    void mapsEachStatusToADelivery() throws Exception {
+        batcher = create(new BatchEndpoint(body -> new byte[] { 0, 1, 2, 3, 4 }));
+        List<CompletableFuture<TicketUpdateSpool.Delivery>> results = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(batcher.submit(i + 1, 1, batcher.newOperationId()));
+        }
+        batcher.start();
+        
+        // Applied is delivered, in progress is tried again later, and the refusals are final
+        assertEquals(TicketUpdateSpool.Delivery.DELIVERED, results.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals(TicketUpdateSpool.Delivery.REJECTED, results.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals(TicketUpdateSpool.Delivery.REJECTED, results.get(2).get(5, TimeUnit.SECONDS));
+        assertEquals(TicketUpdateSpool.Delivery.REJECTED, results.get(3).get(5, TimeUnit.SECONDS));
+        assertEquals(TicketUpdateSpool.Delivery.FAILED, results.get(4).get(5, TimeUnit.SECONDS));
+        assertEquals(0, batcher.getOutstanding());
+    }
+    
+    @Test
+    void resendsTheSameBatchAfterAnUnusableAnswer() throws Exception {
+        int[] calls = new int[1];
+        BatchEndpoint endpoint = new BatchEndpoint(body -> ++calls[0] == 1 ? new byte[0] : new byte[] { 0 });
+        batcher = create(endpoint);
+        CompletableFuture<TicketUpdateSpool.Delivery> result = batcher.submit(9, 2, 77L);
+        batcher.start();
+        
+        assertEquals(TicketUpdateSpool.Delivery.DELIVERED, result.get(5, TimeUnit.SECONDS));
+        assertEquals(2, endpoint.requests.size());
+        // The operation ID is unchanged, so the Event Service applies the delta at most once
+        assertArrayEquals((byte[]) endpoint.requests.get(0).getBody(), (byte[]) endpoint.requests.get(1).getBody());
+    }
+    
+    @Test
+    void reportsABatchWithoutAnAnswerAsFailed() throws Exception {
+        BatchEndpoint endpoint = new BatchEndpoint(body -> {
+            throw new ResourceAccessException("Connection refused");
+        });
+        batcher = create(endpoint);
+        CompletableFuture<TicketUpdateSpool.Delivery> result = batcher.submit(9, 2, 77L);
+        batcher.start();
+        
+        assertEquals(TicketUpdateSpool.Delivery.FAILED, result.get(5, TimeUnit.SECONDS));
+        assertEquals(3, endpoint.requests.size());
+        assertEquals(0, batcher.getOutstanding());
+    }
+    
+    private static TicketDeltaBatcher create(RestTemplate restTemplate) {
+        TicketDeltaBatcher batcher = new TicketDeltaBatcher();
+        ReflectionTestUtils.setField(batcher, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(batcher, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(batcher, "eventServiceUrl", "http://event");
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "maxItems", 256);
+        ReflectionTestUtils.setField(batcher, "lingerMs", 0L);
+        ReflectionTestUtils.setField(batcher, "retries", 2);
+        return batcher;
+    }
+    
+    // Stands in for the batch endpoint: records each request and answers with the given status bytes
+    private static final class BatchEndpoint extends RestTemplate {
+        
+        private final Function<byte[], byte[]> answer;
+        private final List<HttpEntity<?>> requests = new CopyOnWriteArrayList<>();
+        private final List<String> urls = new CopyOnWriteArrayList<>();
+        
+        BatchEndpoint(Function<byte[], byte[]> answer) {
+            this.answer = answer;
+        }
+        
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> ResponseEntity<T> exchange(String url, HttpMethod method, HttpEntity<?> requestEntity,
+                Class<T> responseType, Object... uriVariables) {
+            requests.add(requestEntity);
+            urls.add(url);
+            return (ResponseEntity<T>) ResponseEntity.ok(answer.apply((byte[]) requestEntity.getBody()));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.booking.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+class TicketUpdateSpoolTest {
+    
+    private static final int RECORD_BYTES = 24;
+    private static final String FIRST_SEGMENT = "spool-00000000000000000000.seg";
+    
+    @TempDir
+    Path dir;
+    
+    private final List<TicketUpdateSpool> spools = new ArrayList<>();
+    
+    @AfterEach
+    void closeSpools() {
+        spools.forEach(TicketUpdateSpool::close);
+    }
+    
+    @Test
+    void replaysRecordsLeftByACrashedProcess() throws Exception {
+        TicketUpdateSpool crashed = open(RECORD_BYTES * 100);
+        for (int i = 1; i <= 3; i++) {
+            crashed.append(i, i, 100 + i);
+        }
+        // No close: the next process finds the segment as the crash left it
+        
+        TicketUpdateSpool recovered = open(RECORD_BYTES * 100);
+        assertEquals(3, recovered.getBacklog());
+        
+        List<TicketUpdateSpool.Delta> delivered = drain(recovered, 3);
+        assertEquals(List.of(new TicketUpdateSpool.Delta(1, 1, 101), new TicketUpdateSpool.Delta(2, 2, 102),
+                new TicketUpdateSpool.Delta(3, 3, 103)), delivered);
+    }
+    
+    @Test
+    void resumesAfterTheLastDeliveredRecord() throws Exception {
+        TicketUpdateSpool first = open(RECORD_BYTES * 100);
+        for (int i = 1; i <= 5; i++) {
+            first.append(7, -i, i);
+        }
+        // Deliver two records, then let the Event Service "go away" again
+        List<TicketUpdateSpool.Delta> delivered = new CopyOnWriteArrayList<>();
+        first.startDraining(delta -> {
+            if (delivered.size() == 2) {
+                return TicketUpdateSpool.Delivery.FAILED;
+            }
+            delivered.add(delta);
+            return TicketUpdateSpool.Delivery.DELIVERED;
+        });
+        awaitBacklog(first, 3);
+        first.close();
+        
+        TicketUpdateSpool second = open(RECORD_BYTES * 100);
+        assertEquals(3, second.getBacklog());
+        assertEquals(List.of(new TicketUpdateSpool.Delta(7, -3, 3), new TicketUpdateSpool.Delta(7, -4, 4),
+                new TicketUpdateSpool.Delta(7, -5, 5)), drain(second, 3));
+    }
+    
+    @Test
+    void discardsATornWriteAndAppendsOverIt() throws Exception {
+        TicketUpdateSpool crashed = open(RECORD_BYTES * 100);
+        for (int i = 1; i <= 3; i++) {
+            crashed.append(i, 1, i);
+        }
+        crashed.close();
+        // The third record's payload only partly reached the disk
+        try (RandomAccessFile segment = new RandomAccessFile(dir.resolve(FIRST_SEGMENT).toFile(), "rw")) {
+            segment.seek(RECORD_BYTES * 2 + 12);
+            segment.writeInt(0xDEAD);
+        }
+        
+        TicketUpdateSpool recovered = open(RECORD_BYTES * 100);
+        assertEquals(2, recovered.getBacklog());
+        recovered.append(4, 1, 4);
+        recovered.close();
+        
+        TicketUpdateSpool reopened = open(RECORD_BYTES * 100);
+        assertEquals(List.of(new TicketUpdateSpool.Delta(1, 1, 1), new TicketUpdateSpool.Delta(2, 1, 2),
+                new TicketUpdateSpool.Delta(4, 1, 4)), drain(reopened, 3));
+    }
+    
+    @Test
+    void ignoresALengthWrittenWithoutItsRecord() throws Exception {
+        TicketUpdateSpool crashed = open(RECORD_BYTES * 100);
+        crashed.append(1, 1, 1);
+        crashed.close();
+        // A length marker with no checksum or payload behind it
+        try (RandomAccessFile segment = new RandomAccessFile(dir.resolve(FIRST_SEGMENT).toFile(), "rw")) {
+            segment.seek(RECORD_BYTES);
+            segment.writeInt(16);
+        }
+        
+        TicketUpdateSpool recovered = open(RECORD_BYTES * 100);
+        assertEquals(1, recovered.getBacklog());
+        assertEquals(List.of(new TicketUpdateSpool.Delta(1, 1, 1)), drain(recovered, 1));
+    }
+    
+    @Test
+    void drainsAcrossSegmentsAndDeletesDrainedOnes() throws Exception {
+        TicketUpdateSpool spool = open(RECORD_BYTES * 4);
+        for (int i = 0; i < 10; i++) {
+            spool.append(i, 1, i);
+        }
+        assertEquals(3, segments().size());
+        
+        List<TicketUpdateSpool.Delta> delivered = drain(spool, 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, delivered.get(i).eventId());
+        }
+        assertEquals(1, segments().size());
+        assertFalse(spool.hasBacklog());
+    }
+    
+    @Test
+    void dropsRejectedRecords() throws Exception {
+        TicketUpdateSpool spool = open(RECORD_BYTES * 100);
+        spool.append(1, 1, 1);
+        spool.append(2, 1, 2);
+        
+        List<TicketUpdateSpool.Delta> delivered = new CopyOnWriteArrayList<>();
+        spool.startDraining(delta -> {
+            if (delta.eventId() == 1) {
+                return TicketUpdateSpool.Delivery.REJECTED;
+            }
+            delivered.add(delta);
+            return TicketUpdateSpool.Delivery.DELIVERED;
+        });
+        awaitBacklog(spool, 0);
+        assertEquals(List.of(new TicketUpdateSpool.Delta(2, 1, 2)), delivered);
+    }
+    
+    private TicketUpdateSpool open(int segmentBytes) throws IOException {
+        TicketUpdateSpool spool = new TicketUpdateSpool();
+        ReflectionTestUtils.setField(spool, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(spool, "spoolDir", dir.toString());
+        ReflectionTestUtils.setField(spool, "segmentBytes", segmentBytes);
+        ReflectionTestUtils.setField(spool, "fsyncIntervalMs", 5L);
+        ReflectionTestUtils.setField(spool, "syncOnAppend", true);
+        ReflectionTestUtils.setField(spool, "backoffInitialMs", 5L);
+        ReflectionTestUtils.setField(spool, "backoffMaxMs", 20L);
+        spool.open();
+        spools.add(spool);
+        return spool;
+    }
+    
+    private static List<TicketUpdateSpool.Delta> drain(TicketUpdateSpool spool, int expected) throws InterruptedException {
+        List<TicketUpdateSpool.Delta> delivered = new CopyOnWriteArrayList<>();
+        spool.startDraining(delta -> {
+            delivered.add(delta);
+            return TicketUpdateSpool.Delivery.DELIVERED;
+        });
+        awaitBacklog(spool, 0);
+        assertEquals(expected, delivered.size());
+        return delivered;
+    }
+    
+    private static void awaitBacklog(TicketUpdateSpool spool, long backlog) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (spool.getBacklog() != backlog && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(backlog, spool.getBacklog());
+    }
+    
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".seg")).toList();
+        }
+    }
+}
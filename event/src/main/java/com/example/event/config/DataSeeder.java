@@ -2,6 +2,7 @@ package com.example.event.config;
 
 import com.example.event.model.Event;
 import com.example.event.repository.EventRepository;
+import com.example.event.service.CatalogResponseCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,6 +19,9 @@ public class DataSeeder implements CommandLineRunner {
     
     @Autowired
     private EventRepository eventRepository;
+
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
     
     @Override
     public void run(String... args) throws Exception {
@@ -108,6 +112,7 @@ public class DataSeeder implements CommandLineRunner {
                 // Save all events to the database
                 logger.info("Saving {} events to database", events.size());
                 eventRepository.saveAll(events);
+                catalogResponseCache.invalidateAll();
                 
                 seeded = true; // Successfully seeded the database
             } catch (Exception e) {
@@ -0,0 +1,33 @@
+package com.example.event.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import com.example.event.service.ImageStore;
+import com.example.event.service.LocalImageStore;
+import com.example.event.service.S3Service;
+
+@Configuration
+public class ImageStoreConfig {
+    private static final Logger logger = LoggerFactory.getLogger(ImageStoreConfig.class);
+
+    // Pick the active image store: explicit setting first, otherwise S3 when configured, else local disk
+    @Bean
+    @Primary
+    public ImageStore imageStore(
+            @Value("${event.images.store:auto}") String store,
+            S3Service s3Service,
+            LocalImageStore localImageStore) {
+        ImageStore selected = switch (store) {
+            case "s3" -> s3Service;
+            case "local" -> localImageStore;
+            default -> s3Service.isEnabled() ? s3Service : localImageStore;
+        };
+        logger.info("Using {} for event images (enabled: {})", selected.getClass().getSimpleName(), selected.isEnabled());
+        return selected;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.event.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.example.event.service.DirectTicketUpdateBus;
+import com.example.event.service.MongoTicketUpdateBus;
+import com.example.event.service.SqsConsumer;
+import com.example.event.service.TicketUpdateBus;
+
+@Configuration
+public class TicketUpdateBusConfig {
+    private static final Logger logger = LoggerFactory.getLogger(TicketUpdateBusConfig.class);
+
+    // Pick where ticket updates are consumed from: explicit setting first, otherwise SQS when configured, else HTTP only
+    @Bean
+    @Primary
+    public TicketUpdateBus ticketUpdateBus(
+            @Value("${ticket.bus.type:auto}") String type,
+            @Value("${ticket.bus.mongo.collection:ticket_updates}") String mongoCollection,
+            @Value("${ticket.bus.mongo.size-bytes:67108864}") long mongoSizeBytes,
+            SqsConsumer sqsConsumer,
+            MongoTemplate mongoTemplate) {
+        TicketUpdateBus selected = switch (type) {
+            case "sqs" -> sqsConsumer;
+            case "mongo" -> new MongoTicketUpdateBus(mongoTemplate, mongoCollection, mongoSizeBytes);
+            // The Booking Service's in-process bus forwards over HTTP, so there is nothing to consume here
+            case "http", "memory" -> new DirectTicketUpdateBus();
+            default -> sqsConsumer.isEnabled() ? sqsConsumer : new DirectTicketUpdateBus();
+        };
+        logger.info("Using {} ticket update bus (enabled: {})", selected.getName(), selected.isEnabled());
+        return selected;
+    }
+}
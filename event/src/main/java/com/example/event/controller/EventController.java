@@ -2,16 +2,22 @@ package com.example.event.controller;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -19,12 +25,21 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.example.event.model.Event;
+import com.example.event.service.AvailabilityStreamService;
+import com.example.event.service.CatalogResponseCache;
 import com.example.event.service.EventService;
 import com.example.event.service.FirebaseAuthService;
+import com.example.event.service.ImageMigrationService;
+import com.example.event.service.InventoryReconciliationService;
+import com.example.event.service.TicketDeltaBatch;
+import com.example.event.service.TicketLedgerService;
 import com.google.firebase.auth.FirebaseToken;
 
+import jakarta.servlet.http.HttpServletRequest;
+
 @RestController
 public class EventController {
     
@@ -35,27 +50,56 @@ public class EventController {
     
     @Autowired
     private FirebaseAuthService firebaseAuthService;
+
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
+    @Autowired
+    private AvailabilityStreamService availabilityStreamService;
+
+    @Autowired
+    private ImageMigrationService imageMigrationService;
+
+    @Autowired
+    private InventoryReconciliationService inventoryReconciliationService;
+
+    @Autowired
+    private TicketLedgerService ticketLedgerService;
     
     // PUBLIC APIs (No Authentication Required)
     
-    // Get all events
+    // Get all events (served from pre-serialised bytes)
     @GetMapping("/api/public/events")
-    public ResponseEntity<List<Event>> getAllEvents() {
-        List<Event> events = eventService.getAllEvents();
-        return ResponseEntity.ok(events);
+    public ResponseEntity<byte[]> getAllEvents(
+            @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        return cachedResponse(catalogResponseCache.getCatalog(), acceptEncoding, ifNoneMatch);
     }
     
-    // Get a specific event by ID
+    // Get a specific event by ID (served from pre-serialised bytes)
     @GetMapping("/api/public/events/{id}")
-    public ResponseEntity<Event> getEventById(@PathVariable int id) {
-        Event event = eventService.getEventById(id);
-        if (event != null) {
-            return ResponseEntity.ok(event);
+    public ResponseEntity<byte[]> getEventById(
+            @PathVariable int id,
+            @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        Optional<CatalogResponseCache.CachedResponse> cached = catalogResponseCache.getEventDetail(id);
+        if (cached.isPresent()) {
+            return cachedResponse(cached.get(), acceptEncoding, ifNoneMatch);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
     
+    // Stream live availableTickets changes for an event (Server-Sent Events)
+    @GetMapping(value = "/api/public/events/{id}/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAvailability(@PathVariable int id) {
+        Event event = eventService.getEventById(id);
+        if (event == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(availabilityStreamService.subscribe(id, event.getAvailableTickets()));
+    }
+    
     // Search for events by type, city, and date
     @GetMapping("/api/public/events/search")
     public ResponseEntity<List<Event>> searchEvents(
@@ -133,6 +177,16 @@ public class EventController {
             } else {
                 return ResponseEntity.notFound().build();
             }
+        } catch (OptimisticLockingFailureException e) {
+            // Someone else changed the event since it was loaded; the client must reload
+            logger.warn("Concurrent modification of event ID: {}", id);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Event was modified by someone else; reload and try again");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             logger.error("Error updating event", e);
             Map<String, String> error = new HashMap<>();
@@ -141,6 +195,76 @@ public class EventController {
         }
     }
     
+    // Partially update an event; only the supplied fields are written
+    @PatchMapping("/api/admin/events/{id}")
+    public ResponseEntity<?> patchEvent(
+            @RequestHeader("Authorization") String bearerToken,
+            @PathVariable int id,
+            @RequestBody Map<String, Object> fields) {
+        
+        try {
+            // Verify token
+            FirebaseToken token = firebaseAuthService.verifyToken(bearerToken);
+            if (token == null) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Invalid authentication token");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+            }
+            
+            Event updatedEvent = eventService.patchEvent(id, fields);
+            if (updatedEvent != null) {
+                return ResponseEntity.ok(updatedEvent);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (OptimisticLockingFailureException e) {
+            logger.warn("Concurrent modification of event ID: {}", id);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage() + "; try again");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        } catch (Exception e) {
+            logger.error("Error patching event", e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to update event: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+    
+    // Upload a new image for an event, streamed from the raw request body
+    // (image/* bytes, or base64 text optionally prefixed with a data: URL header)
+    @PutMapping("/api/admin/events/{id}/image")
+    public ResponseEntity<?> updateEventImage(
+            @RequestHeader("Authorization") String bearerToken,
+            @PathVariable int id,
+            HttpServletRequest request) {
+        
+        try {
+            // Verify token
+            FirebaseToken token = firebaseAuthService.verifyToken(bearerToken);
+            if (token == null) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Invalid authentication token");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+            }
+            
+            Event updatedEvent = eventService.updateEventImage(id, request.getInputStream(), request.getContentType());
+            if (updatedEvent != null) {
+                return ResponseEntity.ok(updatedEvent);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (Exception e) {
+            logger.error("Error updating event image", e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to update event image: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+    
     // Delete an event
    @DeleteMapping("/api/admin/events/{id}")
 public ResponseEntity<?> deleteEvent(
@@ -179,6 +303,155 @@ public ResponseEntity<?> deleteEvent(
     }
 }
     
+    // Start (or resume) moving inline base64 images out to the object store
+    @PostMapping("/api/admin/images/migration")
+    public ResponseEntity<?> startImageMigration(@RequestHeader("Authorization") String bearerToken) {
+        try {
+            // Verify token
+            FirebaseToken token = firebaseAuthService.verifyToken(bearerToken);
+            if (token == null) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Invalid authentication token");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+            }
+            
+            if (!imageMigrationService.start()) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Image migration is already running");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(imageMigrationService.getProgress());
+        } catch (IllegalStateException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    // Report image migration progress
+    @GetMapping("/api/admin/images/migration")
+    public ResponseEntity<?> getImageMigrationProgress(@RequestHeader("Authorization") String bearerToken) {
+        FirebaseToken token = firebaseAuthService.verifyToken(bearerToken);
+        if (token == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid authentication token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+        return ResponseEntity.ok(imageMigrationService.getProgress());
+    }
+    
+    // Stop a running image migration after its current batch
+    @DeleteMapping("/api/admin/images/migration")
+    public ResponseEntity<?> stopImageMigration(@RequestHeader("Authorization") String bearerToken) {
+        FirebaseToken token = firebaseAuthService.verifyToken(bearerToken);
+        if (token == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid authentication token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+        imageMigrationService.stop();
+        return ResponseEntity.ok(imageMigrationService.getProgress());
+    }
+    
+    // Compare availableTickets with capacity minus booked tickets for every event. A dry run reports
+    // directly; a correcting run waits for in-flight updates to settle, so it runs in the background
+    @PostMapping("/api/admin/inventory/reconcile")
+    public ResponseEntity<?> reconcileInventory(
+            @RequestHeader("Authorization") String bearerToken,
+            @RequestParam(defaultValue = "true") boolean dryRun) {
+        FirebaseToken token = firebaseAuthService.verifyToken(bearerToken);
+        if (token == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid authentication token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+        
+        if (!dryRun) {
+            if (!inventoryReconciliationService.start()) {
+                Map<String, String> error = new HashMap<>();
+                error.put("error", "Inventory reconciliation is already running");
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(inventoryReconciliationService.getProgress());
+        }
+        
+        Map<String, Object> report = inventoryReconciliationService.reconcile();
+        if (report == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Inventory reconciliation is already running");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+        return ResponseEntity.ok(report);
+    }
+    
+    // Progress of a running inventory reconciliation, otherwise the report from the most recent one
+    @GetMapping("/api/admin/inventory/reconcile")
+    public ResponseEntity<?> getInventoryReconciliationReport(@RequestHeader("Authorization") String bearerToken) {
+        FirebaseToken token = firebaseAuthService.verifyToken(bearerToken);
+        if (token == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid authentication token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+        if (inventoryReconciliationService.isRunning()) {
+            return ResponseEntity.ok(inventoryReconciliationService.getProgress());
+        }
+        Map<String, Object> report = inventoryReconciliationService.getLastReport();
+        if (report == null) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.ok(report);
+    }
+    
+    // Audit trail of an event's inventory movements, in the order they were applied
+    @GetMapping("/api/admin/events/{id}/ledger")
+    public ResponseEntity<?> getTicketLedger(
+            @RequestHeader("Authorization") String bearerToken,
+            @PathVariable int id,
+            @RequestParam(defaultValue = "-1") long afterSeq,
+            @RequestParam(defaultValue = "100") int limit) {
+        FirebaseToken token = firebaseAuthService.verifyToken(bearerToken);
+        if (token == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid authentication token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+        
+        Map<String, Object> ledger = new LinkedHashMap<>();
+        ledger.put("eventId", id);
+        ledger.put("snapshot", ticketLedgerService.getSnapshot(id));
+        ledger.put("entries", ticketLedgerService.getEntries(id, afterSeq, Math.max(1, Math.min(limit, 1000))));
+        return ResponseEntity.ok(ledger);
+    }
+    
+    // Recompute availableTickets by replaying the ticket ledger from its latest snapshot; reports the
+    // difference unless dryRun=false, and only overwrites a disagreeing ledger with force=true
+    @PostMapping("/api/admin/events/{id}/tickets/rebuild")
+    public ResponseEntity<?> rebuildAvailableTickets(
+            @RequestHeader("Authorization") String bearerToken,
+            @PathVariable int id,
+            @RequestParam(defaultValue = "true") boolean dryRun,
+            @RequestParam(defaultValue = "false") boolean force) {
+        FirebaseToken token = firebaseAuthService.verifyToken(bearerToken);
+        if (token == null) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid authentication token");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(error);
+        }
+        
+        try {
+            Map<String, Object> result = eventService.rebuildAvailableTickets(id, dryRun, force);
+            if (result == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(result);
+        } catch (IllegalStateException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+    }
+    
     // INTERNAL APIs (Service-to-Service Communication)
     
     // Update ticket availability
@@ -188,24 +461,17 @@ public ResponseEntity<?> deleteEvent(
             @RequestParam int ticketChange) {
         
         try {
-            Event event = eventService.getEventById(id);
-            if (event == null) {
+            // Atomic $inc on availableTickets only
+            Event updatedEvent = eventService.adjustTickets(id, ticketChange);
+            if (updatedEvent == null) {
                 return ResponseEntity.notFound().build();
             }
             
-            // Update available tickets
-            int newAvailability = event.getAvailableTickets() + ticketChange;
-            if (newAvailability < 0) {
-                Map<String, String> error = new HashMap<>();
-                error.put("error", "Not enough tickets available");
-                return ResponseEntity.badRequest().body(error);
-            }
-            
-            // Update the event
-            event.setAvailableTickets(newAvailability);
-            Event updatedEvent = eventService.updateEvent(id, event);
-            
             return ResponseEntity.ok(updatedEvent);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
         } catch (Exception e) {
             logger.error("Error updating ticket availability", e);
             Map<String, String> error = new HashMap<>();
@@ -213,4 +479,71 @@ public ResponseEntity<?> deleteEvent(
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
         }
     }
-}
\ No newline at end of file
+
+    // Apply many ticket deltas in one call; binary request and one status byte per delta (see TicketDeltaBatch)
+    @PostMapping(value = "/api/internal/events/tickets/batch", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> applyTicketDeltas(@RequestBody byte[] body) {
+        try {
+            List<TicketDeltaBatch.Delta> deltas = TicketDeltaBatch.decode(body, eventService.getMaxTicketDeltas());
+            TicketDeltaBatch.Status[] statuses = eventService.applyTicketDeltas(deltas);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(TicketDeltaBatch.encode(statuses));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(error);
+        } catch (Exception e) {
+            logger.error("Error applying ticket delta batch", e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to apply ticket deltas: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).contentType(MediaType.APPLICATION_JSON).body(error);
+        }
+    }
+
+    // Get many events in one round trip: /api/internal/events?ids=1,2,3
+    @GetMapping("/api/internal/events")
+    public ResponseEntity<?> getEventsByIds(@RequestParam List<Integer> ids) {
+        return eventsByIds(ids);
+    }
+    
+    // Same as the GET variant for ID lists too long for a query string; body is a JSON array of IDs
+    @PostMapping("/api/internal/events")
+    public ResponseEntity<?> postEventsByIds(@RequestBody List<Integer> ids) {
+        return eventsByIds(ids);
+    }
+    
+    private ResponseEntity<?> eventsByIds(List<Integer> ids) {
+        try {
+            return ResponseEntity.ok(eventService.getEventsByIds(ids));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (Exception e) {
+            logger.error("Error getting events by IDs", e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to get events: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    // Write cached bytes directly, choosing the encoding from Accept-Encoding
+    private ResponseEntity<byte[]> cachedResponse(CatalogResponseCache.CachedResponse cached,
+            String acceptEncoding, String ifNoneMatch) {
+        String etag = cached.getETag();
+        if (CatalogResponseCache.matchesETag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        boolean gzip = CatalogResponseCache.acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(cached.getBody(gzip));
+    }
+}
@@ -3,6 +3,7 @@ package com.example.event.model;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Document(collection = "events")
@@ -13,6 +14,7 @@ public class Event {
     private String name;
     private String type;
     private int availableTickets;
+    private Integer capacity; // Total tickets for sale; null until set or derived by reconciliation
     private double price;
     private String venue;
     private String address;
@@ -23,6 +25,11 @@ public class Event {
     private String time;
     private int duration;
     private String imageData; // New field for storing base64 encoded image
+    private String thumbnailUrl; // Small variant generated in the background
+    private String mediumImageUrl; // Medium variant generated in the background
+
+    @Version
+    private Long version; // Optimistic locking; bumped on every write except image-only ones
 
     // Default constructor
     public Event() {
@@ -146,6 +153,34 @@ public class Event {
     public void setImageData(String imageData) {
         this.imageData = imageData;
     }
+
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+    public void setThumbnailUrl(String thumbnailUrl) {
+        this.thumbnailUrl = thumbnailUrl;
+    }
+
+    public String getMediumImageUrl() {
+        return mediumImageUrl;
+    }
+    public void setMediumImageUrl(String mediumImageUrl) {
+        this.mediumImageUrl = mediumImageUrl;
+    }
+
+    public Integer getCapacity() {
+        return capacity;
+    }
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+    public void setVersion(Long version) {
+        this.version = version;
+    }
     
     // Convert Event to JSONObject
     public JSONObject toJSON() {
@@ -155,6 +190,7 @@ public class Event {
             json.put("name", name);
             json.put("type", type);
             json.put("availableTickets", availableTickets);
+            json.put("capacity", capacity);
             json.put("price", price);
             json.put("venue", venue);
             json.put("address", address);
@@ -165,6 +201,9 @@ public class Event {
             json.put("time", time);
             json.put("duration", duration);
             json.put("imageData", imageData);
+            json.put("thumbnailUrl", thumbnailUrl);
+            json.put("mediumImageUrl", mediumImageUrl);
+            json.put("version", version);
         } catch (JSONException e) {
             e.printStackTrace();
         }
@@ -184,6 +223,9 @@ public class Event {
         event.setName(json.getString("name"));
         event.setType(json.getString("type"));
         event.setAvailableTickets(json.getInt("availableTickets"));
+        if (json.has("capacity") && !json.isNull("capacity")) {
+            event.setCapacity(json.getInt("capacity"));
+        }
         event.setPrice(json.getDouble("price"));
         event.setVenue(json.getString("venue"));
         event.setAddress(json.getString("address"));
@@ -203,6 +245,19 @@ public class Event {
         if (json.has("imageData") && !json.isNull("imageData")) {
             event.setImageData(json.getString("imageData"));
         }
+
+        // Extract image variants if present
+        if (json.has("thumbnailUrl") && !json.isNull("thumbnailUrl")) {
+            event.setThumbnailUrl(json.getString("thumbnailUrl"));
+        }
+        if (json.has("mediumImageUrl") && !json.isNull("mediumImageUrl")) {
+            event.setMediumImageUrl(json.getString("mediumImageUrl"));
+        }
+
+        // Extract version if present (used for optimistic locking on updates)
+        if (json.has("version") && !json.isNull("version")) {
+            event.setVersion(json.getLong("version"));
+        }
         
         return event;
     }
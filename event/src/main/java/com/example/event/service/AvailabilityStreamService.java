@@ -0,0 +1,401 @@
+package com.example.event.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pushes availableTickets changes to Server-Sent Event subscribers.
+ * Changes are fed from the inventory write path (and optionally a MongoDB change stream),
+ * coalesced per event over a short window and fanned out on a separate writer pool.
+ *
+ * Each subscriber holds only its newest unsent frame, so a slow client skips intermediate values
+ * rather than queueing them, and never has more than one write queued. A client whose write has
+ * been stuck for longer than the send timeout is completed and dropped, and its writer thread is
+ * interrupted and replaced in the pool until the blocked write returns; the container's write
+ * timeout (server.tomcat.connection-timeout) bounds how long that takes.
+ */
+@Service
+public class AvailabilityStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityStreamService.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${event.availability.coalesce-window-ms:250}")
+    private long coalesceWindowMs;
+
+    @Value("${event.availability.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    @Value("${event.availability.heartbeat-ms:30000}")
+    private long heartbeatMs;
+
+    @Value("${event.availability.writer-threads:4}")
+    private int writerThreads;
+
+    // Writes waiting for a writer thread; a subscriber that cannot be queued is dropped
+    @Value("${event.availability.writer-queue:10000}")
+    private int writerQueue;
+
+    @Value("${event.availability.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    // Writer threads stuck on dropped clients that may be replaced at once; beyond this the pool shrinks
+    @Value("${event.availability.max-stuck-writers:64}")
+    private int maxStuckWriters;
+
+    @Value("${event.availability.change-stream.enabled:false}")
+    private boolean changeStreamEnabled;
+
+    // Subscribers grouped per event so a change only touches that event's clients
+    private final Map<Integer, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // Latest unsent availability per event; later updates overwrite earlier ones
+    private final Map<Integer, Integer> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+    private ThreadPoolExecutor writers;
+    private int stuckWriters; // Writers replaced while blocked on a dropped client; guarded by writers
+    private volatile boolean running;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStreamCursor;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "availability-flush"));
+        writers = new ThreadPoolExecutor(writerThreads, writerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(writerQueue), r -> daemon(r, "availability-writer"));
+        scheduler.scheduleWithFixedDelay(this::flush, coalesceWindowMs, coalesceWindowMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        long slowCheckMs = Math.max(100, sendTimeoutMs / 2);
+        scheduler.scheduleWithFixedDelay(this::dropStuck, slowCheckMs, slowCheckMs, TimeUnit.MILLISECONDS);
+
+        if (changeStreamEnabled) {
+            Thread watcher = daemon(this::watchChangeStream, "availability-change-stream");
+            watcher.start();
+        }
+    }
+
+    // Register a new subscriber for an event and send it the current availability
+    public SseEmitter subscribe(int eventId, int currentAvailability) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(eventId, emitter);
+        subscribers.compute(eventId, (id, eventSubscribers) -> {
+            Set<Subscriber> set = eventSubscribers != null ? eventSubscribers : ConcurrentHashMap.<Subscriber>newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+
+        Runnable remove = () -> unsubscribe(subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        try {
+            emitter.send(availabilityEvent(eventId, currentAvailability).build());
+        } catch (IOException e) {
+            unsubscribe(subscriber);
+        }
+        return emitter;
+    }
+
+    // Record a new availability value; delivered on the next coalescing flush
+    public void publish(int eventId, int availableTickets) {
+        if (subscribers.containsKey(eventId)) {
+            pending.put(eventId, availableTickets);
+        }
+    }
+
+    public int getSubscriberCount() {
+        int count = 0;
+        for (Set<Subscriber> eventSubscribers : subscribers.values()) {
+            count += eventSubscribers.size();
+        }
+        return count;
+    }
+
+    private void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Integer eventId : new ArrayList<>(pending.keySet())) {
+            Integer availableTickets = pending.remove(eventId);
+            Set<Subscriber> eventSubscribers = subscribers.get(eventId);
+            if (availableTickets == null || eventSubscribers == null || eventSubscribers.isEmpty()) {
+                continue;
+            }
+            // Build the frame once and share it across every subscriber
+            Set<ResponseBodyEmitter.DataWithMediaType> event = availabilityEvent(eventId, availableTickets).build();
+            for (Subscriber subscriber : eventSubscribers) {
+                subscriber.offer(event, true);
+            }
+        }
+    }
+
+    private void heartbeat() {
+        Set<ResponseBodyEmitter.DataWithMediaType> ping = SseEmitter.event().comment("ping").build();
+        for (Set<Subscriber> eventSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : eventSubscribers) {
+                // A pending availability frame keeps the connection alive just as well
+                subscriber.offer(ping, false);
+            }
+        }
+    }
+
+    // Complete clients whose current write has not finished within the send timeout
+    private void dropStuck() {
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (Set<Subscriber> eventSubscribers : subscribers.values()) {
+            for (Subscriber subscriber : eventSubscribers) {
+                if (subscriber.abandonIfStuck(cutoff)) {
+                    logger.info("Dropping availability subscriber for event {}: write stuck for over {} ms",
+                            subscriber.eventId, sendTimeoutMs);
+                    subscriber.drop(null);
+                }
+            }
+        }
+    }
+
+    // Grow the pool by one for a writer stuck on a dropped client, or shrink it back once that write returns
+    private boolean resizeWriters(int change) {
+        synchronized (writers) {
+            if (change > 0 && stuckWriters >= maxStuckWriters) {
+                logger.warn("{} availability writers are stuck on dropped clients; not replacing another", stuckWriters);
+                return false;
+            }
+            stuckWriters += change;
+            int size = writerThreads + stuckWriters;
+            if (change > 0) {
+                writers.setMaximumPoolSize(size);
+                writers.setCorePoolSize(size);
+            } else {
+                writers.setCorePoolSize(size);
+                writers.setMaximumPoolSize(size);
+            }
+            return true;
+        }
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.eventId, (id, eventSubscribers) -> {
+            eventSubscribers.remove(subscriber);
+            return eventSubscribers.isEmpty() ? null : eventSubscribers;
+        });
+    }
+
+    // One client connection with a single-slot queue holding its newest unsent frame
+    private final class Subscriber {
+
+        private final int eventId;
+        private final SseEmitter emitter;
+        private final AtomicReference<Set<ResponseBodyEmitter.DataWithMediaType>> latest = new AtomicReference<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // The current write: System.nanoTime() when it started (0 when idle) and the thread running it
+        private long sendingSince;
+        private Thread writer;
+        private volatile boolean abandoned; // Dropped while its write was stuck; set under this
+        private boolean replaced; // The stuck writer got a replacement thread in the pool
+
+        Subscriber(int eventId, SseEmitter emitter) {
+            this.eventId = eventId;
+            this.emitter = emitter;
+        }
+
+        // Queue a frame, replacing any unsent one (or only filling an empty slot) and schedule a write
+        void offer(Set<ResponseBodyEmitter.DataWithMediaType> frame, boolean replace) {
+            if (replace) {
+                latest.set(frame);
+            } else if (!latest.compareAndSet(null, frame)) {
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (!scheduled.compareAndSet(false, true)) {
+                return; // A write is queued or running and will pick the frame up
+            }
+            try {
+                writers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                drop(null);
+            }
+        }
+
+        private void drain() {
+            Set<ResponseBodyEmitter.DataWithMediaType> frame;
+            while ((frame = latest.getAndSet(null)) != null) {
+                synchronized (this) {
+                    if (abandoned) {
+                        return;
+                    }
+                    writer = Thread.currentThread();
+                    sendingSince = System.nanoTime();
+                }
+                try {
+                    emitter.send(frame);
+                } catch (Exception e) {
+                    // Client went away; stop writing to it
+                    drop(e);
+                    return;
+                } finally {
+                    endWrite();
+                }
+                if (abandoned) {
+                    return;
+                }
+            }
+            scheduled.set(false);
+            // A frame offered after the last poll but before the flag was cleared
+            if (latest.get() != null) {
+                schedule();
+            }
+        }
+
+        // Give up on a write running since before the cutoff: interrupt it and replace its thread in the pool,
+        // since completing the emitter does not unblock it
+        synchronized boolean abandonIfStuck(long cutoff) {
+            if (abandoned || sendingSince == 0 || sendingSince - cutoff >= 0) {
+                return false;
+            }
+            abandoned = true;
+            writer.interrupt();
+            replaced = resizeWriters(1);
+            return true;
+        }
+
+        private void endWrite() {
+            boolean interrupted;
+            boolean shrink;
+            synchronized (this) {
+                interrupted = abandoned && writer != null;
+                shrink = interrupted && replaced;
+                sendingSince = 0;
+                writer = null;
+            }
+            if (interrupted) {
+                // This write was given up on while stuck: clear the interrupt and give the extra pool slot back
+                Thread.interrupted();
+            }
+            if (shrink) {
+                resizeWriters(-1);
+            }
+        }
+
+        void drop(Exception cause) {
+            unsubscribe(this);
+            latest.set(null);
+            try {
+                if (cause != null) {
+                    emitter.completeWithError(cause);
+                } else {
+                    emitter.complete();
+                }
+            } catch (Exception e) {
+                logger.debug("Error completing availability subscriber for event {}: {}", eventId, e.getMessage());
+            }
+        }
+    }
+
+    private SseEmitter.SseEventBuilder availabilityEvent(int eventId, int availableTickets) {
+        return SseEmitter.event()
+                .name("availability")
+                .data("{\"eventId\":" + eventId + ",\"availableTickets\":" + availableTickets + "}",
+                        MediaType.APPLICATION_JSON);
+    }
+
+    // Follow updates to events.availableTickets made by any instance (requires a replica set)
+    private void watchChangeStream() {
+        List<Bson> pipeline = List.of(Aggregates.match(Filters.and(
+                Filters.in("operationType", "update", "replace"),
+                Filters.or(
+                        Filters.exists("updateDescription.updatedFields.availableTickets"),
+                        Filters.eq("operationType", "replace")))));
+
+        while (running) {
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = mongoTemplate
+                    .getCollection("events")
+                    .watch(pipeline)
+                    .fullDocument(FullDocument.UPDATE_LOOKUP)
+                    .cursor()) {
+                changeStreamCursor = cursor;
+                logger.info("Watching events change stream for availability updates");
+                while (running && cursor.hasNext()) {
+                    ChangeStreamDocument<Document> change = cursor.next();
+                    Document event = change.getFullDocument();
+                    if (event != null && event.get("_id") instanceof Number id
+                            && event.get("availableTickets") instanceof Number available) {
+                        publish(id.intValue(), available.intValue());
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Events change stream interrupted, retrying in 5 seconds: {}", e.getMessage());
+                try {
+                    Thread.sleep(5000);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changeStreamCursor;
+        if (cursor != null) {
+            cursor.close();
+        }
+        scheduler.shutdownNow();
+        writers.shutdownNow();
+        for (Set<Subscriber> eventSubscribers : subscribers.values()) {
+            eventSubscribers.forEach(subscriber -> subscriber.emitter.complete());
+        }
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.event.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.event.model.Event;
+import com.example.event.repository.EventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the public catalog and hot event detail responses as ready-to-write bytes
+ * (raw and gzip), keyed by a catalog version that is bumped on every write.
+ * The catalog is rebuilt in the background after a change, so requests never serialise.
+ */
+@Service
+public class CatalogResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogResponseCache.class);
+
+    @Autowired
+    private EventRepository eventRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${event.cache.max-detail-entries:256}")
+    private int maxDetailEntries;
+
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+    // Access-ordered, so the least recently served event is evicted to make room for a new one
+    private final Map<Integer, CachedResponse> eventDetails = Collections.synchronizedMap(
+            new LinkedHashMap<Integer, CachedResponse>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, CachedResponse> eldest) {
+                    return size() > maxDetailEntries;
+                }
+            });
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "catalog-cache-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile CachedResponse catalog;
+
+    // Serialised response body in every encoding we can serve
+    public static final class CachedResponse {
+        private final long version;
+        private final byte[] raw;
+        private final byte[] gzip;
+        private final String etag;
+
+        CachedResponse(long version, byte[] raw, byte[] gzip) {
+            this.version = version;
+            this.raw = raw;
+            this.gzip = gzip;
+            this.etag = contentETag(raw);
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public byte[] getBody(boolean gzipAccepted) {
+            return gzipAccepted ? gzip : raw;
+        }
+    }
+
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
+
+    // Current catalog bytes; built inline only for the very first request
+    public CachedResponse getCatalog() {
+        CachedResponse current = catalog;
+        if (current == null) {
+            synchronized (this) {
+                current = catalog;
+                if (current == null) {
+                    current = buildCatalog();
+                    catalog = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Event detail bytes, cached for the maxDetailEntries most recently requested events
+    public Optional<CachedResponse> getEventDetail(int eventId) {
+        CachedResponse cached = eventDetails.get(eventId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long version = catalogVersion.get();
+        Optional<Event> event = eventRepository.findById(eventId);
+        if (event.isEmpty()) {
+            return Optional.empty();
+        }
+
+        CachedResponse built = serialise(version, event.get());
+        eventDetails.put(eventId, built);
+        // A write raced with the load; drop what we just cached so it is not served stale
+        if (catalogVersion.get() != version) {
+            eventDetails.remove(eventId, built);
+        }
+        return Optional.of(built);
+    }
+
+    // Called after any change to an event; bumps the version and rebuilds in the background
+    public void invalidate(int eventId) {
+        catalogVersion.incrementAndGet();
+        eventDetails.remove(eventId);
+        scheduleRebuild();
+    }
+
+    // Called after changes that may touch many events at once
+    public void invalidateAll() {
+        catalogVersion.incrementAndGet();
+        eventDetails.clear();
+        scheduleRebuild();
+    }
+
+    private void scheduleRebuild() {
+        // Coalesce bursts of writes into a single rebuild
+        if (!rebuildScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        rebuildExecutor.execute(() -> {
+            rebuildScheduled.set(false);
+            try {
+                CachedResponse rebuilt = buildCatalog();
+                synchronized (this) {
+                    if (catalog == null || catalog.getVersion() < rebuilt.getVersion()) {
+                        catalog = rebuilt;
+                    }
+                }
+                logger.debug("Catalog response cache rebuilt at version {}", rebuilt.getVersion());
+            } catch (Exception e) {
+                logger.error("Error rebuilding catalog response cache", e);
+            }
+        });
+    }
+
+    private CachedResponse buildCatalog() {
+        long version = catalogVersion.get();
+        List<Event> events = eventRepository.findAll();
+        return serialise(version, events);
+    }
+
+    private CachedResponse serialise(long version, Object body) {
+        try {
+            byte[] raw = objectMapper.writeValueAsBytes(body);
+            return new CachedResponse(version, raw, gzip(raw));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialise cached response", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] raw) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(raw);
+        }
+        return buffer.toByteArray();
+    }
+
+    // Strong entity tag derived from the body, so equal bodies share a tag across rebuilds and instances
+    public static String contentETag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    // Parses Accept-Encoding just enough to tell whether gzip is acceptable
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether an If-None-Match header matches an entity tag: "*", or any tag in the comma-separated
+     * list, compared weakly (a W/ prefix on either side is ignored) as RFC 9110 prescribes for GET.
+     */
+    public static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        if (ifNoneMatch.trim().equals("*")) {
+            return true;
+        }
+        String opaque = opaqueTag(etag);
+        int i = 0;
+        int length = ifNoneMatch.length();
+        while (i < length) {
+            char c = ifNoneMatch.charAt(i);
+            if (c == ',' || Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (ifNoneMatch.startsWith("W/", i)) {
+                i += 2;
+            }
+            if (i >= length || ifNoneMatch.charAt(i) != '"') {
+                // Not an entity tag; skip to the next list member
+                int next = ifNoneMatch.indexOf(',', i);
+                i = next < 0 ? length : next + 1;
+                continue;
+            }
+            int end = ifNoneMatch.indexOf('"', i + 1);
+            if (end < 0) {
+                return false;
+            }
+            if (ifNoneMatch.substring(i, end + 1).equals(opaque)) {
+                return true;
+            }
+            i = end + 1;
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.event.service;
+
+import java.util.function.Consumer;
+
+// No transport at all: ticket updates only arrive through the internal HTTP endpoint
+public class DirectTicketUpdateBus implements TicketUpdateBus {
+
+    @Override
+    public String getName() {
+        return "http";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void subscribe(Consumer<TicketUpdate> handler) {
+    }
+}
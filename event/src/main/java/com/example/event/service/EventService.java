@@ -1,17 +1,45 @@
 package com.example.event.service;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
+import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import com.example.event.model.Event;
 import com.example.event.repository.EventRepository;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 
 @Service
 public class EventService {
@@ -22,11 +50,35 @@ public class EventService {
     private EventRepository eventRepository;
 
     @Autowired
-    private S3Service s3Service;
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ImageStore imageStore;
 
      @Autowired
     private RestTemplate restTemplate; 
 
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
+    @Autowired
+    private AvailabilityStreamService availabilityStreamService;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private TicketLedgerService ticketLedgerService;
+
+    @Autowired
+    private TicketOperationService ticketOperationService;
+
+    @Value("${event.batch.max-ids:500}")
+    private int maxBatchIds;
+
+    @Value("${event.tickets.batch.max-items:256}")
+    private int maxTicketDeltas;
+
     // Get all events
     public List<Event> getAllEvents() {
         try {
@@ -55,16 +107,25 @@ public class EventService {
             }
             
             event.setId(newId);
+            if (event.getCapacity() == null) {
+                // A new event has sold nothing yet
+                event.setCapacity(event.getAvailableTickets());
+            }
 
-            // Upload image to S3 if configured; otherwise keep base64 in MongoDB
-            if (s3Service.isEnabled() && event.getImageData() != null && !event.getImageData().isEmpty()) {
-                String s3Url = s3Service.uploadImage(event.getImageData());
-                if (s3Url != null) {
-                    event.setImageData(s3Url);
+            // Upload image to the image store if configured; otherwise keep base64 in MongoDB
+            if (imageStore.isEnabled() && imageStore.isInlineImage(event.getImageData())) {
+                String imageUrl = imageStore.uploadImage(event.getImageData());
+                if (imageUrl != null) {
+                    event.setImageData(imageUrl);
                 }
             }
 
-            return eventRepository.save(event);
+            Event saved = eventRepository.save(event);
+            ticketLedgerService.append(saved.getId(), saved.getVersion(), TicketLedgerService.EntryType.OPENING,
+                    saved.getAvailableTickets(), saved.getAvailableTickets());
+            eventChanged(saved);
+            imageDerivativeService.scheduleDerivatives(saved);
+            return saved;
         } catch (Exception e) {
             logger.error("Error adding event", e);
             throw e;
@@ -85,7 +146,74 @@ public class EventService {
         }
     }
 
-    // Update existing event
+    /**
+     * Fetch many events in one query, without their image fields.
+     * @return events keyed by ID in request order; IDs that do not exist are left out
+     */
+    public Map<Integer, Event> getEventsByIds(Collection<Integer> ids) {
+        if (ids.size() > maxBatchIds) {
+            throw new IllegalArgumentException("At most " + maxBatchIds + " event IDs can be requested at once");
+        }
+        try {
+            List<Integer> distinctIds = ids.stream().distinct().toList();
+            Map<Integer, Event> found = new HashMap<>();
+            for (Event event : mongoTemplate.find(withoutImages(new Query(Criteria.where("_id").in(distinctIds))), Event.class)) {
+                found.put(event.getId(), event);
+            }
+
+            Map<Integer, Event> events = new LinkedHashMap<>();
+            for (Integer id : distinctIds) {
+                Event event = found.get(id);
+                if (event != null) {
+                    events.put(id, event);
+                }
+            }
+            return events;
+        } catch (Exception e) {
+            logger.error("Error getting events by IDs: {}", ids, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Correct availableTickets after reconciliation, only if it still holds the value that was checked.
+     * @return false if the event changed in the meantime
+     */
+    public boolean correctAvailableTickets(int id, int observed, int expected) {
+        Query query = withoutImages(new Query(Criteria.where("_id").is(id).and("availableTickets").is(observed)));
+        Update update = new Update().set("availableTickets", expected).inc("version", 1);
+        Event corrected = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Event.class);
+        if (corrected == null) {
+            return false;
+        }
+        logger.warn("Corrected availableTickets for event ID {} from {} to {}", id, observed, expected);
+        ticketLedgerService.append(id, corrected.getVersion(), TicketLedgerService.EntryType.RECONCILE,
+                expected - observed, corrected.getAvailableTickets());
+        eventChanged(corrected);
+        return true;
+    }
+
+    // Record the capacity derived for an event that never had one
+    public boolean initialiseCapacity(int id, int capacity) {
+        Query query = withoutImages(new Query(Criteria.where("_id").is(id).and("capacity").is(null)));
+        Event updated = mongoTemplate.findAndModify(query, new Update().set("capacity", capacity).inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true), Event.class);
+        if (updated == null) {
+            return false;
+        }
+        // Keeps the ledger covering every version, so admin edits from before this are not taken for conflicts
+        ticketLedgerService.append(id, updated.getVersion(), TicketLedgerService.EntryType.CAPACITY,
+                0, updated.getAvailableTickets());
+        return true;
+    }
+
+    /**
+     * Update an existing event's details (version-checked). Ticket movements since the version the client
+     * edited are not conflicts: bookings keep selling while an admin edits, so the stock the client left
+     * alone follows the sales and a stock the client changed is applied as a relative change.
+     * Any other write in between fails with OptimisticLockingFailureException.
+     */
     public Event updateEvent(int id, Event updated) {
         try {
             Event existing = getEventById(id);
@@ -93,29 +221,183 @@ public class EventService {
                 return null;
             }
 
-            // Handle S3 image: upload new image if it's base64, delete old one
-            if (s3Service.isEnabled() && updated.getImageData() != null && !updated.getImageData().isEmpty()) {
-                boolean isBase64 = updated.getImageData().startsWith("data:") || !updated.getImageData().startsWith("http");
-                if (isBase64) {
-                    // Delete old S3 image if it exists
-                    if (existing.getImageData() != null && existing.getImageData().contains("amazonaws.com")) {
-                        s3Service.deleteImage(existing.getImageData());
-                    }
-                    String s3Url = s3Service.uploadImage(updated.getImageData());
-                    if (s3Url != null) {
-                        updated.setImageData(s3Url);
-                    }
+            // A new image is uploaded first, but nothing is deleted until the version-checked write has
+            // gone through; if the update fails, the upload is dropped instead
+            String uploadedUrl = null;
+            if (imageStore.isEnabled() && imageStore.isInlineImage(updated.getImageData())) {
+                uploadedUrl = imageStore.uploadImage(updated.getImageData());
+                if (uploadedUrl != null) {
+                    updated.setImageData(uploadedUrl);
                 }
             }
+            // Only a new inline image or a cleared one replaces the image. Image writes do not bump the
+            // version, so a URL other than the current one is a stale copy and the current image is kept
+            boolean imageChanged = !Objects.equals(existing.getImageData(), updated.getImageData())
+                    && (uploadedUrl != null || imageStore.isInlineImage(updated.getImageData())
+                            || updated.getImageData() == null || updated.getImageData().isEmpty());
 
-            updated.setId(id);
-            return eventRepository.save(updated);
+            Event saved = null;
+            try {
+                saved = writeEventUpdate(id, existing, updated, imageChanged);
+            } finally {
+                if (saved == null && uploadedUrl != null && !uploadedUrl.equals(existing.getImageData())) {
+                    imageStore.deleteImage(uploadedUrl);
+                }
+            }
+            if (saved == null) {
+                return null;
+            }
+
+            if (imageChanged) {
+                // The event no longer points at the old image and its variants
+                imageStore.deleteImage(existing.getImageData());
+                imageDerivativeService.deleteDerivatives(existing);
+                saved.setImageData(updated.getImageData());
+                imageDerivativeService.scheduleDerivatives(saved);
+            } else {
+                saved.setImageData(existing.getImageData());
+                saved.setThumbnailUrl(existing.getThumbnailUrl());
+                saved.setMediumImageUrl(existing.getMediumImageUrl());
+            }
+            return saved;
         } catch (Exception e) {
             logger.error("Error updating event with ID: {}", id, e);
             throw e;
         }
     }
 
+    // The version-checked write of updateEvent; null if the event is gone
+    private Event writeEventUpdate(int id, Event existing, Event updated, boolean imageChanged) {
+        // Without a version the client is taken to have edited the event as it is now
+        Long clientVersion = updated.getVersion();
+        Event current = existing;
+        for (int attempt = 0; attempt < 5; attempt++) {
+            if (attempt > 0) {
+                current = findWithoutImages(id);
+                if (current == null) {
+                    return null;
+                }
+            }
+
+            int stock = updated.getAvailableTickets();
+            if (clientVersion != null && !clientVersion.equals(current.getVersion())) {
+                Integer loadedStock = ticketLedgerService.stockBeforeTicketMoves(id, clientVersion,
+                        current.getVersion(), current.getAvailableTickets());
+                if (loadedStock == null) {
+                    throw new OptimisticLockingFailureException("Event " + id + " was modified since version " + clientVersion);
+                }
+                stock = current.getAvailableTickets() + updated.getAvailableTickets() - loadedStock;
+                if (stock < 0) {
+                    throw new IllegalArgumentException("Not enough tickets available");
+                }
+            }
+
+            Integer capacity = updated.getCapacity();
+            if (capacity == null && current.getCapacity() != null) {
+                // Without an explicit capacity, a change of stock is a change of what is for sale
+                capacity = current.getCapacity() + stock - current.getAvailableTickets();
+            }
+
+            // Only the event's own fields are set, leaving anything a ticket update parked alongside them.
+            // Image variants are left alone unless the image itself changes
+            Update update = new Update()
+                    .set("name", updated.getName())
+                    .set("type", updated.getType())
+                    .set("availableTickets", stock)
+                    .set("capacity", capacity)
+                    .set("price", updated.getPrice())
+                    .set("venue", updated.getVenue())
+                    .set("address", updated.getAddress())
+                    .set("city", updated.getCity())
+                    .set("country", updated.getCountry())
+                    .set("postcode", updated.getPostcode())
+                    .set("date", updated.getDate())
+                    .set("time", updated.getTime())
+                    .set("duration", updated.getDuration())
+                    .inc("version", 1);
+            if (imageChanged) {
+                update.set("imageData", updated.getImageData()).unset("thumbnailUrl").unset("mediumImageUrl");
+            }
+            Query query = withoutImages(new Query(Criteria.where("_id").is(id).and("version").is(current.getVersion())));
+            Event saved = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().returnNew(true), Event.class);
+            if (saved == null) {
+                continue;
+            }
+
+            if (stock != current.getAvailableTickets()) {
+                // The version check guarantees nothing moved between our read and this save
+                ticketLedgerService.append(id, saved.getVersion(), TicketLedgerService.EntryType.SET,
+                        stock - current.getAvailableTickets(), stock);
+            }
+            eventChanged(saved);
+            return saved;
+        }
+        throw new OptimisticLockingFailureException("Event " + id + " kept changing during the update");
+    }
+
+    // Replace an event's image by streaming it straight from the request body into the image store
+    public Event updateEventImage(int id, InputStream body, String contentType) throws IOException {
+        try {
+            Event existing = getEventById(id);
+            if (existing == null) {
+                return null;
+            }
+
+            BufferedInputStream input = new BufferedInputStream(body);
+            String imageType = contentType;
+            InputStream imageBytes = input;
+            if (contentType == null || !contentType.startsWith("image/")) {
+                // Base64 text body, optionally prefixed with a data: URL header
+                imageType = readDataUrlHeader(input);
+                imageBytes = Base64.getMimeDecoder().wrap(input);
+            }
+
+            String imageData;
+            if (imageStore.isEnabled()) {
+                imageData = imageStore.uploadImage(imageBytes, imageType);
+                if (imageData == null) {
+                    throw new IOException("Failed to upload image to the image store");
+                }
+                imageStore.deleteImage(existing.getImageData());
+            } else {
+                // Local dev mode: keep the image inline as a data URL
+                imageData = "data:" + imageType + ";base64," + Base64.getEncoder().encodeToString(imageBytes.readAllBytes());
+            }
+
+            imageDerivativeService.deleteDerivatives(existing);
+            existing.setImageData(imageData);
+            existing.setThumbnailUrl(null);
+            existing.setMediumImageUrl(null);
+
+            // Write only the image fields rather than re-saving the whole document
+            // Image writes leave the version alone; they do not conflict with edits of the other fields
+            Update update = new Update().set("imageData", imageData).unset("thumbnailUrl").unset("mediumImageUrl");
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(id)), update, Event.class);
+            eventChanged(existing);
+            imageDerivativeService.scheduleDerivatives(existing);
+            return existing;
+        } catch (Exception e) {
+            logger.error("Error updating image for event with ID: {}", id, e);
+            throw e;
+        }
+    }
+
+    // Consume a leading "data:image/...;base64," header if present and return its content type
+    private String readDataUrlHeader(BufferedInputStream input) throws IOException {
+        int maxHeader = 64;
+        input.mark(maxHeader);
+        byte[] head = input.readNBytes(maxHeader);
+        String prefix = new String(head, StandardCharsets.US_ASCII);
+        int comma = prefix.indexOf(',');
+        input.reset();
+        if (!prefix.startsWith("data:") || comma < 0) {
+            return "image/jpeg";
+        }
+        input.skipNBytes(comma + 1);
+        return ImageEncoding.contentTypeFromHeader(prefix.substring(0, comma));
+    }
+
     public boolean hasActiveBookings(int eventId) {
     try {
         // Call the Booking Service to check for active bookings
@@ -152,13 +434,12 @@ public boolean deleteEvent(int id) {
             throw new IllegalStateException("Cannot delete event with active bookings");
         }
 
-        // Delete S3 image if applicable
-        if (s3Service.isEnabled() && event.getImageData() != null
-                && event.getImageData().contains("amazonaws.com")) {
-            s3Service.deleteImage(event.getImageData());
-        }
+        // Delete stored image if applicable
+        imageStore.deleteImage(event.getImageData());
+        imageDerivativeService.deleteDerivatives(event);
 
         eventRepository.deleteById(id);
+        catalogResponseCache.invalidate(id);
         return true;
     } catch (IllegalStateException e) {
         logger.error("Cannot delete event: {}", e.getMessage());
@@ -177,22 +458,12 @@ public boolean deleteEvent(int id) {
                 throw new IllegalArgumentException("Number of tickets must be positive");
             }
             
-            // Get event
-            Event event = getEventById(eventId);
+            // Atomically take the tickets if enough are available
+            Event event = adjustTickets(eventId, -tickets, TicketLedgerService.EntryType.BOOK);
             if (event == null) {
                 throw new RuntimeException("Event not found");
             }
-            
-            // Check ticket availability
-            if (event.getAvailableTickets() < tickets) {
-                throw new IllegalArgumentException("Not enough tickets available");
-            }
-            
-            // Update available tickets
-            event.setAvailableTickets(event.getAvailableTickets() - tickets);
-            
-            // Save updated event
-            return eventRepository.save(event);
+            return event;
         } catch (Exception e) {
             logger.error("Error booking tickets", e);
             throw e;
@@ -207,20 +478,373 @@ public boolean deleteEvent(int id) {
                 throw new IllegalArgumentException("Number of tickets must be positive");
             }
             
-            // Get event
-            Event event = getEventById(eventId);
+            // Atomically add the tickets back
+            Event event = adjustTickets(eventId, tickets, TicketLedgerService.EntryType.RETURN);
             if (event == null) {
                 throw new RuntimeException("Event not found");
             }
-            
-            // Update available tickets
-            event.setAvailableTickets(event.getAvailableTickets() + tickets);
-            
-            // Save updated event
-            return eventRepository.save(event);
+            return event;
         } catch (Exception e) {
             logger.error("Error returning tickets", e);
             throw e;
         }
     }
+
+    /**
+     * Apply a ticket delta with a single $inc, refusing to go below zero.
+     * Only availableTickets is written and the returned event omits the image fields.
+     * @return the updated event, or null if it does not exist
+     * @throws IllegalArgumentException if not enough tickets are available
+     */
+    public Event adjustTickets(int eventId, int ticketChange) {
+        return adjustTickets(eventId, ticketChange, TicketLedgerService.EntryType.ADJUST);
+    }
+
+    // As above, recording the movement in the ticket ledger under the given type
+    private Event adjustTickets(int eventId, int ticketChange, TicketLedgerService.EntryType type) {
+        Criteria criteria = Criteria.where("_id").is(eventId);
+        if (ticketChange < 0) {
+            criteria = criteria.and("availableTickets").gte(-ticketChange);
+        }
+        Query query = withoutImages(new Query(criteria));
+
+        // Bump the version too so a concurrent full-document save sees the conflict
+        Update update = new Update().inc("availableTickets", ticketChange).inc("version", 1);
+        Event updated = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Event.class);
+        if (updated == null) {
+            if (!eventRepository.existsById(eventId)) {
+                return null;
+            }
+            throw new IllegalArgumentException("Not enough tickets available");
+        }
+
+        ticketLedgerService.append(eventId, updated.getVersion(), type, ticketChange, updated.getAvailableTickets());
+        eventChanged(updated);
+        return updated;
+    }
+
+    public int getMaxTicketDeltas() {
+        return maxTicketDeltas;
+    }
+
+    /**
+     * Apply a batch of ticket deltas with one ordered bulkWrite of guarded pipeline updates.
+     * Operation IDs are claimed in ticket_operations first, so a delta that is sent again is answered with
+     * its original outcome instead of being applied twice. Each update parks {op, version, balance} in the
+     * event's pendingOperations; reading those back gives the outcome of every delta, which is settled in
+     * ticket_operations before the parked entries are removed again.
+     * @return one status per delta, in order
+     */
+    public TicketDeltaBatch.Status[] applyTicketDeltas(List<TicketDeltaBatch.Delta> deltas) {
+        if (deltas.size() > maxTicketDeltas) {
+            throw new IllegalArgumentException("Batch must not hold more than " + maxTicketDeltas + " deltas");
+        }
+        // A repeated operation ID within the batch shares the outcome of its first occurrence
+        Map<Long, TicketDeltaBatch.Delta> operations = new LinkedHashMap<>();
+        for (TicketDeltaBatch.Delta delta : deltas) {
+            if (delta.delta() != 0) {
+                operations.putIfAbsent(delta.operationId(), delta);
+            }
+        }
+
+        Set<Long> claimed = ticketOperationService.claim(operations.values());
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        Set<Integer> eventIds = new LinkedHashSet<>();
+        for (TicketDeltaBatch.Delta delta : operations.values()) {
+            if (!claimed.contains(delta.operationId())) {
+                continue;
+            }
+            // The pendingOperations guard covers a taken-over claim whose first attempt got as far as the event
+            Bson filter = Filters.and(Filters.eq("_id", delta.eventId()), Filters.ne("pendingOperations.op", delta.operationId()));
+            if (delta.delta() < 0) {
+                filter = Filters.and(filter, Filters.gte("availableTickets", -delta.delta()));
+            }
+            writes.add(new UpdateOneModel<>(filter, ticketDeltaPipeline(delta)));
+            eventIds.add(delta.eventId());
+        }
+        if (!writes.isEmpty()) {
+            // Ordered, so deltas for the same event are applied in the order they were sent
+            mongoTemplate.getCollection("events").bulkWrite(writes, new BulkWriteOptions().ordered(true));
+            settleTicketDeltas(operations, claimed, eventIds);
+        }
+
+        Map<Long, String> states = ticketOperationService.getStates(operations.keySet());
+        TicketDeltaBatch.Status[] statuses = new TicketDeltaBatch.Status[deltas.size()];
+        for (int i = 0; i < deltas.size(); i++) {
+            TicketDeltaBatch.Delta delta = deltas.get(i);
+            String state = states.get(delta.operationId());
+            if (delta.delta() == 0) {
+                statuses[i] = TicketDeltaBatch.Status.INVALID;
+            } else if (state == null || TicketOperationService.PENDING.equals(state)) {
+                // Another request is still working on it; the sender should try again later
+                statuses[i] = TicketDeltaBatch.Status.IN_PROGRESS;
+            } else {
+                statuses[i] = TicketDeltaBatch.Status.valueOf(state);
+            }
+        }
+        return statuses;
+    }
+
+    // Read the parked operations back, settle the claimed ones and unpark them
+    private void settleTicketDeltas(Map<Long, TicketDeltaBatch.Delta> operations, Set<Long> claimed, Set<Integer> eventIds) {
+        Map<Integer, Map<Long, Document>> parked = new HashMap<>();
+        for (Document event : mongoTemplate.getCollection("events")
+                .find(Filters.in("_id", eventIds))
+                .projection(Projections.include("availableTickets", "pendingOperations"))) {
+            Map<Long, Document> pending = new HashMap<>();
+            for (Document operation : event.getList("pendingOperations", Document.class, List.of())) {
+                pending.put(((Number) operation.get("op")).longValue(), operation);
+            }
+            int eventId = ((Number) event.get("_id")).intValue();
+            parked.put(eventId, pending);
+            eventChanged(eventId, ((Number) event.get("availableTickets")).intValue());
+        }
+
+        Map<Long, Document> outcomes = new LinkedHashMap<>();
+        Map<Integer, List<Long>> settled = new HashMap<>();
+        for (long operationId : claimed) {
+            TicketDeltaBatch.Delta delta = operations.get(operationId);
+            Map<Long, Document> pending = parked.get(delta.eventId());
+            Document operation = pending != null ? pending.get(operationId) : null;
+            if (pending == null) {
+                outcomes.put(operationId, new Document("state", TicketDeltaBatch.Status.NOT_FOUND.name()));
+            } else if (operation == null) {
+                outcomes.put(operationId, new Document("state", TicketDeltaBatch.Status.NOT_ENOUGH_TICKETS.name()));
+            } else {
+                long version = ((Number) operation.get("version")).longValue();
+                int balance = ((Number) operation.get("balance")).intValue();
+                outcomes.put(operationId, new Document("state", TicketDeltaBatch.Status.APPLIED.name())
+                        .append("version", version).append("balance", balance));
+                settled.computeIfAbsent(delta.eventId(), id -> new ArrayList<>()).add(operationId);
+                ticketLedgerService.append(delta.eventId(), version,
+                        delta.delta() < 0 ? TicketLedgerService.EntryType.BOOK : TicketLedgerService.EntryType.RETURN,
+                        delta.delta(), balance);
+            }
+        }
+        ticketOperationService.settle(outcomes);
+
+        // Only our own operations: another batch may have parked some of its own on the same event meanwhile
+        List<WriteModel<Document>> unpark = new ArrayList<>();
+        for (Map.Entry<Integer, List<Long>> event : settled.entrySet()) {
+            unpark.add(new UpdateOneModel<>(Filters.eq("_id", event.getKey()),
+                    Updates.pull("pendingOperations", Filters.in("op", event.getValue()))));
+        }
+        if (!unpark.isEmpty()) {
+            mongoTemplate.getCollection("events").bulkWrite(unpark, new BulkWriteOptions().ordered(false));
+        }
+    }
+
+    // $inc of availableTickets and version, then the operation parked in pendingOperations
+    private List<Bson> ticketDeltaPipeline(TicketDeltaBatch.Delta delta) {
+        Document increment = new Document("availableTickets", new Document("$add", List.of("$availableTickets", delta.delta())))
+                .append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0L)), 1L)));
+        Document operation = new Document("op", delta.operationId())
+                .append("version", "$version")
+                .append("balance", "$availableTickets");
+        Document park = new Document("pendingOperations", new Document("$concatArrays",
+                List.of(new Document("$ifNull", List.of("$pendingOperations", List.of())), List.of(operation))));
+        return List.of(new Document("$set", increment), new Document("$set", park));
+    }
+
+    /**
+     * Patch an event: only the supplied fields are written, with a single $set.
+     * @return the updated event (image fields only if the image changed), or null if it does not exist
+     * @throws IllegalArgumentException for unknown or read-only fields
+     */
+    public Event patchEvent(int id, Map<String, Object> fields) {
+        try {
+            Update update = new Update();
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                Object value = field.getValue();
+                switch (field.getKey()) {
+                    case "name", "type", "venue", "address", "city", "country", "postcode", "date", "time" ->
+                            update.set(field.getKey(), value != null ? value.toString() : null);
+                    case "availableTickets", "capacity", "duration" -> update.set(field.getKey(), toNumber(field.getKey(), value).intValue());
+                    case "price" -> update.set(field.getKey(), toNumber(field.getKey(), value).doubleValue());
+                    case "imageData" -> { /* handled below */ }
+                    default -> throw new IllegalArgumentException("Unknown or read-only field: " + field.getKey());
+                }
+            }
+
+            // A new image goes to the image store first; the old image and its variants are dropped
+            Event existingImages = null;
+            String imageData = null;
+            boolean imageChanged = fields.containsKey("imageData");
+            if (imageChanged) {
+                existingImages = findImageFields(id);
+                if (existingImages == null) {
+                    return null;
+                }
+                imageData = (String) fields.get("imageData");
+                if (imageStore.isEnabled() && imageStore.isInlineImage(imageData)) {
+                    String imageUrl = imageStore.uploadImage(imageData);
+                    if (imageUrl != null) {
+                        imageData = imageUrl;
+                    }
+                }
+                imageChanged = !Objects.equals(existingImages.getImageData(), imageData);
+                if (imageChanged) {
+                    update.set("imageData", imageData).unset("thumbnailUrl").unset("mediumImageUrl");
+                }
+            }
+
+            if (update.getUpdateObject().isEmpty()) {
+                return findWithoutImages(id);
+            }
+
+            update.inc("version", 1);
+            Event updated = null;
+            if (fields.containsKey("availableTickets") && !fields.containsKey("capacity")) {
+                // Without an explicit capacity the stock change moves the capacity by the same amount,
+                // guarded on the stock it was computed from
+                int stock = toNumber("availableTickets", fields.get("availableTickets")).intValue();
+                for (int attempt = 0; attempt < 5 && updated == null; attempt++) {
+                    Event current = findWithoutImages(id);
+                    if (current == null) {
+                        return null;
+                    }
+                    if (current.getCapacity() != null) {
+                        update.set("capacity", current.getCapacity() + stock - current.getAvailableTickets());
+                    }
+                    Query query = withoutImages(new Query(Criteria.where("_id").is(id)
+                            .and("availableTickets").is(current.getAvailableTickets())));
+                    updated = mongoTemplate.findAndModify(query, update,
+                            FindAndModifyOptions.options().returnNew(true), Event.class);
+                }
+                if (updated == null) {
+                    throw new OptimisticLockingFailureException("Tickets for event " + id + " kept moving during the patch");
+                }
+            } else {
+                Query query = withoutImages(new Query(Criteria.where("_id").is(id)));
+                updated = mongoTemplate.findAndModify(query, update,
+                        FindAndModifyOptions.options().returnNew(true), Event.class);
+                if (updated == null) {
+                    return null;
+                }
+            }
+
+            if (fields.containsKey("availableTickets")) {
+                ticketLedgerService.append(id, updated.getVersion(), TicketLedgerService.EntryType.SET,
+                        null, updated.getAvailableTickets());
+            }
+            eventChanged(updated);
+            if (imageChanged) {
+                imageStore.deleteImage(existingImages.getImageData());
+                imageDerivativeService.deleteDerivatives(existingImages);
+                updated.setImageData(imageData);
+                imageDerivativeService.scheduleDerivatives(updated);
+            }
+            return updated;
+        } catch (Exception e) {
+            logger.error("Error patching event with ID: {}", id, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuild availableTickets from the ticket ledger (latest snapshot plus the entries after it).
+     * A dry run only reports the difference. Otherwise the rebuilt value is written only if the replay
+     * agrees with the balanceAfter recorded on the latest entry it replayed, unless forced: a gap or a
+     * bad entry in the ledger should not overwrite the live stock unnoticed.
+     * The event must not move while the ledger is replayed; a busy event is retried a few times.
+     * Nothing waits for ledger inserts still in flight: while entries up to the event's version are
+     * missing, a dry run reports them and a rebuild asks the caller to try again.
+     * @return the previous and rebuilt values, or null if the event does not exist
+     * @throws IllegalStateException if the event has no ledger yet, the ledger is behind the event or the
+     *         replay disagrees with it and force is not set, or the event kept changing
+     */
+    public Map<String, Object> rebuildAvailableTickets(int id, boolean dryRun, boolean force) {
+        for (int attempt = 0; attempt < 5; attempt++) {
+            Event event = findWithoutImages(id);
+            if (event == null) {
+                return null;
+            }
+            // Movements already applied to the event whose ledger inserts have not landed (or never will)
+            long missing = ticketLedgerService.missingEntries(id, event.getVersion());
+            if (missing > 0 && !dryRun && !force) {
+                throw new IllegalStateException("Ticket ledger of event " + id + " is missing " + missing
+                        + " entries up to version " + event.getVersion() + "; try again shortly, or force the rebuild");
+            }
+
+            TicketLedgerService.Balance balance = ticketLedgerService.replay(id, event.getVersion());
+            if (balance == null) {
+                throw new IllegalStateException("Event " + id + " has no ticket ledger yet");
+            }
+            Integer recorded = ticketLedgerService.getBalanceAfter(id, balance.seq());
+            boolean consistent = recorded == null || recorded == balance.balance();
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("eventId", id);
+            result.put("dryRun", dryRun);
+            result.put("previousAvailableTickets", event.getAvailableTickets());
+            result.put("availableTickets", balance.balance());
+            result.put("difference", balance.balance() - event.getAvailableTickets());
+            result.put("ledgerSeq", balance.seq());
+            result.put("recordedBalanceAfter", recorded);
+            result.put("missingEntries", Math.max(0, missing));
+            result.put("consistent", consistent);
+            if (dryRun || event.getAvailableTickets() == balance.balance()) {
+                result.put("applied", false);
+                return result;
+            }
+            if (!consistent && !force) {
+                throw new IllegalStateException("Ledger replay for event " + id + " gives " + balance.balance()
+                        + " but its latest entry records " + recorded + "; check the ledger or force the rebuild");
+            }
+
+            Query query = withoutImages(new Query(Criteria.where("_id").is(id).and("version").is(event.getVersion())));
+            Update update = new Update().set("availableTickets", balance.balance()).inc("version", 1);
+            Event rebuilt = mongoTemplate.findAndModify(query, update,
+                    FindAndModifyOptions.options().returnNew(true), Event.class);
+            if (rebuilt == null) {
+                continue;
+            }
+
+            logger.warn("Rebuilt availableTickets for event ID {} from {} to {}{}", id,
+                    event.getAvailableTickets(), balance.balance(), consistent ? "" : " (forced)");
+            eventChanged(rebuilt);
+            result.put("applied", true);
+            return result;
+        }
+        throw new IllegalStateException("Event " + id + " kept changing during the rebuild; try again");
+    }
+
+    private static Number toNumber(String field, Object value) {
+        if (value instanceof Number number) {
+            return number;
+        }
+        try {
+            return Double.valueOf(String.valueOf(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Field " + field + " must be a number");
+        }
+    }
+
+    // Only the image fields of an event, or null if it does not exist
+    private Event findImageFields(int id) {
+        Query query = new Query(Criteria.where("_id").is(id));
+        query.fields().include("imageData", "thumbnailUrl", "mediumImageUrl");
+        return mongoTemplate.findOne(query, Event.class);
+    }
+
+    private Event findWithoutImages(int id) {
+        return mongoTemplate.findOne(withoutImages(new Query(Criteria.where("_id").is(id))), Event.class);
+    }
+
+    // Leave the (potentially large) image fields out of the returned document
+    private static Query withoutImages(Query query) {
+        query.fields().exclude("imageData", "thumbnailUrl", "mediumImageUrl");
+        return query;
+    }
+
+    // Refresh cached responses and notify availability subscribers after a write
+    private void eventChanged(Event event) {
+        eventChanged(event.getId(), event.getAvailableTickets());
+    }
+
+    private void eventChanged(int eventId, int availableTickets) {
+        catalogResponseCache.invalidate(eventId);
+        availabilityStreamService.publish(eventId, availableTickets);
+    }
 }
\ No newline at end of file
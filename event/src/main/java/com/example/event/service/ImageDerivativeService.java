@@ -0,0 +1,183 @@
+package com.example.event.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.event.model.Event;
+import com.mongodb.client.result.UpdateResult;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Generates thumbnail and medium-width variants of event images on a bounded worker pool.
+ * Variants are stored next to the original (key suffix in the image store, or inline when no store is configured)
+ * and recorded on the event with a targeted update once ready.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
+    @Value("${event.images.thumbnail-width:320}")
+    private int thumbnailWidth;
+
+    @Value("${event.images.medium-width:960}")
+    private int mediumWidth;
+
+    @Value("${event.images.workers:2}")
+    private int workers;
+
+    @Value("${event.images.queue-capacity:100}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "image-derivatives");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // Queue variant generation for an event's current image; never blocks the caller
+    public void scheduleDerivatives(Event event) {
+        String source = event.getImageData();
+        if (source == null || source.isEmpty()) {
+            return;
+        }
+        int eventId = event.getId();
+        try {
+            executor.execute(() -> generate(eventId, source));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Image derivative queue full, skipping variants for event ID: {}", eventId);
+        }
+    }
+
+    // Remove stored variants that belong to an image being replaced or deleted
+    public void deleteDerivatives(Event event) {
+        imageStore.deleteImage(event.getThumbnailUrl());
+        imageStore.deleteImage(event.getMediumImageUrl());
+    }
+
+    private void generate(int eventId, String source) {
+        try {
+            BufferedImage original = readSource(source);
+            if (original == null) {
+                logger.warn("Unsupported image format for event ID: {}", eventId);
+                return;
+            }
+
+            boolean alpha = original.getColorModel().hasAlpha();
+            String format = alpha ? "png" : "jpeg";
+            String thumbnail = store(source, "thumb", resize(original, thumbnailWidth, alpha), format);
+            String medium = store(source, "medium", resize(original, mediumWidth, alpha), format);
+
+            // Only record the variants if the image has not changed in the meantime
+            Query query = new Query(Criteria.where("_id").is(eventId).and("imageData").is(source));
+            // Background bookkeeping: the version is left alone so it does not conflict with admin edits
+            Update update = new Update().set("thumbnailUrl", thumbnail).set("mediumImageUrl", medium);
+            UpdateResult result = mongoTemplate.updateFirst(query, update, Event.class);
+
+            if (result.getModifiedCount() > 0) {
+                catalogResponseCache.invalidate(eventId);
+                logger.info("Image variants generated for event ID: {}", eventId);
+            } else if (imageStore.isOwnedUrl(thumbnail)) {
+                // Image was replaced while we worked; discard the orphaned variants
+                imageStore.deleteImage(thumbnail);
+                imageStore.deleteImage(medium);
+            }
+        } catch (Exception e) {
+            logger.error("Error generating image variants for event ID: {}", eventId, e);
+        }
+    }
+
+    private BufferedImage readSource(String source) throws IOException {
+        if (!imageStore.isInlineImage(source)) {
+            byte[] bytes = imageStore.downloadImage(source);
+            return bytes == null ? null : ImageIO.read(new ByteArrayInputStream(bytes));
+        }
+        try (InputStream decoded = ImageEncoding.decodeBase64(source)) {
+            return ImageIO.read(decoded);
+        }
+    }
+
+    // Scale down to the target width keeping the aspect ratio; never upscale
+    private BufferedImage resize(BufferedImage original, int targetWidth, boolean alpha) {
+        int width = Math.min(targetWidth, original.getWidth());
+        int height = Math.max(1, (int) Math.round((double) original.getHeight() * width / original.getWidth()));
+
+        BufferedImage scaled = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private String store(String source, String variant, BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        ImageIO.write(image, format, buffer);
+        String contentType = "image/" + (format.equals("png") ? "png" : "jpeg");
+
+        if (imageStore.isOwnedUrl(source)) {
+            // Store alongside the original: events/<uuid>.jpg -> events/<uuid>-thumb.jpg
+            String key = imageStore.keyForUrl(source);
+            int dot = key.lastIndexOf('.');
+            String base = dot > 0 ? key.substring(0, dot) : key;
+            String url = imageStore.uploadImage(new ByteArrayInputStream(buffer.toByteArray()), contentType,
+                    base + "-" + variant + ImageEncoding.getExtension(contentType));
+            if (url == null) {
+                throw new IOException("Failed to store " + variant + " variant");
+            }
+            return url;
+        }
+
+        // Local dev mode: keep the (small) variant inline like the original
+        return "data:" + contentType + ";base64," + Base64.getEncoder().encodeToString(buffer.toByteArray());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
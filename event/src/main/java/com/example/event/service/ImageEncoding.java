@@ -0,0 +1,84 @@
+package com.example.event.service;
+
+import java.io.InputStream;
+import java.util.Base64;
+
+// Helpers for base64 / data: URL image payloads shared by the image stores
+public final class ImageEncoding {
+
+    private ImageEncoding() {
+    }
+
+    // Decoding stream over a base64 image string, skipping any data: URL header
+    public static InputStream decodeBase64(String base64Data) {
+        int start = base64Data.indexOf(',') + 1;
+        return Base64.getMimeDecoder().wrap(new CharSequenceInputStream(base64Data, start));
+    }
+
+    // Content type declared by a data: URL, defaulting to JPEG for bare base64
+    public static String contentTypeOf(String base64Data) {
+        int comma = base64Data.indexOf(',');
+        return comma >= 0 ? contentTypeFromHeader(base64Data.subSequence(0, comma)) : "image/jpeg";
+    }
+
+    // Work out the content type from a data: URL header such as "data:image/png;base64"
+    public static String contentTypeFromHeader(CharSequence header) {
+        String value = header.toString();
+        if (value.contains("png")) {
+            return "image/png";
+        } else if (value.contains("gif")) {
+            return "image/gif";
+        } else if (value.contains("webp")) {
+            return "image/webp";
+        }
+        return "image/jpeg";
+    }
+
+    public static String getExtension(String contentType) {
+        return switch (contentType) {
+            case "image/png" -> ".png";
+            case "image/gif" -> ".gif";
+            case "image/webp" -> ".webp";
+            default -> ".jpg";
+        };
+    }
+
+    public static String contentTypeForExtension(String fileName) {
+        if (fileName.endsWith(".png")) {
+            return "image/png";
+        } else if (fileName.endsWith(".gif")) {
+            return "image/gif";
+        } else if (fileName.endsWith(".webp")) {
+            return "image/webp";
+        }
+        return "image/jpeg";
+    }
+
+    // Reads the ASCII characters of a CharSequence as bytes, avoiding a copy of large base64 strings
+    private static final class CharSequenceInputStream extends InputStream {
+        private final CharSequence chars;
+        private int position;
+
+        CharSequenceInputStream(CharSequence chars, int start) {
+            this.chars = chars;
+            this.position = start;
+        }
+
+        @Override
+        public int read() {
+            return position < chars.length() ? chars.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= chars.length()) {
+                return -1;
+            }
+            int count = Math.min(length, chars.length() - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) chars.charAt(position++);
+            }
+            return count;
+        }
+    }
+}
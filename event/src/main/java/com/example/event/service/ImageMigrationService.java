@@ -0,0 +1,252 @@
+package com.example.event.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import com.example.event.model.Event;
+import com.mongodb.client.result.UpdateResult;
+
+/**
+ * Moves base64 images embedded in event documents out to the object store.
+ * Runs in the background in small batches, checkpointing the last processed event ID
+ * so a restarted job resumes where it left off. Concurrency and upload rate are configurable.
+ */
+@Service
+public class ImageMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageMigrationService.class);
+
+    private static final String PROGRESS_COLLECTION = "job_progress";
+    private static final String JOB_ID = "inline-image-migration";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ImageDerivativeService imageDerivativeService;
+
+    @Autowired
+    private CatalogResponseCache catalogResponseCache;
+
+    @Value("${event.images.migration.concurrency:2}")
+    private int concurrency;
+
+    @Value("${event.images.migration.rate-per-second:5}")
+    private double ratePerSecond;
+
+    @Value("${event.images.migration.batch-size:50}")
+    private int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean stopRequested = new AtomicBoolean();
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private volatile int lastEventId;
+    private volatile long remaining = -1;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+
+    // Start (or resume) the migration; returns false if it is already running
+    public boolean start() {
+        if (!imageStore.isEnabled()) {
+            throw new IllegalStateException("No object store configured for image migration");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        stopRequested.set(false);
+        loadCheckpoint();
+        startedAt = Instant.now();
+        finishedAt = null;
+
+        Thread worker = new Thread(this::run, "image-migration");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    // Ask a running migration to stop after the current batch
+    public void stop() {
+        stopRequested.set(true);
+    }
+
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("running", running.get());
+        progress.put("lastEventId", lastEventId);
+        progress.put("migrated", migrated.get());
+        progress.put("failed", failed.get());
+        progress.put("skipped", skipped.get());
+        progress.put("remaining", remaining);
+        progress.put("startedAt", startedAt != null ? startedAt.toString() : null);
+        progress.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+        return progress;
+    }
+
+    private void run() {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        long intervalNanos = (long) (1_000_000_000L / Math.max(0.01, ratePerSecond));
+        long nextSlot = System.nanoTime();
+
+        try {
+            remaining = mongoTemplate.count(inlineImagesAfter(lastEventId), Event.class);
+            logger.info("Starting inline image migration from event ID {} ({} events remaining)", lastEventId, remaining);
+
+            while (!stopRequested.get()) {
+                List<Integer> batch = nextBatch();
+                if (batch.isEmpty()) {
+                    // Finished a full pass; the next run rescans from the start
+                    lastEventId = 0;
+                    break;
+                }
+
+                List<Future<?>> tasks = new ArrayList<>(batch.size());
+                for (Integer eventId : batch) {
+                    // Pace submissions to respect the configured upload rate
+                    long wait = nextSlot - System.nanoTime();
+                    if (wait > 0) {
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    }
+                    nextSlot = Math.max(nextSlot, System.nanoTime()) + intervalNanos;
+                    tasks.add(pool.submit(() -> migrateEvent(eventId)));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+
+                lastEventId = batch.get(batch.size() - 1);
+                remaining = Math.max(0, remaining - batch.size());
+                saveCheckpoint();
+            }
+            logger.info("Inline image migration {}: migrated={}, failed={}, skipped={}",
+                    stopRequested.get() ? "stopped" : "finished", migrated.get(), failed.get(), skipped.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Inline image migration aborted at event ID {}", lastEventId, e);
+        } finally {
+            pool.shutdownNow();
+            finishedAt = Instant.now();
+            saveCheckpoint();
+            running.set(false);
+        }
+    }
+
+    // IDs only, so a batch never holds more than one image per worker in memory
+    private List<Integer> nextBatch() {
+        Query query = inlineImagesAfter(lastEventId)
+                .with(Sort.by(Sort.Direction.ASC, "_id"))
+                .limit(batchSize);
+        query.fields().include("_id");
+
+        List<Integer> ids = new ArrayList<>();
+        for (Document document : mongoTemplate.find(query, Document.class, "events")) {
+            ids.add(((Number) document.get("_id")).intValue());
+        }
+        return ids;
+    }
+
+    private void migrateEvent(int eventId) {
+        try {
+            Query query = new Query(Criteria.where("_id").is(eventId));
+            query.fields().include("imageData");
+            Document document = mongoTemplate.findOne(query, Document.class, "events");
+            String imageData = document != null ? document.getString("imageData") : null;
+            if (!imageStore.isInlineImage(imageData)) {
+                skipped.incrementAndGet();
+                return;
+            }
+
+            String url = imageStore.uploadImage(imageData);
+            if (url == null) {
+                failed.incrementAndGet();
+                return;
+            }
+
+            // Only replace the field if nobody changed the image while we uploaded it
+            Query unchanged = new Query(Criteria.where("_id").is(eventId).and("imageData").is(imageData));
+            // Same image in a new place: the version is left alone so it does not conflict with admin edits
+            Update update = new Update()
+                    .set("imageData", url)
+                    .unset("thumbnailUrl")
+                    .unset("mediumImageUrl");
+            UpdateResult result = mongoTemplate.updateFirst(unchanged, update, Event.class);
+
+            if (result.getModifiedCount() == 0) {
+                imageStore.deleteImage(url);
+                skipped.incrementAndGet();
+                return;
+            }
+
+            migrated.incrementAndGet();
+            catalogResponseCache.invalidate(eventId);
+
+            Event migratedEvent = new Event();
+            migratedEvent.setId(eventId);
+            migratedEvent.setImageData(url);
+            imageDerivativeService.scheduleDerivatives(migratedEvent);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            logger.error("Failed to migrate image for event ID: {}", eventId, e);
+        }
+    }
+
+    // Events after the given ID whose imageData is a non-empty inline value rather than a URL
+    private Query inlineImagesAfter(int eventId) {
+        String urlPattern = "^(http|" + Pattern.quote(imageStore.getUrlPrefix()) + ")";
+        return new Query(Criteria.where("_id").gt(eventId)
+                .and("imageData").gt("").not().regex(urlPattern));
+    }
+
+    private void loadCheckpoint() {
+        Document checkpoint = mongoTemplate.findById(JOB_ID, Document.class, PROGRESS_COLLECTION);
+        if (checkpoint == null) {
+            return;
+        }
+        lastEventId = (int) counter(checkpoint, "lastEventId");
+        migrated.set(counter(checkpoint, "migrated"));
+        failed.set(counter(checkpoint, "failed"));
+        skipped.set(counter(checkpoint, "skipped"));
+    }
+
+    private static long counter(Document document, String field) {
+        Object value = document.get(field);
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    private void saveCheckpoint() {
+        Update update = new Update()
+                .set("lastEventId", lastEventId)
+                .set("migrated", migrated.get())
+                .set("failed", failed.get())
+                .set("skipped", skipped.get())
+                .set("updatedAt", Instant.now().toString());
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(JOB_ID)), update, PROGRESS_COLLECTION);
+    }
+}
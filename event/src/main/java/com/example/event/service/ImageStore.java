@@ -0,0 +1,47 @@
+package com.example.event.service;
+
+import java.io.InputStream;
+
+/**
+ * Where event images (and their variants) are kept outside MongoDB.
+ * Implementations: {@link S3Service} on AWS and {@link LocalImageStore} for on-prem and local runs.
+ */
+public interface ImageStore {
+
+    // Whether the store is configured; when disabled images stay inline in MongoDB
+    boolean isEnabled();
+
+    // Store an image under a generated key and return its URL, or null on failure
+    String uploadImage(InputStream data, String contentType);
+
+    // Store an image under a suggested key (stores may ignore the hint) and return its URL, or null on failure
+    String uploadImage(InputStream data, String contentType, String key);
+
+    // Read back an image previously stored here, or null if the URL is not ours
+    byte[] downloadImage(String imageUrl);
+
+    // Whether the URL points at an object in this store
+    boolean isOwnedUrl(String imageUrl);
+
+    // Store-relative key of a URL produced by uploadImage
+    String keyForUrl(String imageUrl);
+
+    void deleteImage(String imageUrl);
+
+    // Common prefix of every URL this store hands out
+    String getUrlPrefix();
+
+    // Whether imageData is an embedded base64 image rather than a URL
+    default boolean isInlineImage(String imageData) {
+        return imageData != null && !imageData.isEmpty()
+                && !imageData.startsWith("http") && !isOwnedUrl(imageData);
+    }
+
+    // Upload a base64 image (optionally a data: URL) without copying or fully decoding it first
+    default String uploadImage(String base64Data) {
+        if (!isEnabled()) {
+            return null;
+        }
+        return uploadImage(ImageEncoding.decodeBase64(base64Data), ImageEncoding.contentTypeOf(base64Data));
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.event.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Compares each event's availableTickets with capacity minus the tickets held by confirmed bookings,
+ * and reports or corrects the drift left behind by lost or duplicated ticket updates.
+ *
+ * The catalog is split across a fork-join pool; each leaf aggregates the booked tickets for a slice
+ * of event IDs (hot and archived bookings) and compares them with the events in that slice.
+ * Corrections are only applied to drift that is unchanged after a settle delay, and only while no
+ * ticket update is known to be on its way: the ticket bus must be empty and every Booking Service
+ * replica must report (ticket_update_backlog) that it has nothing spooled, batched or queued. A return
+ * still in flight would otherwise be credited a second time when it lands. Because of the delay a
+ * correcting run happens in the background and reports its progress; a dry run answers directly.
+ */
+@Service
+public class InventoryReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryReconciliationService.class);
+
+    // Undelivered ticket updates per booking replica, written by the Booking Service
+    private static final String BACKLOG_COLLECTION = "ticket_update_backlog";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private EventService eventService;
+
+    @Value("${event.inventory.reconcile.parallelism:4}")
+    private int parallelism;
+
+    @Value("${event.inventory.reconcile.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${event.inventory.reconcile.settle-ms:30000}")
+    private long settleMs;
+
+    @Value("${event.inventory.reconcile.auto-correct:false}")
+    private boolean autoCorrect;
+
+    // How long to wait for every live booking replica to report its backlog after the second look
+    @Value("${event.inventory.reconcile.backlog-wait-ms:10000}")
+    private long backlogWaitMs;
+
+    // A replica that has not reported for this long is gone, unless it still had updates to deliver
+    @Value("${event.inventory.reconcile.replica-timeout-ms:60000}")
+    private long replicaTimeoutMs;
+
+    // Undelivered updates reported by a replica that went away are waited for this long (its spool is replayed on restart)
+    @Value("${event.inventory.reconcile.backlog-max-age-ms:86400000}")
+    private long backlogMaxAgeMs;
+
+    @Autowired
+    private TicketUpdateBus ticketUpdateBus;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastReport;
+    private volatile String phase;
+    private volatile boolean currentDryRun;
+    private volatile Instant startedAt;
+    private volatile int checkedEvents;
+    private volatile int driftingEvents;
+
+    // Inventory of one event as checked
+    private record Check(int eventId, Integer capacity, int bookedTickets, int availableTickets) {
+
+        Integer expectedAvailable() {
+            return capacity != null ? capacity - bookedTickets : null;
+        }
+
+        boolean drifting() {
+            return capacity == null || expectedAvailable() != availableTickets;
+        }
+    }
+
+    // Reconcile a slice of event IDs, splitting it until it is small enough for one aggregation
+    private class ReconcileTask extends RecursiveTask<List<Check>> {
+
+        private final List<Integer> eventIds;
+
+        ReconcileTask(List<Integer> eventIds) {
+            this.eventIds = eventIds;
+        }
+
+        @Override
+        protected List<Check> compute() {
+            if (eventIds.size() <= chunkSize) {
+                return check(eventIds);
+            }
+            int middle = eventIds.size() / 2;
+            ReconcileTask left = new ReconcileTask(eventIds.subList(0, middle));
+            ReconcileTask right = new ReconcileTask(eventIds.subList(middle, eventIds.size()));
+            left.fork();
+            List<Check> checks = new ArrayList<>(right.compute());
+            checks.addAll(left.join());
+            return checks;
+        }
+    }
+
+    @Scheduled(cron = "${event.inventory.reconcile.cron:-}")
+    public void scheduledReconcile() {
+        if (autoCorrect) {
+            start();
+        } else {
+            reconcile(true);
+        }
+    }
+
+    /**
+     * Run a dry-run reconciliation: only report drift, change nothing.
+     * @return the drift report, or null if a reconciliation is already running
+     */
+    public Map<String, Object> reconcile() {
+        return reconcile(true);
+    }
+
+    /**
+     * Start a correcting reconciliation in the background; progress and the final report are
+     * available from getProgress and getLastReport.
+     * @return false if a reconciliation is already running
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        begin(false);
+        Thread worker = new Thread(() -> {
+            try {
+                run(false);
+            } catch (Exception e) {
+                logger.error("Inventory reconciliation failed", e);
+            } finally {
+                phase = "done";
+                running.set(false);
+            }
+        }, "inventory-reconcile");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("running", running.get());
+        progress.put("dryRun", currentDryRun);
+        progress.put("phase", phase);
+        progress.put("startedAt", startedAt != null ? startedAt.toString() : null);
+        progress.put("checkedEvents", checkedEvents);
+        progress.put("driftingEvents", driftingEvents);
+        return progress;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    private Map<String, Object> reconcile(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            return null;
+        }
+        begin(dryRun);
+        try {
+            return run(dryRun);
+        } finally {
+            phase = "done";
+            running.set(false);
+        }
+    }
+
+    private void begin(boolean dryRun) {
+        currentDryRun = dryRun;
+        startedAt = Instant.now();
+        phase = "checking";
+        checkedEvents = 0;
+        driftingEvents = 0;
+    }
+
+    private Map<String, Object> run(boolean dryRun) {
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            List<Check> checks = pool.invoke(new ReconcileTask(allEventIds()));
+
+            List<Check> drifting = checks.stream().filter(Check::drifting).toList();
+            checkedEvents = checks.size();
+            driftingEvents = drifting.size();
+            Map<Integer, Check> settled = new HashMap<>();
+            String pendingUpdates = null;
+            if (!dryRun && !drifting.isEmpty()) {
+                // Look again after in-flight ticket updates have had time to land
+                phase = "settling";
+                Thread.sleep(settleMs);
+                Date secondLook = new Date();
+                for (Check check : pool.invoke(new ReconcileTask(drifting.stream().map(Check::eventId).toList()))) {
+                    settled.put(check.eventId(), check);
+                }
+                phase = "awaiting-backlog";
+                pendingUpdates = pendingTicketUpdates(secondLook);
+                if (pendingUpdates != null) {
+                    logger.info("Inventory corrections skipped: {}", pendingUpdates);
+                }
+                phase = "correcting";
+            }
+
+            List<Map<String, Object>> drift = new ArrayList<>();
+            int corrected = 0;
+            for (Check check : drifting) {
+                String action = dryRun ? "reported"
+                        : pendingUpdates != null ? "skipped-updates-pending" : act(check, settled.get(check.eventId()));
+                if (action.equals("corrected") || action.equals("capacity-initialised")) {
+                    corrected++;
+                }
+                drift.add(entry(check, action));
+            }
+
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("dryRun", dryRun);
+            report.put("startedAt", startedAt.toString());
+            report.put("durationMs", Instant.now().toEpochMilli() - startedAt.toEpochMilli());
+            report.put("checkedEvents", checks.size());
+            report.put("driftingEvents", drifting.size());
+            report.put("corrected", corrected);
+            if (pendingUpdates != null) {
+                report.put("skippedBecause", pendingUpdates);
+            }
+            report.put("drift", drift);
+            lastReport = report;
+
+            logger.info("Inventory reconciliation ({}): {} events checked, {} drifting, {} corrected",
+                    dryRun ? "dry run" : "correcting", checks.size(), drifting.size(), corrected);
+            return report;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Inventory reconciliation interrupted");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public Map<String, Object> getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Why corrections must wait, or null once no ticket update is known to be on its way. Booking replicas
+     * report every few seconds, so reports taken after the second look are waited for: a return queued
+     * for a booking that was already cancelled at that look shows up in them.
+     */
+    private String pendingTicketUpdates(Date secondLook) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + backlogWaitMs;
+        while (true) {
+            long now = System.currentTimeMillis();
+            Query recent = new Query(Criteria.where("updatedAt").gt(new Date(now - backlogMaxAgeMs)));
+            boolean awaitingReport = false;
+            for (Document report : mongoTemplate.find(recent, Document.class, BACKLOG_COLLECTION)) {
+                Object pending = report.get("pending");
+                if (pending instanceof Number number && number.longValue() > 0) {
+                    return number.longValue() + " ticket updates are undelivered on booking replica " + report.get("_id");
+                }
+                Date updatedAt = report.getDate("updatedAt");
+                if (updatedAt.before(secondLook) && updatedAt.after(new Date(now - replicaTimeoutMs))) {
+                    awaitingReport = true;
+                }
+            }
+            if (!awaitingReport) {
+                break;
+            }
+            if (now > deadline) {
+                return "booking replicas have not reported their ticket update backlog";
+            }
+            Thread.sleep(500);
+        }
+
+        // Checked last: what the replicas handed over before reporting may still be on the bus
+        long onBus = ticketUpdateBus.getPendingCount();
+        if (onBus != 0) {
+            return onBus < 0 ? "the " + ticketUpdateBus.getName() + " ticket bus backlog is unknown"
+                    : onBus + " ticket updates are queued on the " + ticketUpdateBus.getName() + " ticket bus";
+        }
+        return null;
+    }
+
+    // Apply a correction only if the second look agrees with the first
+    private String act(Check first, Check second) {
+        if (second == null || !second.equals(first)) {
+            return "skipped-unstable";
+        }
+        if (first.capacity() == null) {
+            // Assume the current availability is right and derive the capacity from it
+            int capacity = first.availableTickets() + first.bookedTickets();
+            return eventService.initialiseCapacity(first.eventId(), capacity) ? "capacity-initialised" : "skipped-concurrent-change";
+        }
+        return eventService.correctAvailableTickets(first.eventId(), first.availableTickets(), first.expectedAvailable())
+                ? "corrected" : "skipped-concurrent-change";
+    }
+
+    private static Map<String, Object> entry(Check check, String action) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("eventId", check.eventId());
+        entry.put("capacity", check.capacity());
+        entry.put("bookedTickets", check.bookedTickets());
+        entry.put("availableTickets", check.availableTickets());
+        entry.put("expectedAvailable", check.expectedAvailable());
+        entry.put("drift", check.expectedAvailable() != null ? check.availableTickets() - check.expectedAvailable() : null);
+        entry.put("action", action);
+        return entry;
+    }
+
+    private List<Integer> allEventIds() {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id"));
+        query.fields().include("_id");
+        List<Integer> ids = new ArrayList<>();
+        for (Document event : mongoTemplate.find(query, Document.class, "events")) {
+            ids.add(((Number) event.get("_id")).intValue());
+        }
+        return ids;
+    }
+
+    // Booked tickets (hot and archived bookings still holding tickets) compared with the events in one slice
+    private List<Check> check(List<Integer> eventIds) {
+        Document match = new Document("$match", new Document("eventId", new Document("$in", eventIds))
+                .append("status", new Document("$in", List.of("CONFIRMED", "PENDING"))));
+        List<Document> pipeline = List.of(
+                match,
+                new Document("$unionWith", new Document("coll", "bookings_archive").append("pipeline", List.of(match))),
+                new Document("$group", new Document("_id", "$eventId")
+                        .append("tickets", new Document("$sum", "$ticketsBooked"))));
+
+        Map<Integer, Integer> booked = new HashMap<>();
+        for (Document group : mongoTemplate.getCollection("bookings").aggregate(pipeline)) {
+            booked.put(((Number) group.get("_id")).intValue(), ((Number) group.get("tickets")).intValue());
+        }
+
+        Query query = new Query(Criteria.where("_id").in(eventIds));
+        query.fields().include("availableTickets", "capacity");
+        List<Check> checks = new ArrayList<>(eventIds.size());
+        for (Document event : mongoTemplate.find(query, Document.class, "events")) {
+            int eventId = ((Number) event.get("_id")).intValue();
+            Object capacity = event.get("capacity");
+            checks.add(new Check(eventId,
+                    capacity instanceof Number number ? number.intValue() : null,
+                    booked.getOrDefault(eventId, 0),
+                    ((Number) event.get("availableTickets")).intValue()));
+        }
+        return checks;
+    }
+}
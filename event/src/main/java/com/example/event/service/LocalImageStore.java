@@ -0,0 +1,188 @@
+package com.example.event.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Content-addressed image store on local disk for deployments outside AWS.
+ * Files live at {root}/{aa}/{bb}/{sha256}{ext} and are served by ImageController.
+ * Identical images share one file, so files are removed by LocalImageSweepService once no event
+ * refers to them rather than when a single event lets go of one.
+ */
+@Service
+public class LocalImageStore implements ImageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalImageStore.class);
+
+    // Only names we generated ourselves can be resolved to files
+    private static final Pattern FILE_NAME = Pattern.compile("^[0-9a-f]{64}\\.(jpg|png|gif|webp)$");
+
+    private final Path root;
+    private final String publicBaseUrl;
+
+    public LocalImageStore(
+            @Value("${event.images.local-dir:#{null}}") String localDir,
+            @Value("${event.images.public-base-url:/event/api/public/images}") String publicBaseUrl) {
+        this.root = localDir != null && !localDir.isEmpty() ? Paths.get(localDir).toAbsolutePath() : null;
+        this.publicBaseUrl = publicBaseUrl;
+
+        if (root != null) {
+            logger.info("Local image store initialized at: {}", root);
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return root != null;
+    }
+
+    @Override
+    public String uploadImage(InputStream data, String contentType) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        Path temp = null;
+        try {
+            Files.createDirectories(root.resolve("tmp"));
+            temp = Files.createTempFile(root.resolve("tmp"), "upload-", ".part");
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                data.transferTo(out);
+            }
+
+            String fileName = HexFormat.of().formatHex(digest.digest()) + ImageEncoding.getExtension(contentType);
+            Path target = resolve(fileName);
+            if (Files.exists(target)) {
+                // Same content already stored; reuse it, and mark it as fresh so a sweep running before
+                // the caller saves the URL does not take it
+                Files.delete(temp);
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            String url = publicBaseUrl + "/" + fileName;
+            logger.info("Image stored locally: {}", url);
+            return url;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            logger.error("Failed to store image locally", e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException ignored) {
+                    // Best effort cleanup
+                }
+            }
+            return null;
+        }
+    }
+
+    // Paths are derived from content, so the key hint is not needed
+    @Override
+    public String uploadImage(InputStream data, String contentType, String key) {
+        return uploadImage(data, contentType);
+    }
+
+    @Override
+    public byte[] downloadImage(String imageUrl) {
+        Path file = fileForUrl(imageUrl);
+        try {
+            return file != null && Files.exists(file) ? Files.readAllBytes(file) : null;
+        } catch (IOException e) {
+            logger.error("Failed to read local image: {}", imageUrl, e);
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isOwnedUrl(String imageUrl) {
+        return isEnabled() && imageUrl != null && imageUrl.startsWith(getUrlPrefix());
+    }
+
+    @Override
+    public String keyForUrl(String imageUrl) {
+        return imageUrl.substring(publicBaseUrl.length() + 1);
+    }
+
+    // Identical images share one file, so it is left for the sweep, which knows whether other events use it
+    @Override
+    public void deleteImage(String imageUrl) {
+        if (isOwnedUrl(imageUrl)) {
+            logger.debug("Leaving shared content-addressed image for the sweep: {}", imageUrl);
+        }
+    }
+
+    /**
+     * Delete stored files whose names are not referenced and that were last written before the cutoff,
+     * plus abandoned upload parts. The cutoff keeps files that were just stored but are not saved on an
+     * event yet.
+     * @return the number of files deleted
+     */
+    public int sweep(Set<String> referenced, Instant cutoff) throws IOException {
+        if (!isEnabled() || !Files.isDirectory(root)) {
+            return 0;
+        }
+        FileTime before = FileTime.from(cutoff);
+        Path uploads = root.resolve("tmp");
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+
+        int deleted = 0;
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            boolean unused = file.startsWith(uploads)
+                    ? fileName.endsWith(".part")
+                    : FILE_NAME.matcher(fileName).matches() && !referenced.contains(fileName);
+            try {
+                if (unused && Files.getLastModifiedTime(file).compareTo(before) < 0 && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to sweep local image {}: {}", file, e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public String getUrlPrefix() {
+        return publicBaseUrl + "/";
+    }
+
+    // Resolve a served file name to its path, or null if it is not a valid name
+    public Path resolve(String fileName) {
+        if (!isEnabled() || !FILE_NAME.matcher(fileName).matches()) {
+            return null;
+        }
+        return root.resolve(fileName.substring(0, 2)).resolve(fileName.substring(2, 4)).resolve(fileName);
+    }
+
+    private Path fileForUrl(String imageUrl) {
+        return isOwnedUrl(imageUrl) ? resolve(keyForUrl(imageUrl)) : null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.event.service;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Removes content-addressed files from the local image store once no event refers to them.
+ * Deleting or replacing an event image leaves its file in place, since other events may share it;
+ * this sweep collects the file names every event still uses and deletes the rest. Files written
+ * within the grace period are kept, because an upload is stored before its URL is saved on an event.
+ */
+@Service
+public class LocalImageSweepService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalImageSweepService.class);
+
+    // Event fields that can hold an image URL
+    private static final String[] IMAGE_FIELDS = { "imageData", "thumbnailUrl", "mediumImageUrl" };
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private LocalImageStore localImageStore;
+
+    @Value("${event.images.local-sweep.grace-ms:3600000}")
+    private long graceMs;
+
+    @Scheduled(initialDelayString = "${event.images.local-sweep.initial-delay-ms:600000}",
+            fixedDelayString = "${event.images.local-sweep.interval-ms:3600000}")
+    public void scheduledSweep() {
+        if (localImageStore.isEnabled()) {
+            sweep();
+        }
+    }
+
+    // Delete unreferenced files; returns how many were removed
+    public int sweep() {
+        try {
+            // Take the cutoff first: a file written after it is kept even if its event was read too early
+            Instant cutoff = Instant.now().minusMillis(graceMs);
+            int deleted = localImageStore.sweep(referencedFiles(), cutoff);
+            if (deleted > 0) {
+                logger.info("Removed {} unreferenced local images", deleted);
+            }
+            return deleted;
+        } catch (Exception e) {
+            logger.warn("Local image sweep failed: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    // File names of the local images any event uses. One query per field, matched on the URL prefix,
+    // so inline base64 images are never loaded
+    private Set<String> referencedFiles() {
+        String prefix = "^" + Pattern.quote(localImageStore.getUrlPrefix());
+        Set<String> referenced = new HashSet<>();
+        for (String field : IMAGE_FIELDS) {
+            Query query = new Query(Criteria.where(field).regex(prefix));
+            query.fields().include(field);
+            for (Document event : mongoTemplate.find(query, Document.class, "events")) {
+                referenced.add(localImageStore.keyForUrl(event.getString(field)));
+            }
+        }
+        return referenced;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.event.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.mongodb.CursorType;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+
+/**
+ * Ticket updates from a MongoDB capped collection written by the Booking Service. A tailable cursor
+ * follows the collection and each document is claimed (claimed false to true) before it is handled,
+ * so several Event Service instances can share the queue and each update is applied once.
+ * An update whose handler fails is appended again at the tail to be retried.
+ */
+public class MongoTicketUpdateBus implements TicketUpdateBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoTicketUpdateBus.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final String collectionName;
+    private final long sizeBytes;
+
+    private volatile boolean running = true;
+
+    public MongoTicketUpdateBus(MongoTemplate mongoTemplate, String collectionName, long sizeBytes) {
+        this.mongoTemplate = mongoTemplate;
+        this.collectionName = collectionName;
+        this.sizeBytes = sizeBytes;
+    }
+
+    @Override
+    public String getName() {
+        return "mongo";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void subscribe(Consumer<TicketUpdate> handler) {
+        Thread tailer = new Thread(() -> tail(handler), "ticket-bus-mongo");
+        tailer.setDaemon(true);
+        tailer.start();
+    }
+
+    private void tail(Consumer<TicketUpdate> handler) {
+        ObjectId lastSeen = null;
+        while (running) {
+            try {
+                MongoCollection<Document> collection = collection();
+                Bson filter = lastSeen == null
+                        ? Filters.eq("claimed", false)
+                        : Filters.and(Filters.gt("_id", lastSeen), Filters.eq("claimed", false));
+
+                // A tailable cursor dies when the collection is empty or its position is overwritten; reopen after the last document seen
+                try (MongoCursor<Document> cursor = collection.find(filter)
+                        .cursorType(CursorType.TailableAwait)
+                        .maxAwaitTime(1, TimeUnit.SECONDS)
+                        .iterator()) {
+                    while (running) {
+                        Document document = cursor.tryNext();
+                        if (document == null) {
+                            if (cursor.getServerCursor() == null) {
+                                break;
+                            }
+                            continue;
+                        }
+                        lastSeen = document.getObjectId("_id");
+                        if (claim(collection, lastSeen)) {
+                            handle(collection, handler, document);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                if (running) {
+                    logger.warn("Tailable cursor on {} failed: {}", collectionName, e.getMessage());
+                }
+            }
+            pause(200);
+        }
+    }
+
+    private boolean claim(MongoCollection<Document> collection, ObjectId id) {
+        return collection.updateOne(Filters.and(Filters.eq("_id", id), Filters.eq("claimed", false)),
+                Updates.set("claimed", true)).getModifiedCount() == 1;
+    }
+
+    private void handle(MongoCollection<Document> collection, Consumer<TicketUpdate> handler, Document document) {
+        TicketUpdate update = new TicketUpdate(document.getInteger("eventId"), document.getInteger("ticketChange"),
+                document.getLong("timestamp"));
+        try {
+            handler.accept(update);
+        } catch (Exception e) {
+            logger.error("Error processing ticket update {} from {}, requeueing it", document.getObjectId("_id"), collectionName, e);
+            pause(1000);
+            collection.insertOne(new Document("eventId", update.eventId())
+                    .append("ticketChange", update.ticketChange())
+                    .append("timestamp", update.timestamp())
+                    .append("claimed", false));
+        }
+    }
+
+    // Updates no instance has claimed yet
+    @Override
+    public long getPendingCount() {
+        try {
+            return collection().countDocuments(Filters.eq("claimed", false));
+        } catch (Exception e) {
+            logger.warn("Failed to count pending ticket updates in {}: {}", collectionName, e.getMessage());
+            return -1;
+        }
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    // Whichever service starts first creates the capped collection; a tailable cursor needs one
+    private MongoCollection<Document> collection() {
+        if (!mongoTemplate.collectionExists(collectionName)) {
+            try {
+                mongoTemplate.getDb().createCollection(collectionName,
+                        new CreateCollectionOptions().capped(true).sizeInBytes(sizeBytes));
+                logger.info("Created capped collection {} ({} bytes) for ticket updates", collectionName, sizeBytes);
+            } catch (Exception e) {
+                logger.debug("Capped collection {} not created: {}", collectionName, e.getMessage());
+            }
+        }
+        return mongoTemplate.getCollection(collectionName);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+    }
+}
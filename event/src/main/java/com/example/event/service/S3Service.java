@@ -1,7 +1,12 @@
 package com.example.event.service;
 
-import java.util.Base64;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,29 +14,48 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
-import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import jakarta.annotation.PreDestroy;
 
 @Service
-public class S3Service {
+public class S3Service implements ImageStore {
 
     private static final Logger logger = LoggerFactory.getLogger(S3Service.class);
 
-    private final S3Client s3Client;
+    // S3 rejects multipart parts smaller than 5 MB (except the last one)
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    private final S3AsyncClient s3Client;
     private final String bucketName;
     private final String region;
+    private final int partSize;
+    private final int maxPartsInFlight;
 
     public S3Service(
             @Value("${aws.s3.bucket-name:#{null}}") String bucketName,
-            @Value("${aws.s3.region:eu-west-2}") String region) {
+            @Value("${aws.s3.region:eu-west-2}") String region,
+            @Value("${aws.s3.part-size-bytes:8388608}") int partSize,
+            @Value("${aws.s3.max-parts-in-flight:2}") int maxPartsInFlight) {
         this.bucketName = bucketName;
         this.region = region;
+        this.partSize = Math.max(MIN_PART_SIZE, partSize);
+        this.maxPartsInFlight = Math.max(1, maxPartsInFlight);
 
         if (bucketName != null && !bucketName.isEmpty()) {
-            this.s3Client = S3Client.builder()
+            this.s3Client = S3AsyncClient.builder()
                     .region(Region.of(region))
                     .credentialsProvider(DefaultCredentialsProvider.create())
                     .build();
@@ -42,81 +66,171 @@ public class S3Service {
         }
     }
 
+    @Override
     public boolean isEnabled() {
         return s3Client != null && bucketName != null;
     }
 
-    public String uploadImage(String base64Data) {
+    // Stream an image to S3 under a new random key
+    @Override
+    public String uploadImage(InputStream data, String contentType) {
+        return uploadImage(data, contentType, "events/" + UUID.randomUUID() + ImageEncoding.getExtension(contentType));
+    }
+
+    /**
+     * Stream an image to S3 under the given key. Small images go up in a single PUT; anything larger
+     * than one part switches to a multipart upload with at most maxPartsInFlight parts buffered.
+     * @return the public URL of the uploaded object, or null if the upload failed
+     */
+    @Override
+    public String uploadImage(InputStream data, String contentType, String key) {
         if (!isEnabled()) {
             return null;
         }
 
         try {
-            String contentType = "image/jpeg";
-            String rawBase64 = base64Data;
-
-            if (base64Data.contains(",")) {
-                String header = base64Data.substring(0, base64Data.indexOf(","));
-                if (header.contains("png")) {
-                    contentType = "image/png";
-                } else if (header.contains("gif")) {
-                    contentType = "image/gif";
-                } else if (header.contains("webp")) {
-                    contentType = "image/webp";
-                }
-                rawBase64 = base64Data.substring(base64Data.indexOf(",") + 1);
+            byte[] firstPart = readPart(data);
+            if (firstPart.length < partSize) {
+                PutObjectRequest putRequest = PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .build();
+                s3Client.putObject(putRequest, AsyncRequestBody.fromBytes(firstPart)).join();
+            } else {
+                uploadMultipart(key, contentType, firstPart, data);
+            }
+
+            String url = getUrlPrefix() + key;
+            logger.info("Image uploaded to S3: {}", url);
+            return url;
+
+        } catch (Exception e) {
+            logger.error("Failed to upload image to S3", e);
+            return null;
+        }
+    }
+
+    private void uploadMultipart(String key, String contentType, byte[] firstPart, InputStream data) throws IOException {
+        String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .build()).join().uploadId();
+
+        Semaphore inFlight = new Semaphore(maxPartsInFlight);
+        List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        try {
+            byte[] part = firstPart;
+            int partNumber = 1;
+            while (part.length > 0) {
+                inFlight.acquireUninterruptibly();
+                parts.add(uploadPart(key, uploadId, partNumber++, part)
+                        .whenComplete((result, error) -> inFlight.release()));
+                part = part.length < partSize ? new byte[0] : readPart(data);
             }
 
-            byte[] imageBytes = Base64.getDecoder().decode(rawBase64);
-            String key = "events/" + UUID.randomUUID() + getExtension(contentType);
+            List<CompletedPart> completed = new ArrayList<>(parts.size());
+            for (CompletableFuture<CompletedPart> future : parts) {
+                completed.add(future.join());
+            }
 
-            PutObjectRequest putRequest = PutObjectRequest.builder()
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
                     .bucket(bucketName)
                     .key(key)
-                    .contentType(contentType)
-                    .build();
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completed).build())
+                    .build()).join();
+            logger.info("Multipart upload completed for {} in {} parts", key, completed.size());
+        } catch (RuntimeException | IOException e) {
+            parts.forEach(future -> future.cancel(true));
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+            throw e;
+        }
+    }
 
-            s3Client.putObject(putRequest, RequestBody.fromBytes(imageBytes));
+    private CompletableFuture<CompletedPart> uploadPart(String key, String uploadId, int partNumber, byte[] bytes) {
+        UploadPartRequest request = UploadPartRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .build();
+        return s3Client.uploadPart(request, AsyncRequestBody.fromBytes(bytes))
+                .thenApply(response -> CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(response.eTag())
+                        .build());
+    }
 
-            String url = String.format("https://%s.s3.%s.amazonaws.com/%s", bucketName, region, key);
-            logger.info("Image uploaded to S3: {}", url);
-            return url;
+    // Read up to one part from the stream; a short read means the stream is exhausted
+    private byte[] readPart(InputStream data) throws IOException {
+        return data.readNBytes(partSize);
+    }
 
-        } catch (Exception e) {
-            logger.error("Failed to upload image to S3", e);
+    // Download an image previously uploaded to our bucket
+    @Override
+    public byte[] downloadImage(String imageUrl) {
+        if (!isOwnedUrl(imageUrl)) {
             return null;
         }
+
+        GetObjectRequest getRequest = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyForUrl(imageUrl))
+                .build();
+        return s3Client.getObject(getRequest, AsyncResponseTransformer.toBytes()).join().asByteArray();
     }
 
+    @Override
+    public boolean isOwnedUrl(String imageUrl) {
+        return isEnabled() && imageUrl != null && imageUrl.contains(bucketName);
+    }
+
+    // Object key of a URL produced by uploadImage
+    @Override
+    public String keyForUrl(String imageUrl) {
+        String key = imageUrl.substring(imageUrl.indexOf(bucketName) + bucketName.length() + 1);
+        if (key.startsWith("/")) {
+            key = key.substring(1);
+        }
+        return key;
+    }
+
+    @Override
     public void deleteImage(String imageUrl) {
-        if (!isEnabled() || imageUrl == null || !imageUrl.contains(bucketName)) {
+        if (!isOwnedUrl(imageUrl)) {
             return;
         }
 
         try {
-            String key = imageUrl.substring(imageUrl.indexOf(bucketName) + bucketName.length() + 1);
-            if (key.startsWith("/")) {
-                key = key.substring(1);
-            }
+            String key = keyForUrl(imageUrl);
 
             DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
                     .bucket(bucketName)
                     .key(key)
                     .build();
 
-            s3Client.deleteObject(deleteRequest);
+            s3Client.deleteObject(deleteRequest).join();
             logger.info("Image deleted from S3: {}", key);
         } catch (Exception e) {
             logger.error("Failed to delete image from S3", e);
         }
     }
 
-    private String getExtension(String contentType) {
-        return switch (contentType) {
-            case "image/png" -> ".png";
-            case "image/gif" -> ".gif";
-            case "image/webp" -> ".webp";
-            default -> ".jpg";
-        };
+    @Override
+    public String getUrlPrefix() {
+        return String.format("https://%s.s3.%s.amazonaws.com/", bucketName, region);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (s3Client != null) {
+            s3Client.close();
+        }
     }
 }
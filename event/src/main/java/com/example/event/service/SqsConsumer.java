@@ -1,36 +1,107 @@
 package com.example.event.service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.sqs.SqsClient;
 import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
 import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
 
+/**
+ * Consumes ticket updates from SQS with a variable number of long-pollers feeding a worker pool.
+ *
+ * Concurrency is adjusted by an AIMD controller: every interval it samples ApproximateNumberOfMessages
+ * and the mean processing time since the last sample. A backlog beyond what the current workers can
+ * take adds workers a step at a time; processing slower than the target latency (the database is the
+ * bottleneck, more workers would only queue up there) or an idle queue cuts them by a factor. Pollers
+ * follow the worker count, so an idle service is down to a single long-poller.
+ */
 @Service
-public class SqsConsumer {
+public class SqsConsumer implements TicketUpdateBus {
 
     private static final Logger logger = LoggerFactory.getLogger(SqsConsumer.class);
 
     private final SqsClient sqsClient;
     private final String queueUrl;
-    private final EventService eventService;
+    private volatile Consumer<TicketUpdate> handler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${event.sqs.consumer.min-pollers:1}")
+    private int minPollers;
+
+    @Value("${event.sqs.consumer.max-pollers:4}")
+    private int maxPollers;
+
+    @Value("${event.sqs.consumer.min-workers:1}")
+    private int minWorkers;
+
+    @Value("${event.sqs.consumer.max-workers:16}")
+    private int maxWorkers;
+
+    // One poller per this many workers (a receive returns at most 10 messages)
+    @Value("${event.sqs.consumer.workers-per-poller:4}")
+    private int workersPerPoller;
+
+    // Additive increase when the backlog outgrows the workers
+    @Value("${event.sqs.consumer.increase-step:2}")
+    private int increaseStep;
+
+    // Multiplicative decrease when processing is slow or the queue is idle
+    @Value("${event.sqs.consumer.decrease-factor:0.5}")
+    private double decreaseFactor;
+
+    // Queued messages per worker tolerated before adding workers
+    @Value("${event.sqs.consumer.backlog-per-worker:10}")
+    private int backlogPerWorker;
+
+    @Value("${event.sqs.consumer.target-latency-ms:500}")
+    private long targetLatencyMs;
+
+    @Value("${event.sqs.consumer.wait-seconds:20}")
+    private int waitSeconds;
+
+    private volatile boolean running = true;
+    private volatile int pollerCount;
+    private volatile int workerCount;
+    private volatile long queueDepth = -1;
+    private Thread[] pollers;
+    private ThreadPoolExecutor workers;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder processedNanos = new LongAdder();
+    private Timer processingTimer;
 
     public SqsConsumer(
             @Value("${aws.sqs.queue-url:#{null}}") String queueUrl,
-            @Value("${aws.sqs.region:eu-west-2}") String region,
-            EventService eventService) {
+            @Value("${aws.sqs.region:eu-west-2}") String region) {
         this.queueUrl = queueUrl;
-        this.eventService = eventService;
 
         if (queueUrl != null && !queueUrl.isEmpty()) {
             this.sqsClient = SqsClient.builder()
@@ -44,48 +115,203 @@ public class SqsConsumer {
         }
     }
 
-    @Scheduled(fixedDelay = 5000)
-    public void pollMessages() {
-        if (sqsClient == null || queueUrl == null) {
+    @Override
+    public String getName() {
+        return "sqs";
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return sqsClient != null && queueUrl != null;
+    }
+
+    // Polling starts once something subscribes, so an unselected SQS bus stays idle
+    @Override
+    public synchronized void subscribe(Consumer<TicketUpdate> handler) {
+        if (!isEnabled() || this.handler != null) {
             return;
         }
+        this.handler = handler;
 
-        try {
-            ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
-                    .queueUrl(queueUrl)
-                    .maxNumberOfMessages(10)
-                    .waitTimeSeconds(5)
-                    .build();
+        workerCount = minWorkers;
+        pollerCount = pollersFor(workerCount);
+        AtomicInteger workerIds = new AtomicInteger();
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "sqs-worker-" + workerIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pollers = new Thread[Math.max(1, maxPollers)];
 
-            List<Message> messages = sqsClient.receiveMessage(receiveRequest).messages();
+        Gauge.builder("event.sqs.consumer.pollers", this, consumer -> consumer.pollerCount)
+                .description("Long-pollers receiving from the ticket update queue")
+                .register(meterRegistry);
+        Gauge.builder("event.sqs.consumer.workers", this, consumer -> consumer.workerCount)
+                .description("Workers applying ticket updates")
+                .register(meterRegistry);
+        Gauge.builder("event.sqs.queue.depth", this, consumer -> consumer.queueDepth)
+                .description("ApproximateNumberOfMessages at the last autoscaling sample (-1 before the first)")
+                .register(meterRegistry);
+        processingTimer = Timer.builder("event.sqs.consumer.processing")
+                .description("Time to apply one ticket update from SQS")
+                .register(meterRegistry);
 
-            for (Message message : messages) {
-                try {
-                    processMessage(message);
-                    deleteMessage(message);
-                } catch (Exception e) {
-                    logger.error("Error processing SQS message: {}", message.messageId(), e);
+        startPollers();
+    }
+
+    private int pollersFor(int workers) {
+        int wanted = (workers + workersPerPoller - 1) / Math.max(1, workersPerPoller);
+        return Math.max(minPollers, Math.min(maxPollers, wanted));
+    }
+
+    // Start pollers up to the current count; surplus ones stop by themselves after their current receive
+    private synchronized void startPollers() {
+        for (int i = 0; i < pollerCount && i < pollers.length; i++) {
+            if (pollers[i] == null || !pollers[i].isAlive()) {
+                int index = i;
+                pollers[i] = new Thread(() -> poll(index), "sqs-poller-" + i);
+                pollers[i].setDaemon(true);
+                pollers[i].start();
+            }
+        }
+    }
+
+    private void poll(int index) {
+        while (running && index < pollerCount) {
+            // Leave messages in the queue (for other instances) while the workers have plenty to do
+            if (inFlight.get() >= workerCount * 2) {
+                pause(50);
+                continue;
+            }
+
+            try {
+                ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
+                        .queueUrl(queueUrl)
+                        .maxNumberOfMessages(10)
+                        .waitTimeSeconds(waitSeconds)
+                        .build();
+
+                List<Message> messages = sqsClient.receiveMessage(receiveRequest).messages();
+
+                for (Message message : messages) {
+                    inFlight.incrementAndGet();
+                    workers.execute(() -> process(message));
+                }
+            } catch (Exception e) {
+                if (running) {
+                    logger.error("Error polling SQS queue", e);
+                    pause(1000);
                 }
             }
+        }
+    }
+
+    private void process(Message message) {
+        long start = System.nanoTime();
+        try {
+            processMessage(message, handler);
+            deleteMessage(message);
         } catch (Exception e) {
-            logger.error("Error polling SQS queue", e);
+            // Left in the queue: SQS redelivers it once the visibility timeout expires
+            logger.error("Error processing SQS message: {}", message.messageId(), e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            processedCount.increment();
+            processedNanos.add(elapsed);
+            processingTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            inFlight.decrementAndGet();
         }
     }
 
-    private void processMessage(Message message) {
-        JSONObject json = new JSONObject(message.body());
-        int eventId = json.getInt("eventId");
-        int ticketChange = json.getInt("ticketChange");
+    // AIMD step: sample queue depth and processing latency, then resize workers and pollers
+    @Scheduled(fixedDelayString = "${event.sqs.consumer.autoscale-interval-ms:5000}")
+    public void autoscale() {
+        if (handler == null || !running) {
+            return;
+        }
+
+        long processed = processedCount.sumThenReset();
+        long nanos = processedNanos.sumThenReset();
+        double latencyMs = processed > 0 ? nanos / 1e6 / processed : 0;
+        try {
+            String depth = sqsClient.getQueueAttributes(GetQueueAttributesRequest.builder()
+                    .queueUrl(queueUrl)
+                    .attributeNames(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES)
+                    .build()).attributes().get(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES);
+            queueDepth = depth != null ? Long.parseLong(depth) : 0;
+        } catch (Exception e) {
+            logger.warn("Failed to read SQS queue depth: {}", e.getMessage());
+            return;
+        }
+
+        int current = workerCount;
+        int target = current;
+        if (latencyMs > targetLatencyMs) {
+            target = (int) (current * decreaseFactor);
+        } else if (queueDepth > (long) current * backlogPerWorker) {
+            target = current + increaseStep;
+        } else if (queueDepth == 0 && processed == 0) {
+            target = (int) (current * decreaseFactor);
+        }
+        target = Math.max(minWorkers, Math.min(maxWorkers, target));
+
+        if (target != current) {
+            resize(target);
+            logger.info("SQS consumer scaled from {} to {} workers ({} pollers): depth={}, latency={}ms",
+                    current, target, pollerCount, queueDepth, Math.round(latencyMs));
+        }
+    }
 
-        logger.info("Processing ticket update from SQS: eventId={}, ticketChange={}", eventId, ticketChange);
+    // Visible, in-flight (received, not deleted) and delayed messages plus those being applied here
+    @Override
+    public long getPendingCount() {
+        if (!isEnabled()) {
+            return 0;
+        }
+        try {
+            Map<QueueAttributeName, String> attributes = sqsClient.getQueueAttributes(GetQueueAttributesRequest.builder()
+                    .queueUrl(queueUrl)
+                    .attributeNames(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES,
+                            QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_NOT_VISIBLE,
+                            QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES_DELAYED)
+                    .build()).attributes();
+            long pending = inFlight.get();
+            for (String count : attributes.values()) {
+                pending += Long.parseLong(count);
+            }
+            return pending;
+        } catch (Exception e) {
+            logger.warn("Failed to read SQS queue attributes: {}", e.getMessage());
+            return -1;
+        }
+    }
 
-        if (ticketChange < 0) {
-            eventService.bookTickets(eventId, Math.abs(ticketChange));
+    private synchronized void resize(int target) {
+        // The core size must never exceed the maximum, so the order depends on the direction
+        if (target > workers.getMaximumPoolSize()) {
+            workers.setMaximumPoolSize(target);
+            workers.setCorePoolSize(target);
         } else {
-            eventService.returnTickets(eventId, ticketChange);
+            workers.setCorePoolSize(target);
+            workers.setMaximumPoolSize(target);
         }
+        workerCount = target;
+        pollerCount = pollersFor(target);
+        startPollers();
+    }
 
-        logger.info("Ticket update processed successfully for event: {}", eventId);
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private void processMessage(Message message, Consumer<TicketUpdate> handler) {
+        JSONObject json = new JSONObject(message.body());
+        handler.accept(new TicketUpdate(json.getInt("eventId"), json.getInt("ticketChange"), json.optLong("timestamp")));
     }
 
     private void deleteMessage(Message message) {
@@ -95,4 +321,13 @@ public class SqsConsumer {
                 .build();
         sqsClient.deleteMessage(deleteRequest);
     }
+
+    @Override
+    @PreDestroy
+    public void close() {
+        running = false;
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package com.example.event.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of a batch of ticket deltas for POST /api/internal/events/tickets/batch.
+ *
+ * Request (big-endian): int32 count, then count items of int64 operationId, int32 eventId, int32 delta.
+ * Response: one status byte per item, in request order (see {@link Status}).
+ * The operationId makes a delta idempotent, so a batch can be resent after a lost response
+ * (see {@link TicketOperationService}).
+ */
+public final class TicketDeltaBatch {
+
+    public static final int ITEM_BYTES = 16;
+
+    public record Delta(long operationId, int eventId, int delta) {
+    }
+
+    public enum Status {
+        APPLIED(0),           // Applied now or by an earlier attempt with the same operationId
+        NOT_ENOUGH_TICKETS(1),
+        NOT_FOUND(2),
+        INVALID(3),
+        IN_PROGRESS(4);       // Another request holds the operation; send it again later
+
+        private final byte code;
+
+        Status(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+    }
+
+    private TicketDeltaBatch() {
+    }
+
+    // @throws IllegalArgumentException if the body is malformed or holds more than maxItems deltas
+    public static List<Delta> decode(byte[] body, int maxItems) {
+        if (body == null || body.length < 4) {
+            throw new IllegalArgumentException("Batch must start with an item count");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        int count = buffer.getInt();
+        if (count < 0 || count > maxItems) {
+            throw new IllegalArgumentException("Batch must hold between 0 and " + maxItems + " deltas");
+        }
+        if (buffer.remaining() != (long) count * ITEM_BYTES) {
+            throw new IllegalArgumentException("Batch length does not match its item count");
+        }
+        List<Delta> deltas = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            deltas.add(new Delta(buffer.getLong(), buffer.getInt(), buffer.getInt()));
+        }
+        return deltas;
+    }
+
+    public static byte[] encode(Status[] statuses) {
+        byte[] body = new byte[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            body[i] = statuses[i].getCode();
+        }
+        return body;
+    }
+}
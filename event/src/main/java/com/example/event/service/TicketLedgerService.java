@@ -0,0 +1,309 @@
+package com.example.event.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Append-only ledger of every inventory movement, one entry per change to an event's availableTickets.
+ *
+ * Entries are keyed by (eventId, seq) where seq is the event's version after the movement, so the order
+ * of the ledger is the order in which the movements were applied to the event document. Snapshots of the
+ * running balance are taken periodically, and an event's availableTickets can be rebuilt by replaying the
+ * entries recorded after its latest snapshot.
+ */
+@Service
+public class TicketLedgerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketLedgerService.class);
+
+    static final String LEDGER_COLLECTION = "ticket_ledger";
+    static final String SNAPSHOT_COLLECTION = "ticket_ledger_snapshots";
+
+    // OPENING and SET fix the balance outright; the other types move it by their delta
+    public enum EntryType {
+        OPENING,    // Initial stock of a new event
+        BOOK,       // Tickets taken by a booking
+        RETURN,     // Tickets given back by a cancellation
+        ADJUST,     // Relative change by an admin or internal caller
+        SET,        // Absolute value written by an admin edit
+        RECONCILE,  // Correction applied by inventory reconciliation
+        CAPACITY    // Capacity recorded by reconciliation; the stock is unchanged (delta 0)
+    }
+
+    // Running balance after all entries up to and including seq
+    public record Balance(long seq, int balance) {
+    }
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    // Entries newer than this are left for the next snapshot, so inserts still in flight are not skipped
+    @Value("${event.ledger.snapshot.settle-ms:5000}")
+    private long settleMs;
+
+    @Value("${event.ledger.snapshot.max-entries:10000}")
+    private int maxEntriesPerSnapshot;
+
+    @PostConstruct
+    public void ensureIndexes() {
+        try {
+            mongoTemplate.indexOps(LEDGER_COLLECTION).ensureIndex(new Index()
+                    .on("eventId", Sort.Direction.ASC).on("seq", Sort.Direction.ASC).unique());
+        } catch (Exception e) {
+            logger.warn("Failed to ensure ticket ledger indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Record a movement that has already been applied to the event.
+     * Never throws: the event document stays authoritative for availability checks,
+     * and a missing entry shows up as drift in the next rebuild or reconciliation.
+     * @param delta change in available tickets, or null when only the resulting balance is known
+     */
+    public void append(int eventId, long seq, EntryType type, Integer delta, int balanceAfter) {
+        Document entry = new Document("eventId", eventId)
+                .append("seq", seq)
+                .append("type", type.name())
+                .append("delta", delta)
+                .append("balanceAfter", balanceAfter)
+                .append("at", new Date());
+        try {
+            mongoTemplate.insert(entry, LEDGER_COLLECTION);
+        } catch (DuplicateKeyException e) {
+            logger.debug("Ledger entry {} for event ID {} already recorded", seq, eventId);
+        } catch (Exception e) {
+            logger.error("Failed to record {} of {} tickets for event ID {} at seq {}", type, delta, eventId, seq, e);
+        }
+    }
+
+    /**
+     * Replay the ledger of an event up to a sequence number.
+     * @return the balance, or null if the event has neither a snapshot nor an opening entry
+     */
+    public Balance replay(int eventId, long upToSeq) {
+        Balance start = loadSnapshot(eventId);
+        if (start == null) {
+            if (!hasOpening(eventId)) {
+                return null;
+            }
+            start = new Balance(-1, 0);
+        }
+
+        Query query = new Query(Criteria.where("eventId").is(eventId).and("seq").gt(start.seq()).lte(upToSeq))
+                .with(Sort.by(Sort.Direction.ASC, "seq"));
+        Balance balance = start;
+        for (Document entry : mongoTemplate.find(query, Document.class, LEDGER_COLLECTION)) {
+            balance = apply(balance, entry);
+        }
+        return balance;
+    }
+
+    /**
+     * Entries a replay up to a sequence number would need that are not in the ledger (yet): inserts for
+     * movements already applied to the event may still be in flight, or may have failed.
+     * @return the number of missing entries, or -1 if the event has neither a snapshot nor an opening entry
+     */
+    public long missingEntries(int eventId, long upToSeq) {
+        long fromSeq;
+        Balance snapshot = loadSnapshot(eventId);
+        if (snapshot != null) {
+            fromSeq = snapshot.seq();
+        } else {
+            Document opening = mongoTemplate.findOne(new Query(Criteria.where("eventId").is(eventId)
+                    .and("type").is(EntryType.OPENING.name())), Document.class, LEDGER_COLLECTION);
+            if (opening == null) {
+                return -1;
+            }
+            fromSeq = ((Number) opening.get("seq")).longValue() - 1;
+        }
+        if (upToSeq <= fromSeq) {
+            return 0;
+        }
+        long recorded = mongoTemplate.count(new Query(Criteria.where("eventId").is(eventId)
+                .and("seq").gt(fromSeq).lte(upToSeq)), LEDGER_COLLECTION);
+        return upToSeq - fromSeq - recorded;
+    }
+
+    /**
+     * Stock an event had at an earlier version, provided every write since then was a ticket movement
+     * (bookings, returns, relative adjustments and reconciliation, including capacity it recorded;
+     * SET entries come from admin edits). Image writes do not bump the version, so they never count.
+     * @return the stock at fromSeq, or null if anything else happened in between or the ledger is incomplete
+     */
+    public Integer stockBeforeTicketMoves(int eventId, long fromSeq, long toSeq, int stockAtToSeq) {
+        if (fromSeq > toSeq) {
+            return null;
+        }
+        Query query = new Query(Criteria.where("eventId").is(eventId).and("seq").gt(fromSeq).lte(toSeq));
+        List<Document> entries = mongoTemplate.find(query, Document.class, LEDGER_COLLECTION);
+        if (entries.size() != toSeq - fromSeq) {
+            return null;
+        }
+        int stock = stockAtToSeq;
+        for (Document entry : entries) {
+            EntryType type = EntryType.valueOf(entry.getString("type"));
+            if (type == EntryType.OPENING || type == EntryType.SET || !(entry.get("delta") instanceof Number delta)) {
+                return null;
+            }
+            stock -= delta.intValue();
+        }
+        return stock;
+    }
+
+    // Entries of one event in ledger order, for the audit trail
+    public List<Map<String, Object>> getEntries(int eventId, long afterSeq, int limit) {
+        Query query = entriesAfter(eventId, afterSeq).limit(limit);
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (Document entry : mongoTemplate.find(query, Document.class, LEDGER_COLLECTION)) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("seq", entry.get("seq"));
+            item.put("type", entry.getString("type"));
+            item.put("delta", entry.get("delta"));
+            item.put("balanceAfter", entry.get("balanceAfter"));
+            Date at = entry.getDate("at");
+            item.put("at", at != null ? at.toInstant().toString() : null);
+            entries.add(item);
+        }
+        return entries;
+    }
+
+    // balanceAfter recorded on an entry, or null if there is no such entry
+    public Integer getBalanceAfter(int eventId, long seq) {
+        Document entry = mongoTemplate.findOne(new Query(Criteria.where("eventId").is(eventId).and("seq").is(seq)),
+                Document.class, LEDGER_COLLECTION);
+        return entry != null && entry.get("balanceAfter") instanceof Number balance ? balance.intValue() : null;
+    }
+
+    public Balance getSnapshot(int eventId) {
+        return loadSnapshot(eventId);
+    }
+
+    // Advance the snapshot of every event whose ledger has grown, and open ledgers for events that predate it
+    @Scheduled(fixedDelayString = "${event.ledger.snapshot.interval-ms:300000}", initialDelayString = "${event.ledger.snapshot.initial-delay-ms:30000}")
+    public void takeSnapshots() {
+        try {
+            Map<Integer, Balance> snapshots = new HashMap<>();
+            for (Document snapshot : mongoTemplate.findAll(Document.class, SNAPSHOT_COLLECTION)) {
+                snapshots.put(((Number) snapshot.get("_id")).intValue(), toBalance(snapshot));
+            }
+
+            Map<Integer, Long> latestSeq = new HashMap<>();
+            List<Document> pipeline = List.of(new Document("$group",
+                    new Document("_id", "$eventId").append("seq", new Document("$max", "$seq"))));
+            for (Document group : mongoTemplate.getCollection(LEDGER_COLLECTION).aggregate(pipeline)) {
+                latestSeq.put(((Number) group.get("_id")).intValue(), ((Number) group.get("seq")).longValue());
+            }
+
+            int opened = 0;
+            int advanced = 0;
+            Query events = new Query();
+            events.fields().include("availableTickets", "version");
+            for (Document event : mongoTemplate.find(events, Document.class, "events")) {
+                int eventId = ((Number) event.get("_id")).intValue();
+                Balance snapshot = snapshots.get(eventId);
+                if (snapshot == null && !hasOpening(eventId)) {
+                    // Event created before the ledger existed: its current state is the opening balance
+                    Object version = event.get("version");
+                    saveSnapshot(eventId, new Balance(version instanceof Number number ? number.longValue() : 0,
+                            ((Number) event.get("availableTickets")).intValue()));
+                    opened++;
+                    continue;
+                }
+                Long seq = latestSeq.get(eventId);
+                if (seq != null && (snapshot == null || seq > snapshot.seq()) && advanceSnapshot(eventId, snapshot)) {
+                    advanced++;
+                }
+            }
+            if (opened > 0 || advanced > 0) {
+                logger.info("Ticket ledger snapshots: {} opened, {} advanced", opened, advanced);
+            }
+        } catch (Exception e) {
+            logger.error("Error taking ticket ledger snapshots", e);
+        }
+    }
+
+    // Fold the settled entries after the current snapshot into a new one
+    private boolean advanceSnapshot(int eventId, Balance snapshot) {
+        Balance balance = snapshot != null ? snapshot : new Balance(-1, 0);
+        Instant cutoff = Instant.now().minusMillis(settleMs);
+        boolean moved = false;
+        for (Document entry : mongoTemplate.find(entriesAfter(eventId, balance.seq()).limit(maxEntriesPerSnapshot),
+                Document.class, LEDGER_COLLECTION)) {
+            Date at = entry.getDate("at");
+            if (at != null && at.toInstant().isAfter(cutoff)) {
+                break;
+            }
+            balance = apply(balance, entry);
+            moved = true;
+        }
+        if (moved) {
+            saveSnapshot(eventId, balance);
+        }
+        return moved;
+    }
+
+    private static Balance apply(Balance balance, Document entry) {
+        long seq = ((Number) entry.get("seq")).longValue();
+        EntryType type = EntryType.valueOf(entry.getString("type"));
+        Object delta = entry.get("delta");
+        if (type == EntryType.OPENING || type == EntryType.SET || !(delta instanceof Number)) {
+            return new Balance(seq, ((Number) entry.get("balanceAfter")).intValue());
+        }
+        return new Balance(seq, balance.balance() + ((Number) delta).intValue());
+    }
+
+    private Query entriesAfter(int eventId, long seq) {
+        return new Query(Criteria.where("eventId").is(eventId).and("seq").gt(seq))
+                .with(Sort.by(Sort.Direction.ASC, "seq"));
+    }
+
+    private boolean hasOpening(int eventId) {
+        return mongoTemplate.exists(new Query(Criteria.where("eventId").is(eventId).and("type").is(EntryType.OPENING.name())),
+                LEDGER_COLLECTION);
+    }
+
+    private Balance loadSnapshot(int eventId) {
+        Document snapshot = mongoTemplate.findById(eventId, Document.class, SNAPSHOT_COLLECTION);
+        return snapshot != null ? toBalance(snapshot) : null;
+    }
+
+    private static Balance toBalance(Document snapshot) {
+        return new Balance(((Number) snapshot.get("seq")).longValue(), ((Number) snapshot.get("balance")).intValue());
+    }
+
+    // Snapshots only move forward
+    private void saveSnapshot(int eventId, Balance balance) {
+        Query query = new Query(Criteria.where("_id").is(eventId).and("seq").lt(balance.seq()));
+        Update update = new Update()
+                .set("seq", balance.seq())
+                .set("balance", balance.balance())
+                .set("takenAt", new Date());
+        try {
+            mongoTemplate.upsert(query, update, SNAPSHOT_COLLECTION);
+        } catch (DuplicateKeyException e) {
+            // A newer snapshot already exists
+        }
+    }
+}
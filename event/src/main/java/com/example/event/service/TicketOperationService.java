@@ -0,0 +1,147 @@
+package com.example.event.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Operation IDs of batched ticket deltas (ticket_operations), so a delta that is sent again is
+ * recognised and answered with its original outcome instead of being applied twice.
+ *
+ * An operation is claimed (state PENDING) before its delta touches the event and settled with its
+ * outcome afterwards. Entries expire after a TTL that must outlast any resend, including replays of
+ * the Booking Service's local spool after an outage.
+ */
+@Service
+public class TicketOperationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketOperationService.class);
+
+    static final String OPERATIONS_COLLECTION = "ticket_operations";
+    static final String PENDING = "PENDING";
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${event.tickets.operations.ttl-seconds:604800}")
+    private long ttlSeconds;
+
+    // A PENDING claim older than this was abandoned (its request died) and may be taken over
+    @Value("${event.tickets.operations.takeover-ms:30000}")
+    private long takeoverMs;
+
+    @PostConstruct
+    public void ensureIndexes() {
+        try {
+            collection().createIndex(Indexes.ascending("at"), new IndexOptions().expireAfter(ttlSeconds, TimeUnit.SECONDS));
+        } catch (Exception e) {
+            logger.warn("Failed to ensure ticket operation indexes: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claim operations before applying them.
+     * @return the IDs claimed now, plus abandoned claims taken over; anything else has been seen before
+     */
+    public Set<Long> claim(Collection<TicketDeltaBatch.Delta> deltas) {
+        Date now = new Date();
+        List<Document> claims = new ArrayList<>();
+        for (TicketDeltaBatch.Delta delta : deltas) {
+            claims.add(new Document("_id", delta.operationId())
+                    .append("eventId", delta.eventId())
+                    .append("delta", delta.delta())
+                    .append("state", PENDING)
+                    .append("at", now));
+        }
+
+        Set<Long> claimed = new HashSet<>();
+        claims.forEach(claim -> claimed.add(claim.getLong("_id")));
+        if (claims.isEmpty()) {
+            return claimed;
+        }
+        Set<Long> seen = new HashSet<>();
+        try {
+            collection().insertMany(claims, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            for (BulkWriteError error : e.getWriteErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+                seen.add(claims.get(error.getIndex()).getLong("_id"));
+            }
+        }
+        claimed.removeAll(seen);
+
+        // Take over claims whose request died between claiming and settling; the compare-and-set on
+        // the claim time lets only one concurrent resend win
+        if (!seen.isEmpty()) {
+            Date abandoned = new Date(now.getTime() - takeoverMs);
+            for (Document operation : collection().find(Filters.and(Filters.in("_id", seen),
+                    Filters.eq("state", PENDING), Filters.lt("at", abandoned)))) {
+                long operationId = ((Number) operation.get("_id")).longValue();
+                if (collection().updateOne(Filters.and(Filters.eq("_id", operationId), Filters.eq("at", operation.get("at"))),
+                        Updates.set("at", now)).getModifiedCount() == 1) {
+                    logger.warn("Taking over abandoned ticket operation {}", operationId);
+                    claimed.add(operationId);
+                }
+            }
+        }
+        return claimed;
+    }
+
+    // Record the outcome of claimed operations (state is a TicketDeltaBatch.Status name); settled ones are left alone
+    public void settle(Map<Long, Document> outcomes) {
+        if (outcomes.isEmpty()) {
+            return;
+        }
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        for (Map.Entry<Long, Document> outcome : outcomes.entrySet()) {
+            Document fields = new Document(outcome.getValue()).append("settledAt", new Date());
+            writes.add(new UpdateOneModel<>(Filters.and(Filters.eq("_id", outcome.getKey()), Filters.eq("state", PENDING)),
+                    new Document("$set", fields)));
+        }
+        collection().bulkWrite(writes);
+    }
+
+    // Current state of each operation (a TicketDeltaBatch.Status name or PENDING); unknown IDs are left out
+    public Map<Long, String> getStates(Collection<Long> operationIds) {
+        Map<Long, String> states = new HashMap<>();
+        for (Document operation : collection().find(Filters.in("_id", operationIds))) {
+            states.put(((Number) operation.get("_id")).longValue(), operation.getString("state"));
+        }
+        return states;
+    }
+
+    private MongoCollection<Document> collection() {
+        return mongoTemplate.getCollection(OPERATIONS_COLLECTION);
+    }
+}
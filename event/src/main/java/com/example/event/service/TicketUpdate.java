@@ -0,0 +1,5 @@
+package com.example.event.service;
+
+// A change to an event's available tickets sent by the Booking Service: negative for a booking, positive for a return
+public record TicketUpdate(int eventId, int ticketChange, long timestamp) {
+}
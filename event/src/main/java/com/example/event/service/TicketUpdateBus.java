@@ -0,0 +1,26 @@
+package com.example.event.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Where ticket updates from the Booking Service arrive, besides the direct HTTP endpoint.
+ * Implementations: {@link SqsConsumer} and {@link MongoTicketUpdateBus}; the active one is chosen by ticket.bus.type.
+ */
+public interface TicketUpdateBus {
+
+    String getName();
+
+    // False when the transport is not configured; updates then only arrive over HTTP
+    boolean isEnabled();
+
+    // Deliver updates to the handler; an update whose handler throws is redelivered later
+    void subscribe(Consumer<TicketUpdate> handler);
+
+    // Updates waiting in the transport or being applied; -1 if that cannot be told right now
+    default long getPendingCount() {
+        return 0;
+    }
+
+    default void close() {
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.event.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+// Applies ticket updates arriving on the configured ticket update bus
+@Service
+public class TicketUpdateListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(TicketUpdateListener.class);
+
+    @Autowired
+    private TicketUpdateBus ticketUpdateBus;
+
+    @Autowired
+    private EventService eventService;
+
+    @PostConstruct
+    public void start() {
+        if (ticketUpdateBus.isEnabled()) {
+            ticketUpdateBus.subscribe(this::apply);
+            logger.info("Listening for ticket updates on the {} bus", ticketUpdateBus.getName());
+        }
+    }
+
+    private void apply(TicketUpdate update) {
+        int eventId = update.eventId();
+        int ticketChange = update.ticketChange();
+        logger.info("Processing ticket update from {}: eventId={}, ticketChange={}", ticketUpdateBus.getName(), eventId, ticketChange);
+
+        try {
+            if (ticketChange < 0) {
+                eventService.bookTickets(eventId, Math.abs(ticketChange));
+            } else {
+                eventService.returnTickets(eventId, ticketChange);
+            }
+        } catch (IllegalArgumentException e) {
+            // Not enough tickets or an invalid change: retrying will not help, so drop it
+            logger.error("Discarding ticket update for event {} ({}): {}", eventId, ticketChange, e.getMessage());
+            return;
+        }
+
+        logger.info("Ticket update processed successfully for event: {}", eventId);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.event.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TicketDeltaBatchTest {
+
+    private static final int MAX_ITEMS = 256;
+
+    // A batch as the Booking Service sends it; TicketDeltaBatcherTest checks that its sender produces these bytes
+    private static final byte[] BOOKING_BATCH = {
+            0, 0, 0, 2,
+            1, 2, 3, 4, 5, 6, 7, 8, 0, 0, 0, 42, -1, -1, -1, -3,
+            -128, 0, 0, 0, 0, 0, 0, 1, 127, -1, -1, -1, 0, 0, 0, 7 };
+
+    @Test
+    void decodesTheBookingServiceWireFormat() {
+        assertEquals(List.of(
+                new TicketDeltaBatch.Delta(0x0102030405060708L, 42, -3),
+                new TicketDeltaBatch.Delta(Long.MIN_VALUE + 1, Integer.MAX_VALUE, 7)),
+                TicketDeltaBatch.decode(BOOKING_BATCH, MAX_ITEMS));
+    }
+
+    @Test
+    void decodesAnEmptyBatch() {
+        assertTrue(TicketDeltaBatch.decode(new byte[4], MAX_ITEMS).isEmpty());
+    }
+
+    @Test
+    void rejectsMalformedBodies() {
+        assertThrows(IllegalArgumentException.class, () -> TicketDeltaBatch.decode(null, MAX_ITEMS));
+        assertThrows(IllegalArgumentException.class, () -> TicketDeltaBatch.decode(new byte[3], MAX_ITEMS));
+        // Truncated item, trailing bytes, and a count that does not match the items
+        assertThrows(IllegalArgumentException.class,
+                () -> TicketDeltaBatch.decode(Arrays.copyOf(BOOKING_BATCH, BOOKING_BATCH.length - 1), MAX_ITEMS));
+        assertThrows(IllegalArgumentException.class,
+                () -> TicketDeltaBatch.decode(Arrays.copyOf(BOOKING_BATCH, BOOKING_BATCH.length + 1), MAX_ITEMS));
+        byte[] wrongCount = BOOKING_BATCH.clone();
+        ByteBuffer.wrap(wrongCount).putInt(3);
+        assertThrows(IllegalArgumentException.class, () -> TicketDeltaBatch.decode(wrongCount, MAX_ITEMS));
+        byte[] negativeCount = BOOKING_BATCH.clone();
+        ByteBuffer.wrap(negativeCount).putInt(-1);
+        assertThrows(IllegalArgumentException.class, () -> TicketDeltaBatch.decode(negativeCount, MAX_ITEMS));
+    }
+
+    @Test
+    void rejectsBatchesOverTheLimit() {
+        assertEquals(2, TicketDeltaBatch.decode(BOOKING_BATCH, 2).size());
+        assertThrows(IllegalArgumentException.class, () -> TicketDeltaBatch.decode(BOOKING_BATCH, 1));
+    }
+
+    @Test
+    void encodesStatusCodesTheBookingServiceReads() {
+        // TicketDeltaBatcher maps 0 to delivered, 4 to retry later and anything else to rejected
+        assertArrayEquals(new byte[] { 0, 1, 2, 3, 4 }, TicketDeltaBatch.encode(TicketDeltaBatch.Status.values()));
+    }
+}
@@ -78,7 +78,8 @@ const EditEvent = () => {
         date: event.date || '',
         time: event.time || '',
         duration: event.duration || 0,
-        imageData: event.imageData || '' // Get image data
+        imageData: event.imageData || '', // Get image data
+        version: event.version // Lets the server tell ticket sales since loading apart from other edits
       });
 
       // Set image preview if exists
@@ -1,6 +1,6 @@
 import React, { useState, useEffect } from 'react';
 import { Link } from 'react-router-dom';
-import { getUserBookings, getAllBookings, cancelBooking, deleteBooking } from '../../services/bookingService';
+import { getUserBookings, getAllBookings, cancelBooking, deleteBooking, getUserWaitlist, leaveWaitlist } from '../../services/bookingService';
 import { getEventById } from '../../services/eventService';
 import { isAdmin } from '../../services/authService';
 
@@ -12,6 +12,7 @@ const BookingList = () => {
   const [eventDetails, setEventDetails] = useState({});
   const [isAdminUser, setIsAdminUser] = useState(false);
   const [cancelling, setCancelling] = useState(false);
+  const [waitlist, setWaitlist] = useState([]);
   
   // Load bookings on component mount
   useEffect(() => {
@@ -46,14 +47,29 @@ const BookingList = () => {
       setBookings(Array.isArray(parsedBookings) ? parsedBookings : []);
       setError(null);
       
-      // Fetch event details for each booking
+      // Waitlist entries still in the queue (regular users only)
+      let waiting = [];
+      if (!adminStatus) {
+        try {
+          const waitlistData = await getUserWaitlist();
+          const parsedWaitlist = typeof waitlistData === 'string' ? JSON.parse(waitlistData) : waitlistData;
+          waiting = (Array.isArray(parsedWaitlist) ? parsedWaitlist : []).filter((entry) => entry.status === 'WAITING');
+        } catch (err) {
+          console.error("Failed to fetch waitlist:", err);
+        }
+      }
+      setWaitlist(waiting);
+      
+      // Fetch event details for each booking and waitlist entry
       const eventDetailsMap = {};
-      for (const booking of Array.isArray(parsedBookings) ? parsedBookings : []) {
+      const items = [...(Array.isArray(parsedBookings) ? parsedBookings : []), ...waiting];
+      for (const item of items) {
+        if (eventDetailsMap[item.eventId]) continue;
         try {
-          const eventData = await getEventById(booking.eventId);
-          eventDetailsMap[booking.eventId] = eventData;
+          const eventData = await getEventById(item.eventId);
+          eventDetailsMap[item.eventId] = eventData;
         } catch (err) {
-          console.error(`Failed to fetch event ${booking.eventId}:`, err);
+          console.error(`Failed to fetch event ${item.eventId}:`, err);
         }
       }
       
@@ -100,6 +116,23 @@ const BookingList = () => {
     }
   };
   
+  // Handle leaving a waitlist
+  const handleLeaveWaitlist = async (entryId) => {
+    if (window.confirm('Are you sure you want to leave this waitlist? You will lose your place in the queue.')) {
+      setCancelling(true);
+      try {
+        await leaveWaitlist(entryId);
+        alert('You have left the waitlist');
+        // Refresh bookings and waitlist
+        fetchBookings();
+      } catch (err) {
+        alert('Failed to leave the waitlist: ' + err.message);
+      } finally {
+        setCancelling(false);
+      }
+    }
+  };
+  
   // Format the booking status with appropriate color
   const getStatusBadge = (status) => {
     let badgeClass = '';
@@ -245,6 +278,38 @@ const BookingList = () => {
               })}
             </div>
           )}
+          
+          {/* Waitlist */}
+          {waitlist.length > 0 && (
+            <>
+              <h2 className="h4 mt-4 mb-3">My Waitlist</h2>
+              <ul className="list-group">
+                {waitlist.map((entry) => {
+                  const event = eventDetails[entry.eventId] || {};
+                  
+                  return (
+                    <li className="list-group-item d-flex justify-content-between align-items-center" key={entry.id}>
+                      <div>
+                        <Link to={`/events/${entry.eventId}`}>{event.name || `Event #${entry.eventId}`}</Link>
+                        <div className="text-muted small">
+                          {entry.ticketsRequested} ticket{entry.ticketsRequested === 1 ? '' : 's'}
+                          {entry.ahead !== undefined && ` \u00b7 ${entry.ahead === 0 ? 'Next in line' : `${entry.ahead} ahead of you`}`}
+                          {entry.expiresAt && ` \u00b7 Until ${formatDate(entry.expiresAt)}`}
+                        </div>
+                      </div>
+                      <button 
+                        className="btn btn-sm btn-outline-danger"
+                        onClick={() => handleLeaveWaitlist(entry.id)}
+                        disabled={cancelling}
+                      >
+                        Leave Waitlist
+                      </button>
+                    </li>
+                  );
+                })}
+              </ul>
+            </>
+          )}
         </>
       )}
     </div>
@@ -1,7 +1,7 @@
 import React, { useState, useEffect } from 'react';
 import { useParams, useNavigate, Link } from 'react-router-dom';
 import { getEventById } from '../../services/eventService';
-import { createBooking } from '../../services/bookingService';
+import { createBooking, joinWaitlist } from '../../services/bookingService';
 import { isAuthenticated, isAdmin } from '../../services/authService';
 import { getAvailableCurrencies, convertCurrency } from '../../services/currencyService';
 import EventMap from './EventMap';
@@ -26,6 +26,13 @@ const EventDetails = () => {
     success: false
   });
 
+  // State for the waitlist of a sold-out event
+  const [waitlistStatus, setWaitlistStatus] = useState({
+    loading: false,
+    error: null,
+    entry: null
+  });
+
   // Currency conversion states
   const [currencies, setCurrencies] = useState({});
   const [selectedCurrency, setSelectedCurrency] = useState('GBP');
@@ -192,6 +199,25 @@ const EventDetails = () => {
     }
   };
 
+  // Join the waitlist; tickets are booked automatically when someone cancels
+  const handleJoinWaitlist = async (e) => {
+    e.preventDefault();
+
+    if (!isLoggedIn) {
+      navigate('/login');
+      return;
+    }
+
+    setWaitlistStatus({ loading: true, error: null, entry: null });
+
+    try {
+      const entry = await joinWaitlist(event.id, tickets);
+      setWaitlistStatus({ loading: false, error: null, entry });
+    } catch (err) {
+      setWaitlistStatus({ loading: false, error: err.message || 'Failed to join the waitlist.', entry: null });
+    }
+  };
+
   // Render loading state
   if (loading) {
     return (
@@ -321,6 +347,45 @@ const EventDetails = () => {
                       </div>
                     )}
 
+                    {event.availableTickets < 1 ? (
+                      waitlistStatus.entry ? (
+                        <div className="alert alert-info">
+                          You are on the waitlist ({waitlistStatus.entry.ahead} ahead of you). We will book your
+                          tickets automatically when some are released and let you know.
+                        </div>
+                      ) : (
+                        <form onSubmit={handleJoinWaitlist}>
+                          {waitlistStatus.error && (
+                            <div className="alert alert-danger">
+                              {waitlistStatus.error}
+                            </div>
+                          )}
+                          <p>This event is sold out. Join the waitlist and we will book tickets for you if any are released.</p>
+                          <div className="mb-3">
+                            <label htmlFor="waitlistTickets" className="form-label">
+                              Number of Tickets
+                            </label>
+                            <input
+                              type="number"
+                              className="form-control"
+                              id="waitlistTickets"
+                              value={tickets}
+                              onChange={(e) => setTickets(Math.min(10, Math.max(1, parseInt(e.target.value) || 1)))}
+                              min="1"
+                              max="10"
+                              required
+                            />
+                          </div>
+                          <button
+                            type="submit"
+                            className="btn btn-outline-primary w-100"
+                            disabled={waitlistStatus.loading || !isLoggedIn}
+                          >
+                            {waitlistStatus.loading ? 'Joining...' : 'Join Waitlist'}
+                          </button>
+                        </form>
+                      )
+                    ) : (
                     <form onSubmit={handleBookTickets}>
                       <div className="mb-3">
                         <label htmlFor="tickets" className="form-label">
@@ -380,6 +445,7 @@ const EventDetails = () => {
                         {bookingStatus.loading ? 'Processing...' : 'Book Now'}
                       </button>
                     </form>
+                    )}
                   </>
                 )}
               </div>
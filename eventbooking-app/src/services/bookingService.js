@@ -174,4 +174,65 @@ export const deleteBooking = async (bookingId) => {
     console.error("Delete booking error:", error);
     throw new Error(error.response?.data?.error || error.message || 'Failed to delete booking');
   }
-};
\ No newline at end of file
+};
+// Function to join the waitlist of a sold-out event
+export const joinWaitlist = async (eventId, tickets) => {
+  try {
+    const token = await getToken();
+    if (!token) throw new Error('Not authenticated');
+    
+    const response = await axios.post(
+      `${API_URL}/api/user/waitlist`,
+      { eventId: Number(eventId), tickets: Number(tickets) },
+      {
+        headers: {
+          'Authorization': `Bearer ${token}`,
+          'Content-Type': 'application/json'
+        }
+      }
+    );
+    
+    return response.data;
+  } catch (error) {
+    console.error("Join waitlist error:", error);
+    throw new Error(error.response?.data?.error || error.message || 'Failed to join the waitlist');
+  }
+};
+
+// Function to get the current user's waitlist entries
+export const getUserWaitlist = async () => {
+  try {
+    const token = await getToken();
+    if (!token) throw new Error('Not authenticated');
+    
+    const response = await axios.get(`${API_URL}/api/user/waitlist`, {
+      headers: {
+        'Authorization': `Bearer ${token}`
+      }
+    });
+    
+    return response.data;
+  } catch (error) {
+    console.error("Get waitlist error:", error);
+    throw new Error(error.response?.data?.error || error.message || 'Failed to fetch the waitlist');
+  }
+};
+
+// Function to leave the waitlist
+export const leaveWaitlist = async (entryId) => {
+  try {
+    const token = await getToken();
+    if (!token) throw new Error('Not authenticated');
+    
+    const response = await axios.delete(`${API_URL}/api/user/waitlist/${entryId}`, {
+      headers: {
+        'Authorization': `Bearer ${token}`
+      }
+    });
+    
+    return response.data;
+  } catch (error) {
+    console.error("Leave waitlist error:", error);
+    throw new Error(error.response?.data?.error || error.message || 'Failed to leave the waitlist');
+  }
+};
@@ -3,6 +3,7 @@ package com.example.user.model;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -13,6 +14,7 @@ public class User {
 
     @Id
     private String id;
+    @Indexed // Joined from bookings.userFirebaseUid in admin reports
     private String firebaseUid;
     private String email;
     private String fullName;